@@ -0,0 +1,204 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Computes the Jaccard similarity between the patents of each year and the patents of the
+ * previous years (backward similarity).
+ * The indexes of the last years are kept in memory as a sliding window: when a year is finished
+ * it is added to the window and the oldest year is dropped, so each year file is read only once
+ * and each pair of patents is computed only once, when the most recent patent of the pair is
+ * the focus patent.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class BackwardSimilarity {
+
+	/**
+	 * A year in the window, with its index and its own accumulator.
+	 */
+	private static class WindowYear {
+		int year;
+		PatentIndex index;
+		String[] patentNumbers;
+		int[] values;
+		int[] touched;
+
+		WindowYear(int year, PatentIndex index, String[] patentNumbers){
+			this.year = year;
+			this.index = index;
+			this.patentNumbers = patentNumbers;
+			this.values = new int[index.getNumPatents()];
+			this.touched = new int[index.getNumPatents()];
+		}
+	}
+
+	private Stage05ComputeSimilarity cs;
+	private int numYears;
+	private ArrayDeque<WindowYear> window = new ArrayDeque<WindowYear>(); //Most recent year first
+
+	/**
+	 * Constructor
+	 *
+	 * @param cs The similarity computation used to load the years.
+	 * @param numYears The number of previous years to compare with.
+	 */
+	public BackwardSimilarity(Stage05ComputeSimilarity cs, int numYears){
+		this.cs = cs;
+		this.numYears = numYears;
+	}
+
+	/**
+	 * Adds a year to the window and drops the years that are too old for the next year.
+	 *
+	 * @param year The year.
+	 * @param index The patent index of the year.
+	 * @param patentNumbers The original patent number of each patent of the year, by ordinal.
+	 */
+	public void addYear(int year, PatentIndex index, String[] patentNumbers){
+		window.addFirst(new WindowYear(year, index, patentNumbers));
+		this.dropYears(year+1);
+	}
+
+	/**
+	 * Drops the years of the window that are not among the previous years of a year.
+	 *
+	 * @param year The year.
+	 */
+	private void dropYears(int year){
+		Iterator<WindowYear> it = window.iterator();
+		while(it.hasNext()){
+			if(it.next().year<year-numYears)
+				it.remove();
+		}
+	}
+
+	/**
+	 * Computes the number of keywords shared by a focus patent and every patent of a year in
+	 * the window.
+	 *
+	 * @param index The index of the focus patent.
+	 * @param patentA The ordinal of the focus patent.
+	 * @param windowYear The year in the window.
+	 * @return The number of patents found.
+	 */
+	private int processPatents(PatentIndex index, int patentA, WindowYear windowYear){
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] patentTerms = index.getPatentTerms();
+		int[] termOffsets = windowYear.index.getTermOffsets();
+		int[] postings = windowYear.index.getPostings();
+		int[] values = windowYear.values;
+		int[] touched = windowYear.touched;
+		int numTerms = windowYear.index.getNumTerms();
+		int nTouched = 0;
+		for(int i=patentOffsets[patentA];i<patentOffsets[patentA+1];i++){
+			int term = patentTerms[i];
+			if(term>=numTerms) //The keyword does not occur in that year
+				continue;
+			for(int j=termOffsets[term];j<termOffsets[term+1];j++){
+				int patentB = postings[j];
+				if(values[patentB]++==0)
+					touched[nTouched++] = patentB;
+			}
+		}
+		return nTouched;
+	}
+
+	/**
+	 * Computes the similarity between the patents of a year and the patents of the years in the
+	 * window, and writes the pairs with a similarity greater than 0, one per line with the
+	 * original patent numbers (the patent of the year first) and the similarity rounded to 5 digits.
+	 * The years of the window that are too old for the year are dropped first, also when the
+	 * years before it had no file.
+	 *
+	 * @param year The year.
+	 * @param index The patent index of the year.
+	 * @param patentNumbers The original patent number of each patent of the year, by ordinal.
+	 * @param fSimilarity The file to store the similarities.
+	 */
+	public void backwardSimilarity(int year, PatentIndex index, String[] patentNumbers, File fSimilarity) throws IOException{
+		this.dropYears(year);
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fSimilarity);
+		for(int patentA=0;patentA<index.getNumPatents();patentA++){
+			int numKwPatentA = index.size(patentA);
+			for(WindowYear windowYear:window){
+				int nTouched = this.processPatents(index, patentA, windowYear);
+				for(int i=0;i<nTouched;i++){
+					int patentB = windowYear.touched[i];
+					int intersection = windowYear.values[patentB];
+					windowYear.values[patentB] = 0;
+					int union = (numKwPatentA+windowYear.index.size(patentB))-intersection;
+					int roundSim = TextSimilarityWriter.roundSimilarity(intersection, union);
+					if(roundSim>0){ //Outputs only values greather than 0
+						pwSimilarity.print(patentNumbers[patentA]);
+						pwSimilarity.print(' ');
+						pwSimilarity.print(windowYear.patentNumbers[patentB]);
+						pwSimilarity.print(' ');
+						pwSimilarity.println(TextSimilarityWriter.getSimilarity(roundSim));
+					}
+				}
+			}
+			if ((patentA+1)%10000==0){ //Outputs the progress of this process
+				System.out.println("\t\t"+(patentA+1)+" patents processed...");
+			}
+		}
+		pwSimilarity.close();
+	}
+
+	/**
+	 * Loads a year, or returns null if there is no file for that year.
+	 */
+	private PatentIndex readYear(File fMainDir, int year) throws IOException{
+		File fYearData = CompressedFiles.getFile(fMainDir, "years/patents_indexed_"+year+".txt");
+		if(!CompressedFiles.find(fYearData).exists())
+			return null;
+		System.out.println("\tReading data for year = "+year);
+		return cs.readPatentIndex(fYearData);
+	}
+
+	public static void main(String[] args) throws IOException{
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+
+		int initYear = 1940; //Initial year to compute similarities
+		int endYear = 1945; //Final year to compute similarities (check the maximum year in the data)
+		int numYears = 5; //Number of previous years to compare with
+
+		BackwardSimilarity bs = new BackwardSimilarity(cs, numYears);
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fPatentsIdxs = new File(fMainDir,"patents_idxs.txt");
+		File fJaccard = new File(fMainDir+"/jaccard/");
+		if (!fJaccard.exists())
+			fJaccard.mkdirs();
+
+		System.out.println("Reading the codified patent numbers...");
+		cs.readIndexes(fPatentsIdxs, lhmPatentsIdx);
+
+		System.out.println("Loading the window of previous years...");
+		for(int year=initYear-numYears;year<initYear;year++){
+			PatentIndex index = bs.readYear(fMainDir, year);
+			if(index!=null)
+				bs.addYear(year, index, cs.getPatentNumbers(index, lhmPatentsIdx));
+		}
+		for(int year=initYear;year<=endYear;year++){
+			System.out.println("Computing backward similarities for year = "+year);
+			PatentIndex index = bs.readYear(fMainDir, year);
+			if(index==null)
+				continue;
+			String[] patentNumbers = cs.getPatentNumbers(index, lhmPatentsIdx);
+			System.out.println("\tDoing the calculations...");
+			bs.backwardSimilarity(year, index, patentNumbers, CompressedFiles.getFile(fJaccard, "jaccard_backward"+numYears+"_"+year+".txt"));
+			bs.addYear(year, index, patentNumbers);
+		}
+	}
+}
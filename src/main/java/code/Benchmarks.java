@@ -0,0 +1,568 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Benchmarks of the hot path of each stage on synthetic corpora of several sizes and keyword
+ * skews (the exponent of the Zipf distribution of the keywords).
+ * Each benchmark runs in a number of separate JVMs (forks, with the same JVM options), so the
+ * profile that the JIT builds for one benchmark does not affect the next ones. In each fork the
+ * benchmark is run a number of times to warm up the JVM and then measured a number of times.
+ * The results of the operations are consumed by a volatile field, so the JIT cannot remove the
+ * work. The report has the time per operation (a text, a line or a patent), the bytes allocated
+ * per operation by the benchmark thread and the allocation rate (n/a if the JVM cannot measure
+ * them), and the garbage collections, one benchmark per line, so the reports of two versions can
+ * be compared.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+public class Benchmarks {
+
+	/**
+	 * A benchmarked operation.
+	 */
+	public interface Operation {
+		/**
+		 * Runs the operation once.
+		 *
+		 * @return The number of units processed (texts, lines or patents).
+		 */
+		public long run() throws IOException;
+	}
+
+	/**
+	 * The measures of a benchmark in one JVM.
+	 */
+	private static class Result {
+		double[] nsPerOp; //Time per operation of each measured run
+		long units;
+		long nanos;
+		long bytes; //Bytes allocated by the benchmark thread (-1 if the JVM cannot measure them)
+		long gcs;
+		long gcMillis;
+
+		/**
+		 * Writes the result as a line that the parent JVM reads.
+		 */
+		public String toString(){
+			StringBuilder line = new StringBuilder(RESULT_PREFIX);
+			line.append(units).append(' ').append(nanos).append(' ').append(bytes).append(' ').append(gcs).append(' ').append(gcMillis);
+			for(double ns:nsPerOp)
+				line.append(' ').append(ns);
+			return line.toString();
+		}
+
+		/**
+		 * Reads a result written by a fork.
+		 */
+		static Result parse(String line){
+			String[] lineSplit = line.substring(RESULT_PREFIX.length()).split(" ");
+			Result result = new Result();
+			result.units = Long.parseLong(lineSplit[0]);
+			result.nanos = Long.parseLong(lineSplit[1]);
+			result.bytes = Long.parseLong(lineSplit[2]);
+			result.gcs = Long.parseLong(lineSplit[3]);
+			result.gcMillis = Long.parseLong(lineSplit[4]);
+			result.nsPerOp = new double[lineSplit.length-5];
+			for(int i=0;i<result.nsPerOp.length;i++)
+				result.nsPerOp[i] = Double.parseDouble(lineSplit[i+5]);
+			return result;
+		}
+	}
+
+	private static final String RESULT_PREFIX = "#result ";
+
+	private static volatile long sink = 0; //Consumes the results, so the JIT cannot remove the work
+
+	private int warmupIterations;
+	private int measureIterations;
+	private int forks;
+	private String benchmark = null; //In a fork, the benchmark to run
+	private String[] corpus = null; //Arguments of the current corpus, for the forks
+	private PrintWriter pwReport;
+	private com.sun.management.ThreadMXBean threadBean = null;
+
+	/**
+	 * Constructor
+	 *
+	 * @param warmupIterations The number of runs before measuring, in each fork.
+	 * @param measureIterations The number of measured runs, in each fork.
+	 * @param forks The number of separate JVMs for each benchmark (0 runs them in this JVM).
+	 * @param pwReport The writer of the report.
+	 */
+	public Benchmarks(int warmupIterations, int measureIterations, int forks, PrintWriter pwReport){
+		this.warmupIterations = warmupIterations;
+		this.measureIterations = measureIterations;
+		this.forks = forks;
+		this.pwReport = pwReport;
+		try{ //Only in the JVMs that measure the memory of a thread (HotSpot and OpenJ9)
+			if(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean){
+				this.threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+				if(!threadBean.isThreadAllocatedMemorySupported())
+					this.threadBean = null;
+				else
+					threadBean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+		catch(NoClassDefFoundError e){
+			this.threadBean = null;
+		}
+	}
+
+	private long allocatedBytes(){
+		return threadBean==null ? -1 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private long[] gcCounts(){
+		long[] counts = new long[2];
+		for(GarbageCollectorMXBean gc:ManagementFactory.getGarbageCollectorMXBeans()){
+			counts[0] += Math.max(0, gc.getCollectionCount());
+			counts[1] += Math.max(0, gc.getCollectionTime());
+		}
+		return counts;
+	}
+
+	/**
+	 * Measures an operation and adds a line to the report.
+	 *
+	 * @param name The name of the benchmark.
+	 * @param parameters The parameters of the corpus.
+	 * @param operation The operation.
+	 */
+	public void measure(String name, String parameters, Operation operation) throws IOException{
+		if(benchmark!=null){ //In a fork, only its benchmark is run and its result is passed to the parent
+			if(benchmark.equals(name))
+				System.out.println(this.run(operation));
+			return;
+		}
+		ArrayList<Result> results = new ArrayList<Result>();
+		if(forks==0)
+			results.add(this.run(operation));
+		for(int f=0;f<forks;f++)
+			results.add(this.fork(name));
+		this.report(name, parameters, results);
+	}
+
+	/**
+	 * Warms up and measures an operation in this JVM.
+	 */
+	private Result run(Operation operation) throws IOException{
+		for(int i=0;i<warmupIterations;i++)
+			sink += operation.run();
+		System.gc();
+		Result result = new Result();
+		result.nsPerOp = new double[measureIterations];
+		long[] gcStart = this.gcCounts();
+		long bytesStart = this.allocatedBytes();
+		for(int i=0;i<measureIterations;i++){
+			long start = System.nanoTime();
+			long n = operation.run();
+			long nanos = System.nanoTime()-start;
+			sink += n;
+			result.nsPerOp[i] = nanos/(double)Math.max(1, n);
+			result.units += n;
+			result.nanos += nanos;
+		}
+		result.bytes = bytesStart<0 ? -1 : this.allocatedBytes()-bytesStart;
+		long[] gcEnd = this.gcCounts();
+		result.gcs = gcEnd[0]-gcStart[0];
+		result.gcMillis = gcEnd[1]-gcStart[1];
+		return result;
+	}
+
+	/**
+	 * Runs a benchmark of the current corpus in a new JVM, with the options of this one.
+	 */
+	private Result fork(String name) throws IOException{
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Benchmarks.class.getName());
+		command.add(name);
+		command.add(String.valueOf(warmupIterations));
+		command.add(String.valueOf(measureIterations));
+		command.addAll(Arrays.asList(corpus));
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Process process = builder.start();
+		Result result = null;
+		String line = "";
+		BufferedReader brOutput = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		while((line=brOutput.readLine())!=null)
+			if(line.startsWith(RESULT_PREFIX))
+				result = Result.parse(line);
+		brOutput.close();
+		try{
+			if(process.waitFor()!=0 || result==null)
+				throw new IOException("The fork of the benchmark "+name+" failed");
+		}
+		catch(InterruptedException e){
+			process.destroy();
+			throw new IOException("Interrupted while waiting for the benchmark "+name);
+		}
+		return result;
+	}
+
+	/**
+	 * Adds a line to the report with the results of a benchmark in all the forks.
+	 */
+	private void report(String name, String parameters, ArrayList<Result> results){
+		int nRuns = 0;
+		long units = 0;
+		long nanos = 0;
+		long bytes = 0;
+		long gcs = 0;
+		long gcMillis = 0;
+		for(Result result:results){
+			nRuns += result.nsPerOp.length;
+			units += result.units;
+			nanos += result.nanos;
+			bytes = bytes<0 || result.bytes<0 ? -1 : bytes+result.bytes;
+			gcs += result.gcs;
+			gcMillis += result.gcMillis;
+		}
+		double mean = 0;
+		for(Result result:results)
+			for(double ns:result.nsPerOp)
+				mean += ns/nRuns;
+		double deviation = 0;
+		for(Result result:results)
+			for(double ns:result.nsPerOp)
+				deviation += (ns-mean)*(ns-mean)/Math.max(1, nRuns-1);
+		deviation = Math.sqrt(deviation);
+		String bytesPerOp = bytes<0 ? "n/a" : String.format("%.1f", bytes/(double)Math.max(1, units));
+		String mbPerSec = bytes<0 ? "n/a" : String.format("%.1f", (bytes/(1024.0*1024.0))/(nanos/1e9));
+		String line = String.format("%-34s %-22s %12.1f %10.1f %12s %10s %6d %8d",
+				name, parameters, mean, deviation, bytesPerOp, mbPerSec, gcs, gcMillis);
+		System.out.println(line);
+		pwReport.println(line);
+		pwReport.flush();
+	}
+
+	/**
+	 * Writes a synthetic raw patent file in the CSV format of the raw patent data.
+	 * The keywords of the titles and abstracts follow a Zipf distribution over a vocabulary of
+	 * random words, and the texts also have stopwords, numbers and one character words.
+	 *
+	 * @param fData The file to store the raw patent data.
+	 * @param numPatents The number of patents.
+	 * @param vocabularySize The number of different keywords.
+	 * @param skew The exponent of the Zipf distribution (0 is uniform).
+	 * @param seed The seed of the random numbers.
+	 */
+	public void generateCorpus(File fData, int numPatents, int vocabularySize, double skew, long seed) throws IOException{
+		Random random = new Random(seed);
+		String[] stopWords = {"the", "a", "of", "said", "which", "is", "to", "and", "in", "for"};
+		LinkedHashMap<String, Integer> words = new LinkedHashMap<String, Integer>();
+		while(words.size()<vocabularySize){
+			StringBuilder word = new StringBuilder();
+			int length = 4+random.nextInt(7);
+			for(int i=0;i<length;i++)
+				word.append((char)('a'+random.nextInt(26)));
+			if(random.nextInt(20)==0)
+				word.insert(length/2, '-');
+			words.put(word.toString(), words.size());
+		}
+		String[] vocabulary = words.keySet().toArray(new String[vocabularySize]);
+		double[] cumulative = new double[vocabularySize];
+		double total = 0;
+		for(int w=0;w<vocabularySize;w++){
+			total += 1/Math.pow(w+1, skew);
+			cumulative[w] = total;
+		}
+		PrintWriter pwData = new PrintWriter(fData);
+		pwData.println("patent,year,title,abstract");
+		StringBuilder title = new StringBuilder();
+		StringBuilder text = new StringBuilder();
+		for(int p=0;p<numPatents;p++){
+			title.setLength(0);
+			text.setLength(0);
+			for(int i=3+random.nextInt(6);i>0;i--)
+				title.append(this.sample(vocabulary, cumulative, random)).append(' ');
+			for(int i=40+random.nextInt(81);i>0;i--){
+				int kind = random.nextInt(10);
+				if(kind<7)
+					text.append(this.sample(vocabulary, cumulative, random));
+				else if(kind<9)
+					text.append(stopWords[random.nextInt(stopWords.length)]);
+				else
+					text.append(random.nextInt(1000)).append(random.nextBoolean() ? "-"+random.nextInt(10) : "");
+				text.append(random.nextInt(8)==0 ? ", " : " ");
+			}
+			text.append("X.");
+			pwData.println((5000000+p)+",2000,"+title.toString().trim()+",\""+text+"\"");
+		}
+		pwData.close();
+	}
+
+	private String sample(String[] vocabulary, double[] cumulative, Random random){
+		double target = random.nextDouble()*cumulative[cumulative.length-1];
+		int low = 0;
+		int high = cumulative.length-1;
+		while(low<high){
+			int mid = (low+high)>>>1;
+			if(cumulative[mid]<target)
+				low = mid+1;
+			else
+				high = mid;
+		}
+		return vocabulary[low];
+	}
+
+	/**
+	 * Codifies a file with one word (or patent number) per line, as in Stage02CodifyIdxPatents.
+	 */
+	private void codify(File fInput, File fOutput) throws IOException{
+		Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+		String line = "";
+		int n = 0;
+		BufferedReader brContent = new BufferedReader(new FileReader(fInput));
+		PrintWriter pwIndexed = new PrintWriter(fOutput);
+		while((line=brContent.readLine())!=null)
+			pwIndexed.println(cip.convertToCode(n++)+" "+line);
+		brContent.close();
+		pwIndexed.close();
+	}
+
+	/**
+	 * Counts the lines of a file.
+	 */
+	private long countLines(File fInput) throws IOException{
+		long nLines = 0;
+		BufferedReader brContent = new BufferedReader(new FileReader(fInput));
+		while(brContent.readLine()!=null)
+			nLines++;
+		brContent.close();
+		return nLines;
+	}
+
+	/**
+	 * Reads the text (title and abstract) of each patent of a raw patent file.
+	 */
+	private String[] readTexts(File fData) throws IOException{
+		ArrayList<String> texts = new ArrayList<String>();
+		CsvReader csvContent = new CsvReader(fData, Charset.forName("UTF-8"));
+		csvContent.readHeader();
+		while(csvContent.next())
+			texts.add(csvContent.getString(2)+" "+csvContent.getString(3));
+		csvContent.close();
+		return texts.toArray(new String[texts.size()]);
+	}
+
+	/**
+	 * Runs the benchmarks of all the stages on one corpus.
+	 *
+	 * @param fDir The directory for the files of the corpus.
+	 * @param numPatents The number of patents.
+	 * @param vocabularySize The number of different keywords.
+	 * @param skew The exponent of the Zipf distribution of the keywords.
+	 */
+	public void runCorpus(File fDir, int numPatents, int vocabularySize, double skew) throws IOException{
+		final String parameters = "n="+numPatents+",v="+vocabularySize+",s="+skew;
+		this.corpus = new String[]{fDir.getPath(), String.valueOf(numPatents), String.valueOf(vocabularySize), String.valueOf(skew)};
+		if (!fDir.exists())
+			fDir.mkdirs();
+		final Stage01PreprocessData ppd = new Stage01PreprocessData();
+		final Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+		final Stage03IndexPatents ip = new Stage03IndexPatents();
+		final Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		final File fData = new File(fDir, "patent_data_raw.csv");
+		final File fTerms = new File(fDir, "patents_terms_raw.txt");
+		final File fVocabulary = new File(fDir, "vocabulary_raw.txt");
+		final File fClean = new File(fDir, "patents_terms.txt");
+		final File fIndexed = new File(fDir, "patents_indexed.txt");
+		final File fScratch = new File(fDir, "scratch.txt");
+
+		final LinkedHashMap<String, String> vocabularyIdxs = new LinkedHashMap<String, String>();
+		final LinkedHashMap<String, String> patentsIdxs = new LinkedHashMap<String, String>();
+		if(benchmark==null){ //The forks use the corpus generated by the parent
+			System.out.println("Generating corpus "+parameters+"...");
+			this.generateCorpus(fData, numPatents, vocabularySize, skew, 17);
+			ppd.createBagofWords(fData, fTerms);
+			ppd.extractVocabulary(fTerms, fVocabulary, 2);
+			final LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
+			ppd.readVocabulary(fVocabulary, vocabulary);
+			ppd.cleanPatents(fTerms, fClean, new File(fDir, "patents_years.txt"), new File(fDir, "patents_numbers.txt"), vocabulary);
+			this.codify(fVocabulary, new File(fDir, "vocabulary.txt"));
+			this.codify(new File(fDir, "patents_numbers.txt"), new File(fDir, "patents_idxs.txt"));
+		}
+		ip.readIndexes(new File(fDir, "vocabulary.txt"), vocabularyIdxs);
+		ip.readIndexes(new File(fDir, "patents_idxs.txt"), patentsIdxs);
+		if(benchmark==null)
+			ip.indexPatents(fClean, fIndexed, vocabularyIdxs, patentsIdxs);
+		final LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		cs.readIndexes(new File(fDir, "patents_idxs.txt"), lhmPatentsIdx);
+		final String[] texts = this.readTexts(fData);
+		final long nLines = this.countLines(fTerms);
+		final LinkedHashMap<String, LinkedHashMap<String, Integer>> patents = new LinkedHashMap<String, LinkedHashMap<String, Integer>>();
+		final LinkedHashMap<String, ArrayList<String>> invertedIndex = new LinkedHashMap<String, ArrayList<String>>();
+		cs.readPatentsSequencially(fIndexed, patents, invertedIndex);
+		final PatentIndex index = cs.readPatentIndex(fIndexed);
+		final String[] patentNumbers = cs.getPatentNumbers(index, lhmPatentsIdx);
+
+		this.measure("stage01.CsvReader", parameters, new Operation(){
+			public long run() throws IOException{
+				CsvReader csvContent = new CsvReader(fData, Charset.forName("UTF-8"));
+				while(csvContent.next())
+					sink += csvContent.getField(csvContent.getNumFields()-1).length();
+				csvContent.close();
+				return texts.length;
+			}
+		});
+		this.measure("stage01.tokenize", parameters, new Operation(){
+			public long run(){
+				for(String text:texts)
+					sink += ppd.tokenize(text).size();
+				return texts.length;
+			}
+		});
+		this.measure("stage01.getBagofWords", parameters, new Operation(){
+			public long run(){
+				EnglishStopWords sw = new EnglishStopWords();
+				for(String text:texts)
+					sink += ppd.getBagofWords(text, sw).size();
+				return texts.length;
+			}
+		});
+		this.measure("stage01.Tokenizer", parameters, new Operation(){
+			public long run(){
+				Tokenizer tokenizer = new Tokenizer(new EnglishStopWords());
+				for(String text:texts)
+					sink += tokenizer.tokenize(text);
+				return texts.length;
+			}
+		});
+		this.measure("stage01.createBagofWords", parameters, new Operation(){
+			public long run() throws IOException{
+				ppd.createBagofWords(fData, fScratch);
+				return texts.length;
+			}
+		});
+		this.measure("stage01.extractVocabulary", parameters, new Operation(){
+			public long run() throws IOException{
+				ppd.extractVocabulary(fTerms, fScratch, 2);
+				return nLines;
+			}
+		});
+		this.measure("stage02.convertToCode", parameters, new Operation(){
+			public long run(){
+				for(int n=0;n<numPatents*10;n++)
+					sink += cip.convertToCode(n).length();
+				return numPatents*10;
+			}
+		});
+		this.measure("stage03.indexPatents", parameters, new Operation(){
+			public long run() throws IOException{
+				ip.indexPatents(fClean, fScratch, vocabularyIdxs, patentsIdxs);
+				return index.getNumPatents();
+			}
+		});
+		this.measure("stage05.readPatentsSequencially", parameters, new Operation(){
+			public long run() throws IOException{
+				LinkedHashMap<String, LinkedHashMap<String, Integer>> patents = new LinkedHashMap<String, LinkedHashMap<String, Integer>>();
+				cs.readPatentsSequencially(fIndexed, patents, new LinkedHashMap<String, ArrayList<String>>());
+				return patents.size();
+			}
+		});
+		this.measure("stage05.readPatentIndex", parameters, new Operation(){
+			public long run() throws IOException{
+				return cs.readPatentIndex(fIndexed).getNumPatents();
+			}
+		});
+		this.measure("stage05.processPatents.map", parameters, new Operation(){
+			public long run(){
+				LinkedHashMap<String, Integer> values = new LinkedHashMap<String, Integer>();
+				LinkedHashMap<String, Integer> previousPatents = new LinkedHashMap<String, Integer>();
+				for(String idxPatentA:patents.keySet()){
+					previousPatents.put(idxPatentA, 0);
+					values.clear();
+					cs.processPatents(patents.get(idxPatentA), values, patents, invertedIndex, previousPatents);
+					sink += values.size();
+				}
+				return patents.size();
+			}
+		});
+		this.measure("stage05.processPatents.index", parameters, new Operation(){
+			public long run(){
+				int[] values = new int[index.getNumPatents()];
+				int[] touched = new int[index.getNumPatents()];
+				for(int patentA=0;patentA<index.getNumPatents();patentA++){
+					int nTouched = cs.processPatents(index, patentA, values, touched);
+					for(int i=0;i<nTouched;i++)
+						values[touched[i]] = 0;
+					sink += nTouched;
+				}
+				return index.getNumPatents();
+			}
+		});
+		this.measure("stage05.jaccardSimilarity.map", parameters, new Operation(){
+			public long run() throws IOException{
+				cs.jaccardSimilarity(patents, invertedIndex, fScratch, lhmPatentsIdx);
+				return patents.size();
+			}
+		});
+		this.measure("stage05.jaccardSimilarity.index", parameters, new Operation(){
+			public long run() throws IOException{
+				cs.jaccardSimilarity(index, new TextSimilarityWriter(fScratch, index, patentNumbers));
+				return index.getNumPatents();
+			}
+		});
+		if(benchmark==null)
+			fScratch.delete();
+	}
+
+	public static void main(String[] args) throws IOException{
+		if(args.length==7){ //A fork: benchmark, warmup and measured runs, and the arguments of the corpus
+			Benchmarks benchmarks = new Benchmarks(Integer.parseInt(args[1]), Integer.parseInt(args[2]), 0, null);
+			benchmarks.benchmark = args[0];
+			benchmarks.runCorpus(new File(args[3]), Integer.parseInt(args[4]), Integer.parseInt(args[5]), Double.parseDouble(args[6]));
+			return;
+		}
+		int[] corpusSizes = {2000, 8000}; //Number of patents of each corpus
+		double[] skews = {0.8, 1.1}; //Exponents of the Zipf distribution of the keywords
+		int vocabularySize = 20000; //Number of different keywords
+		int warmupIterations = 3; //Runs of each benchmark before measuring, in each fork
+		int measureIterations = 5; //Measured runs of each benchmark, in each fork
+		int forks = 2; //Separate JVMs for each benchmark (0 runs all of them in this JVM)
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		File fBenchmarks = new File(fMainDir+"/benchmarks/");
+		if (!fBenchmarks.exists())
+			fBenchmarks.mkdirs();
+		File fReport = new File(fBenchmarks, "benchmarks_"+new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date())+".txt");
+
+		PrintWriter pwReport = new PrintWriter(fReport);
+		pwReport.println("#java = "+System.getProperty("java.version")+", vm = "+System.getProperty("java.vm.name")
+				+", processors = "+Runtime.getRuntime().availableProcessors()+", max memory = "+(Runtime.getRuntime().maxMemory()>>20)+" MB");
+		String header = String.format("%-34s %-22s %12s %10s %12s %10s %6s %8s",
+				"#benchmark", "corpus", "ns/op", "stddev", "bytes/op", "alloc MB/s", "gcs", "gc ms");
+		System.out.println(header);
+		pwReport.println(header);
+		Benchmarks benchmarks = new Benchmarks(warmupIterations, measureIterations, forks, pwReport);
+		for(int numPatents:corpusSizes){
+			for(double skew:skews)
+				benchmarks.runCorpus(new File(fBenchmarks, "corpus_"+numPatents+"_"+skew), numPatents, vocabularySize, skew);
+		}
+		pwReport.close();
+		System.out.println("Report stored in "+fReport);
+	}
+}
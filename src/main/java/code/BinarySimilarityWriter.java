@@ -0,0 +1,97 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Writes the Jaccard similarities in a compact binary format.
+ * The file starts with a header: the magic bytes SMJS, the format version, the year, the scale
+ * of the similarities, the number of patents and the original patent number of each patent (by
+ * ordinal). Then it has one group per focus patent (patent A) with at least one pair: the ordinal
+ * of patent A and the number of pairs as variable length integers, followed by each pair, sorted
+ * by the ordinal of patent B. Each pair has the difference with the previous ordinal (patent A for
+ * the first one) as a variable length integer and the similarity as a 32 bit integer, which is
+ * the similarity rounded to 5 digits multiplied by the scale (100000).
+ * The files are read with SimilarityReader.
+  */
+package code;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class BinarySimilarityWriter implements SimilarityWriter {
+
+	public static final int MAGIC = 0x534d4a53; //SMJS
+	public static final int VERSION = 1;
+	public static final int SCALE = 100000;
+
+	private PatentIndex index;
+	private DataOutputStream dosSimilarity;
+	private long[] pairs;
+
+	/**
+	 * Constructor. Writes the header of the file.
+	 *
+	 * @param fSimilarity The file to store the similarities.
+	 * @param index The patent index.
+	 * @param patentNumbers The original patent number of each patent, by ordinal.
+	 * @param year The year of the patents.
+	 */
+	public BinarySimilarityWriter(File fSimilarity, PatentIndex index, String[] patentNumbers, int year) throws IOException{
+		this.index = index;
+		this.pairs = new long[index.getNumPatents()];
+		this.dosSimilarity = new DataOutputStream(new BufferedOutputStream(CompressedFiles.openOutput(fSimilarity, false), 1<<16));
+		dosSimilarity.writeInt(MAGIC);
+		dosSimilarity.writeInt(VERSION);
+		dosSimilarity.writeInt(year);
+		dosSimilarity.writeInt(SCALE);
+		dosSimilarity.writeInt(patentNumbers.length);
+		for(String patentNumber:patentNumbers)
+			dosSimilarity.writeUTF(String.valueOf(patentNumber));
+	}
+
+	/**
+	 * Writes an unsigned variable length integer, 7 bits per byte starting with the lowest ones.
+	 *
+	 * @param dos The output stream.
+	 * @param value The value, not negative.
+	 */
+	public static void writeVarInt(DataOutputStream dos, int value) throws IOException{
+		while((value&~0x7f)!=0){
+			dos.writeByte((value&0x7f)|0x80);
+			value >>>= 7;
+		}
+		dos.writeByte(value);
+	}
+
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+		int numKwPatentA = index.size(patentA);
+		int nPairs = 0;
+		for(int i=0;i<count;i++){
+			int patentB = patentsB[i];
+			int union = (numKwPatentA+index.size(patentB))-intersections[i];
+			int roundSim = TextSimilarityWriter.roundSimilarity(intersections[i], union);
+			if(roundSim>0) //Outputs only values greather than 0
+				pairs[nPairs++] = ((long)patentB<<32)|roundSim;
+		}
+		if(nPairs==0)
+			return;
+		Arrays.sort(pairs, 0, nPairs);
+		writeVarInt(dosSimilarity, patentA);
+		writeVarInt(dosSimilarity, nPairs);
+		int previous = patentA;
+		for(int i=0;i<nPairs;i++){
+			int patentB = (int)(pairs[i]>>>32);
+			writeVarInt(dosSimilarity, patentB-previous);
+			dosSimilarity.writeInt((int)pairs[i]);
+			previous = patentB;
+		}
+	}
+
+	public void close() throws IOException{
+		dosSimilarity.close();
+	}
+}
@@ -0,0 +1,259 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Computes the pair-wise Jaccard similarity of a year that does not fit in memory.
+ * The year file is split in blocks of consecutive patents, which are stored in binary files in a
+ * temporary directory. For each block i, its patents are compared with the patents of every block
+ * j >= i, keeping only the keywords of block i and the posting lists of block j in memory. The
+ * pairs of each block pair are spilled to disk and merged at the end of block i, so the patents
+ * of each focus patent are written together, as in the in-memory computation.
+  */
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class BlockedSimilarity {
+
+	private Stage05ComputeSimilarity cs;
+	private int blockSize;
+	private File tmpDir;
+
+	/**
+	 * Constructor
+	 *
+	 * @param cs The similarity computation used for each block pair.
+	 * @param blockSize The number of patents per block.
+	 * @param tmpDir The directory for the temporary files.
+	 */
+	public BlockedSimilarity(Stage05ComputeSimilarity cs, int blockSize, File tmpDir){
+		this.cs = cs;
+		this.blockSize = blockSize;
+		this.tmpDir = tmpDir;
+	}
+
+	private File getBlockFile(int block){
+		return new File(tmpDir, "block_"+block+".bin");
+	}
+
+	private File getPairsFile(int blockA, int blockB){
+		return new File(tmpDir, "pairs_"+blockA+"_"+blockB+".bin");
+	}
+
+	/**
+	 * Splits a year file in blocks of patents and stores the keywords of each block in a binary
+	 * file: the number of patents, and for each patent its number of keywords and the keywords.
+	 *
+	 * @param fYearData The patent data file of the year.
+	 * @param patentIds The list to store the codified patent numbers.
+	 * @return The number of blocks.
+	 */
+	public int writeBlocks(File fYearData, ArrayList<String> patentIds) throws IOException{
+		PatentLineParser parser = new PatentLineParser();
+		IntList terms = new IntList();
+		int nBlocks = 0;
+		DataOutputStream dosBlock = null;
+		MappedLineReader mlrContent = new MappedLineReader(fYearData);
+		try{
+			while(mlrContent.nextLine()){
+				if(patentIds.size()%blockSize==0){
+					if(dosBlock!=null)
+						dosBlock.close();
+					dosBlock = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.getBlockFile(nBlocks)), 1<<16));
+					nBlocks++;
+				}
+				terms.clear();
+				patentIds.add(parser.parse(mlrContent, mlrContent.getLineStart(), mlrContent.getLineEnd(), terms, null));
+				dosBlock.writeInt(terms.size());
+				for(int i=0;i<terms.size();i++)
+					dosBlock.writeInt(terms.get(i));
+			}
+		}
+		finally{
+			mlrContent.close();
+			if(dosBlock!=null)
+				dosBlock.close();
+		}
+		return nBlocks;
+	}
+
+	/**
+	 * Loads a block into a primitive index whose ordinals start at 0 for the first patent of the
+	 * block.
+	 *
+	 * @param block The block.
+	 * @param patentIds The codified patent numbers of the year.
+	 * @return The index of the block.
+	 */
+	public PatentIndex readBlock(int block, ArrayList<String> patentIds) throws IOException{
+		int from = block*blockSize;
+		int to = Math.min(patentIds.size(), from+blockSize);
+		String[] blockIds = patentIds.subList(from, to).toArray(new String[to-from]);
+		int[] patentOffsets = new int[to-from+1];
+		IntList patentTerms = new IntList(1<<16);
+		int numTerms = 0;
+		DataInputStream disBlock = new DataInputStream(new BufferedInputStream(new FileInputStream(this.getBlockFile(block)), 1<<16));
+		try{
+			for(int p=0;p<to-from;p++){
+				int size = disBlock.readInt();
+				for(int i=0;i<size;i++){
+					int term = disBlock.readInt();
+					patentTerms.add(term);
+					numTerms = Math.max(numTerms, term+1);
+				}
+				patentOffsets[p+1] = patentTerms.size();
+			}
+		}
+		finally{
+			disBlock.close();
+		}
+		return new PatentIndex(blockIds, patentOffsets, patentTerms.toArray(), numTerms);
+	}
+
+	/**
+	 * Computes the intersections between the patents of block A and the patents of block B with a
+	 * greater ordinal, and spills the pairs with a similarity greater than 0. For each patent of
+	 * block A the file has the number of pairs, and for each pair the position of patent B in its
+	 * block and the rounded similarity.
+	 *
+	 * @param indexA The index of block A.
+	 * @param indexB The index of block B (the same object when both blocks are the same).
+	 * @param values The accumulator for the intersections, with all positions set to 0.
+	 * @param touched The array to store the patents found.
+	 * @param fPairs The file to store the pairs.
+	 */
+	public void computeBlockPair(PatentIndex indexA, PatentIndex indexB, int[] values, int[] touched, File fPairs) throws IOException{
+		int[] patentOffsets = indexA.getPatentOffsets();
+		int[] patentTerms = indexA.getPatentTerms();
+		int[] termOffsets = indexB.getTermOffsets();
+		int[] postings = indexB.getPostings();
+		int numTerms = indexB.getNumTerms();
+		long[] pairs = new long[indexB.getNumPatents()];
+		DataOutputStream dosPairs = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fPairs), 1<<16));
+		try{
+			for(int patentA=0;patentA<indexA.getNumPatents();patentA++){
+				int nTouched = 0;
+				if(indexA==indexB) //Same block, only the patents after patent A
+					nTouched = cs.processPatents(indexA, patentA, values, touched);
+				else{
+					for(int i=patentOffsets[patentA];i<patentOffsets[patentA+1];i++){
+						int term = patentTerms[i];
+						if(term>=numTerms)
+							continue;
+						for(int j=termOffsets[term];j<termOffsets[term+1];j++){
+							int patentB = postings[j];
+							if(values[patentB]++==0)
+								touched[nTouched++] = patentB;
+						}
+					}
+				}
+				int numKwPatentA = indexA.size(patentA);
+				int nPairs = 0;
+				for(int i=0;i<nTouched;i++){
+					int patentB = touched[i];
+					int intersection = values[patentB];
+					values[patentB] = 0;
+					int union = (numKwPatentA+indexB.size(patentB))-intersection;
+					int roundSim = TextSimilarityWriter.roundSimilarity(intersection, union);
+					if(roundSim>0)
+						pairs[nPairs++] = ((long)patentB<<32)|roundSim;
+				}
+				BinarySimilarityWriter.writeVarInt(dosPairs, nPairs);
+				for(int i=0;i<nPairs;i++){
+					BinarySimilarityWriter.writeVarInt(dosPairs, (int)(pairs[i]>>>32));
+					dosPairs.writeInt((int)pairs[i]);
+				}
+			}
+		}
+		finally{
+			dosPairs.close();
+		}
+	}
+
+	/**
+	 * Computes the pair-wise Jaccard similarity of a year by blocks and writes the pairs with a
+	 * similarity greater than 0, one per line with the original patent numbers and the similarity
+	 * rounded to 5 digits.
+	 *
+	 * @param fYearData The patent data file of the year.
+	 * @param fSimilarity The file to store the similarities.
+	 * @param lhmPatentsIdx The map containing the codified patent numbers.
+	 */
+	public void jaccardSimilarity(File fYearData, File fSimilarity, LinkedHashMap<String, String> lhmPatentsIdx) throws IOException{
+		if (!tmpDir.exists())
+			tmpDir.mkdirs();
+		ArrayList<String> patentIds = new ArrayList<String>();
+		System.out.println("\tSplitting the year in blocks...");
+		int nBlocks = this.writeBlocks(fYearData, patentIds);
+		String[] patentNumbers = new String[patentIds.size()];
+		for(int p=0;p<patentNumbers.length;p++)
+			patentNumbers[p] = lhmPatentsIdx.get(patentIds.get(p));
+		int[] values = new int[blockSize];
+		int[] touched = new int[blockSize];
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fSimilarity);
+		try{
+			for(int blockA=0;blockA<nBlocks;blockA++){
+				System.out.println("\tComputing block "+(blockA+1)+" of "+nBlocks+"...");
+				PatentIndex indexA = this.readBlock(blockA, patentIds);
+				for(int blockB=blockA;blockB<nBlocks;blockB++){
+					PatentIndex indexB = blockB==blockA ? indexA : this.readBlock(blockB, patentIds);
+					this.computeBlockPair(indexA, indexB, values, touched, this.getPairsFile(blockA, blockB));
+				}
+				this.mergePairs(blockA, nBlocks, indexA.getNumPatents(), patentNumbers, pwSimilarity);
+			}
+		}
+		finally{
+			pwSimilarity.close();
+			for(int block=0;block<nBlocks;block++)
+				this.getBlockFile(block).delete();
+			tmpDir.delete();
+		}
+	}
+
+	/**
+	 * Writes the pairs of the patents of a block, reading the files of all its block pairs at
+	 * the same time, and deletes those files.
+	 */
+	private void mergePairs(int blockA, int nBlocks, int numPatents, String[] patentNumbers, PrintWriter pwSimilarity) throws IOException{
+		DataInputStream[] disPairs = new DataInputStream[nBlocks-blockA];
+		try{
+			for(int blockB=blockA;blockB<nBlocks;blockB++)
+				disPairs[blockB-blockA] = new DataInputStream(new BufferedInputStream(new FileInputStream(this.getPairsFile(blockA, blockB)), 1<<16));
+			for(int p=0;p<numPatents;p++){
+				String numPatentA = patentNumbers[blockA*blockSize+p];
+				for(int blockB=blockA;blockB<nBlocks;blockB++){
+					DataInputStream dis = disPairs[blockB-blockA];
+					int nPairs = SimilarityReader.readVarInt(dis);
+					for(int i=0;i<nPairs;i++){
+						int patentB = blockB*blockSize+SimilarityReader.readVarInt(dis);
+						int roundSim = dis.readInt();
+						pwSimilarity.print(numPatentA);
+						pwSimilarity.print(' ');
+						pwSimilarity.print(patentNumbers[patentB]);
+						pwSimilarity.print(' ');
+						pwSimilarity.println(TextSimilarityWriter.getSimilarity(roundSim));
+					}
+				}
+			}
+		}
+		finally{
+			for(int blockB=blockA;blockB<nBlocks;blockB++){
+				if(disPairs[blockB-blockA]!=null)
+					disPairs[blockB-blockA].close();
+				this.getPairsFile(blockA, blockB).delete();
+			}
+		}
+	}
+}
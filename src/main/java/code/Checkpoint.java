@@ -0,0 +1,221 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Periodic checkpoints of a long process that reads its input in order and writes one or more
+ * output files, so the process can be resumed after a crash.
+ * A checkpoint stores the number of input units done (lines or patents) and the length of each
+ * output file at that point, after flushing the outputs and forcing them to disk. On restart the
+ * outputs are truncated to those lengths and the process continues after the units done, so there
+ * are no repeated or missing lines. The checkpoint file is deleted when the process finishes.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+
+public class Checkpoint {
+
+	private static long defaultInterval = 60000;
+
+	private File fCheckpoint;
+	private long interval = defaultInterval;
+	private long lastSave;
+	private long done = 0;
+	private LinkedHashMap<String, Long> lengths = new LinkedHashMap<String, Long>(); //Length of each output at the last checkpoint
+	private LinkedHashMap<String, FileOutputStream> streams = new LinkedHashMap<String, FileOutputStream>();
+	private LinkedHashMap<String, PrintWriter> writers = new LinkedHashMap<String, PrintWriter>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param fCheckpoint The checkpoint file.
+	 */
+	public Checkpoint(File fCheckpoint){
+		this.fCheckpoint = fCheckpoint;
+		this.lastSave = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the checkpoint file of a process, next to its main output.
+	 *
+	 * @param fOutput The main output of the process.
+	 */
+	public static Checkpoint forOutput(File fOutput){
+		return new Checkpoint(new File(fOutput.getPath()+".ckpt"));
+	}
+
+	/**
+	 * Sets the time between checkpoints of the processes created from now on, in milliseconds.
+	 */
+	public static void setDefaultInterval(long interval) {
+		defaultInterval = interval;
+	}
+
+	/**
+	 * Sets the time between checkpoints, in milliseconds.
+	 */
+	public void setInterval(long interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Loads the last checkpoint, if there is one, and truncates the outputs to their length at
+	 * that point.
+	 *
+	 * @return The number of input units done (0 if there is no checkpoint).
+	 */
+	public long resume() throws IOException{
+		if(!fCheckpoint.exists())
+			return 0;
+		String line = "";
+		BufferedReader brCheckpoint = new BufferedReader(new FileReader(fCheckpoint));
+		try{
+			while((line=brCheckpoint.readLine())!=null){
+				String[] lineSplit = line.split(" ", 3);
+				if(lineSplit[0].equals("done"))
+					done = Long.parseLong(lineSplit[1]);
+				else if(lineSplit[0].equals("output"))
+					lengths.put(lineSplit[2], Long.parseLong(lineSplit[1]));
+			}
+		}
+		catch(RuntimeException e){
+			throw new IOException("Invalid checkpoint file "+fCheckpoint+": "+line);
+		}
+		finally{
+			brCheckpoint.close();
+		}
+		for(String path:lengths.keySet()){ //Also the outputs that the process may not open again
+			File fOutput = new File(path);
+			if(!fOutput.exists() || fOutput.length()<lengths.get(path))
+				throw new IOException("The output "+fOutput+" is shorter than in the checkpoint "+fCheckpoint);
+			FileOutputStream fosOutput = new FileOutputStream(fOutput, true);
+			fosOutput.getChannel().truncate(lengths.get(path));
+			fosOutput.close();
+		}
+		System.out.println("\tResuming from "+fCheckpoint+" after "+done+" units");
+		return done;
+	}
+
+	/**
+	 * Opens an output of the process. If the output was in the last checkpoint, it is truncated
+	 * to its length at that point; otherwise it is truncated to 0, or kept as it is when the
+	 * process adds to an existing file.
+	 *
+	 * @param fOutput The output file.
+	 * @param append True if the process adds to the existing content of the file.
+	 * @return The writer of the output.
+	 */
+	public PrintWriter getWriter(File fOutput, boolean append) throws IOException{
+		String path = fOutput.getPath();
+		FileOutputStream fosOutput = new FileOutputStream(fOutput, true);
+		Long length = lengths.get(path);
+		if(length==null)
+			length = append ? fosOutput.getChannel().size() : 0;
+		if(fosOutput.getChannel().size()<length){
+			fosOutput.close();
+			throw new IOException("The output "+fOutput+" is shorter than in the checkpoint "+fCheckpoint);
+		}
+		fosOutput.getChannel().truncate(length);
+		lengths.put(path, length);
+		streams.put(path, fosOutput);
+		PrintWriter pwOutput = new PrintWriter(new BufferedWriter(new OutputStreamWriter(CompressedFiles.wrapOutput(fOutput, fosOutput)), 1<<16));
+		writers.put(path, pwOutput);
+		return pwOutput;
+	}
+
+	/**
+	 * Opens an output of the process, truncated to its length in the last checkpoint.
+	 *
+	 * @param fOutput The output file.
+	 * @return The writer of the output.
+	 */
+	public PrintWriter getWriter(File fOutput) throws IOException{
+		return this.getWriter(fOutput, false);
+	}
+
+	/**
+	 * Checks if it is time for a new checkpoint.
+	 */
+	public boolean isDue(){
+		return System.currentTimeMillis()-lastSave>=interval;
+	}
+
+	/**
+	 * Stores a checkpoint. It must be called when all the output of the units done is written.
+	 *
+	 * @param done The number of input units done.
+	 */
+	public void save(long done) throws IOException{
+		for(String path:writers.keySet()){
+			PrintWriter pwOutput = writers.get(path);
+			if(pwOutput.checkError())
+				throw new IOException("Error writing "+path);
+			FileOutputStream fosOutput = streams.get(path);
+			fosOutput.getFD().sync();
+			lengths.put(path, fosOutput.getChannel().size());
+		}
+		File fTmp = new File(fCheckpoint.getPath()+".tmp");
+		FileOutputStream fosCheckpoint = new FileOutputStream(fTmp);
+		PrintWriter pwCheckpoint = new PrintWriter(new OutputStreamWriter(fosCheckpoint, "UTF-8"));
+		pwCheckpoint.println("done "+done);
+		for(String path:lengths.keySet())
+			pwCheckpoint.println("output "+lengths.get(path)+" "+path);
+		pwCheckpoint.flush();
+		fosCheckpoint.getFD().sync();
+		pwCheckpoint.close();
+		Files.move(fTmp.toPath(), fCheckpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.done = done;
+		this.lastSave = System.currentTimeMillis();
+	}
+
+	/**
+	 * Stores a checkpoint if it is time for a new one.
+	 *
+	 * @param done The number of input units done.
+	 */
+	public void update(long done) throws IOException{
+		if(this.isDue())
+			this.save(done);
+	}
+
+	/**
+	 * Closes the outputs when the process is finished and deletes the checkpoint.
+	 */
+	public void finish() throws IOException{
+		for(String path:writers.keySet()){
+			PrintWriter pwOutput = writers.get(path);
+			pwOutput.close();
+			if(pwOutput.checkError())
+				throw new IOException("Error writing "+path);
+		}
+		writers.clear();
+		streams.clear();
+		fCheckpoint.delete();
+	}
+
+	/**
+	 * Closes the outputs after an error, keeping the last checkpoint.
+	 */
+	public void abort(){
+		for(PrintWriter pwOutput:writers.values())
+			pwOutput.close();
+		writers.clear();
+		streams.clear();
+	}
+
+	public long getDone() {
+		return done;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Passes the similarities to another writer and stores periodic checkpoints with the number of
+ * focus patents done. The focus patents must arrive in ordinal order, and the other writer must
+ * write through an output of the checkpoint.
+  */
+package code;
+
+import java.io.IOException;
+
+public class CheckpointSimilarityWriter implements SimilarityWriter {
+
+	private SimilarityWriter writer;
+	private Checkpoint checkpoint;
+
+	/**
+	 * Constructor
+	 *
+	 * @param writer The writer that stores the similarities.
+	 * @param checkpoint The checkpoint of the year.
+	 */
+	public CheckpointSimilarityWriter(SimilarityWriter writer, Checkpoint checkpoint){
+		this.writer = writer;
+		this.checkpoint = checkpoint;
+	}
+
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+		checkpoint.update(patentA); //All the patents before patent A are written
+		writer.write(patentA, patentsB, intersections, count);
+	}
+
+	public void close() throws IOException{
+		writer.close();
+		checkpoint.finish();
+	}
+}
@@ -0,0 +1,431 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Opens the files of the pipeline, compressed with gzip when their name ends with .gz.
+ * The compression and decompression run in a thread of their own for each file, which passes
+ * blocks of bytes to the process through a queue, so the codec work overlaps the parsing and the
+ * computation of the pairs.
+ * A flush of a compressed output ends the current gzip member (a file can have several members one
+ * after the other), so the length of the file after a flush is a valid point to truncate it, as the
+ * checkpoints do, or to append to it. The shards of an output can also be joined byte by byte.
+ * A missing file is also looked for with or without .gz, so a stage can read the files of a previous
+ * stage that were compressed later, or run with a different extension.
+ * The extension of the large files of the pipeline (raw data, bag-of-words, indexed data and
+ * similarities) is set with setExtension.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressedFiles {
+
+	public static final String GZIP = ".gz";
+	private static final int BLOCK_SIZE = 1<<16;
+	private static final int QUEUE_BLOCKS = 4; //Blocks that the codec thread can be ahead of the process
+
+	private static String extension = "";
+
+	/**
+	 * Sets the extension added to the names of the large files of the pipeline (.gz to compress
+	 * them, empty by default).
+	 */
+	public static void setExtension(String extension) {
+		CompressedFiles.extension = extension;
+	}
+
+	public static String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Returns a large file of the pipeline, with the extension that is set.
+	 *
+	 * @param dir The directory of the file.
+	 * @param name The name of the file without the extension (for example patents_indexed.txt).
+	 */
+	public static File getFile(File dir, String name){
+		return new File(dir, name+extension);
+	}
+
+	/**
+	 * Checks if a file is compressed, by its extension.
+	 */
+	public static boolean isCompressed(File file){
+		return file.getName().endsWith(GZIP);
+	}
+
+	/**
+	 * Returns the file to read: the file itself, or the same file with or without .gz if only that
+	 * one exists.
+	 *
+	 * @param file The file.
+	 */
+	public static File find(File file){
+		if(file.exists())
+			return file;
+		String path = file.getPath();
+		File fOther = isCompressed(file) ? new File(path.substring(0, path.length()-GZIP.length())) : new File(path+GZIP);
+		return fOther.exists() ? fOther : file;
+	}
+
+	/**
+	 * Opens a file to read its bytes, decompressed in a thread of its own if it is compressed.
+	 *
+	 * @param file The file.
+	 */
+	public static InputStream openInput(File file) throws IOException{
+		File fInput = find(file);
+		InputStream isInput = new FileInputStream(fInput);
+		if(!isCompressed(fInput))
+			return isInput;
+		try{
+			return new BackgroundInputStream(new GZIPInputStream(isInput, BLOCK_SIZE), fInput.getName());
+		}
+		catch(IOException e){
+			isInput.close();
+			throw new IOException("Invalid compressed file "+fInput, e);
+		}
+	}
+
+	/**
+	 * Opens a file to write bytes, compressed in a thread of its own if its name ends with .gz.
+	 *
+	 * @param file The file.
+	 * @param append True to add to the existing content of the file.
+	 */
+	public static OutputStream openOutput(File file, boolean append) throws IOException{
+		return wrapOutput(file, new FileOutputStream(file, append));
+	}
+
+	/**
+	 * Adds the compression of a file to a stream that writes it, if its name ends with .gz.
+	 *
+	 * @param file The file.
+	 * @param osOutput The stream that writes the file.
+	 */
+	public static OutputStream wrapOutput(File file, OutputStream osOutput){
+		if(!isCompressed(file))
+			return osOutput;
+		return new BackgroundOutputStream(osOutput, file.getName());
+	}
+
+	/**
+	 * Opens a text file to read, with the charset of the platform (as FileReader).
+	 *
+	 * @param file The file.
+	 */
+	public static BufferedReader newReader(File file) throws IOException{
+		return new BufferedReader(new InputStreamReader(openInput(file)));
+	}
+
+	/**
+	 * Opens a text file to read.
+	 *
+	 * @param file The file.
+	 * @param charset The charset of the file.
+	 */
+	public static BufferedReader newReader(File file, Charset charset) throws IOException{
+		return new BufferedReader(new InputStreamReader(openInput(file), charset));
+	}
+
+	/**
+	 * Opens a text file to write, with the charset of the platform (as PrintWriter).
+	 *
+	 * @param file The file.
+	 */
+	public static PrintWriter newWriter(File file) throws IOException{
+		return newWriter(file, false);
+	}
+
+	/**
+	 * Opens a text file to write, with the charset of the platform (as PrintWriter).
+	 *
+	 * @param file The file.
+	 * @param append True to add to the existing content of the file.
+	 */
+	public static PrintWriter newWriter(File file, boolean append) throws IOException{
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(openOutput(file, append)), BLOCK_SIZE));
+	}
+
+	/**
+	 * Stream that reads the blocks decompressed by a thread of its own.
+	 */
+	private static class BackgroundInputStream extends InputStream {
+		private static final byte[] END = new byte[0];
+
+		private final InputStream isSource;
+		private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<byte[]>(QUEUE_BLOCKS);
+		private final Thread thread;
+		private volatile IOException error = null;
+		private byte[] block = null;
+		private int pos = 0;
+		private boolean end = false;
+
+		BackgroundInputStream(InputStream isSource, String name){
+			this.isSource = isSource;
+			this.thread = new Thread(new Runnable(){
+				public void run(){
+					decompress();
+				}
+			}, "gunzip "+name);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		private void decompress(){
+			try{
+				try{
+					while(true){
+						byte[] buffer = new byte[BLOCK_SIZE];
+						int n = 0;
+						int read;
+						while(n<buffer.length && (read=isSource.read(buffer, n, buffer.length-n))>=0)
+							n += read;
+						if(n>0)
+							blocks.put(n==buffer.length ? buffer : Arrays.copyOf(buffer, n));
+						if(n<buffer.length)
+							break;
+					}
+				}
+				catch(IOException e){
+					error = e;
+				}
+				catch(RuntimeException e){
+					error = new IOException(e);
+				}
+				blocks.put(END);
+			}
+			catch(InterruptedException e){ //Closed before the end
+			}
+		}
+
+		public int read() throws IOException{
+			byte[] one = new byte[1];
+			return this.read(one, 0, 1)<0 ? -1 : one[0]&0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException{
+			if(len==0)
+				return 0;
+			while(block==null || pos==block.length){
+				if(end)
+					return -1;
+				try{
+					block = blocks.take();
+				}
+				catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while decompressing");
+				}
+				pos = 0;
+				if(block==END){
+					end = true;
+					if(error!=null)
+						throw new IOException(error.getMessage(), error);
+					return -1;
+				}
+			}
+			int n = Math.min(len, block.length-pos);
+			System.arraycopy(block, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+
+		public void close() throws IOException{
+			thread.interrupt();
+			try{
+				thread.join();
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			isSource.close();
+		}
+	}
+
+	/**
+	 * A gzip member of a compressed file.
+	 */
+	private static class Member extends GZIPOutputStream {
+		Member(OutputStream osTarget) throws IOException{
+			super(osTarget, BLOCK_SIZE);
+		}
+
+		/**
+		 * Writes the end of the member, keeping the file open.
+		 */
+		void end() throws IOException{
+			this.finish();
+			def.end();
+		}
+	}
+
+	/**
+	 * Stream that passes blocks of bytes to be compressed by a thread of its own.
+	 */
+	private static class BackgroundOutputStream extends OutputStream {
+		private static final byte[] FLUSH = new byte[0];
+		private static final byte[] CLOSE = new byte[0];
+
+		private final OutputStream osTarget;
+		private final BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<byte[]>(QUEUE_BLOCKS);
+		private final BlockingQueue<byte[]> done = new ArrayBlockingQueue<byte[]>(1); //Flushes and closes done
+		private final Thread thread;
+		private volatile IOException error = null;
+		private byte[] buffer = new byte[BLOCK_SIZE];
+		private int count = 0;
+		private boolean closed = false;
+
+		BackgroundOutputStream(OutputStream osTarget, String name){
+			this.osTarget = osTarget;
+			this.thread = new Thread(new Runnable(){
+				public void run(){
+					compress();
+				}
+			}, "gzip "+name);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		private void compress(){
+			Member gzOutput = null;
+			boolean members = false;
+			try{
+				while(true){
+					byte[] block = blocks.take();
+					if(block==FLUSH || block==CLOSE){
+						try{
+							if(gzOutput==null && !members && block==CLOSE) //An empty file is an empty member
+								gzOutput = new Member(osTarget);
+							if(gzOutput!=null){
+								gzOutput.end();
+								members = true;
+							}
+							gzOutput = null;
+							osTarget.flush();
+							if(block==CLOSE)
+								osTarget.close();
+						}
+						catch(IOException e){
+							if(error==null)
+								error = e;
+						}
+						done.put(block);
+						if(block==CLOSE)
+							return;
+						continue;
+					}
+					if(error!=null) //Discards the rest, the process gets the error
+						continue;
+					try{
+						if(gzOutput==null)
+							gzOutput = new Member(osTarget);
+						gzOutput.write(block);
+					}
+					catch(IOException e){
+						error = e;
+					}
+					catch(RuntimeException e){
+						error = new IOException(e);
+					}
+				}
+			}
+			catch(InterruptedException e){
+			}
+		}
+
+		private void checkError() throws IOException{
+			if(error!=null)
+				throw new IOException(error.getMessage(), error);
+		}
+
+		private void put(byte[] block) throws IOException{
+			try{
+				blocks.put(block);
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while compressing");
+			}
+		}
+
+		/**
+		 * Passes a command to the thread and waits until it is done.
+		 */
+		private void command(byte[] block) throws IOException{
+			if(count>0)
+				this.send();
+			this.put(block);
+			try{
+				done.take();
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while compressing");
+			}
+			this.checkError();
+		}
+
+		private void send() throws IOException{
+			this.checkError();
+			this.put(count==buffer.length ? buffer : Arrays.copyOf(buffer, count));
+			buffer = new byte[BLOCK_SIZE];
+			count = 0;
+		}
+
+		public void write(int b) throws IOException{
+			if(count==buffer.length)
+				this.send();
+			buffer[count++] = (byte)b;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException{
+			if(closed)
+				throw new IOException("Stream closed");
+			while(len>0){
+				if(count==buffer.length)
+					this.send();
+				int n = Math.min(len, buffer.length-count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/**
+		 * Writes the bytes passed so far, ending the current gzip member.
+		 */
+		public void flush() throws IOException{
+			if(!closed)
+				this.command(FLUSH);
+		}
+
+		public void close() throws IOException{
+			if(closed)
+				return;
+			closed = true;
+			this.command(CLOSE);
+		}
+	}
+}
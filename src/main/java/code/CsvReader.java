@@ -0,0 +1,380 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Streaming reader of CSV files (RFC 4180): fields separated by commas, optionally enclosed in
+ * double quotes, with "" for a quote inside a quoted field and line breaks allowed inside quoted
+ * fields. Records end with \n, \r\n or \r. A quote inside an unquoted field, or after the closing
+ * quote, is kept as a character.
+ * The records are read into a reusable char buffer and the fields are returned as views of the
+ * buffer (valid until the next record), so only the fields converted to String are copied.
+ * UTF-8 and US-ASCII files are decoded directly from the bytes; other charsets use a decoder.
+ * The content can also be read from a Reader (for example a chunk of a file).
+ * Columns can be selected by name (from the header) or by index.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+public class CsvReader {
+
+	/**
+	 * View of a field of the current record.
+	 */
+	private class Field implements CharSequence {
+		private int index;
+
+		Field(int index){
+			this.index = index;
+		}
+
+		public int length(){
+			return fieldEnds[index]-fieldStarts[index];
+		}
+
+		public char charAt(int i){
+			return buf[fieldStarts[index]+i];
+		}
+
+		public CharSequence subSequence(int start, int end){
+			return this.toString().substring(start, end);
+		}
+
+		public String toString(){
+			return new String(buf, fieldStarts[index], this.length());
+		}
+	}
+
+	private InputStream isInput;
+	private Reader rdInput = null; //Decoder of other charsets
+	private boolean ascii;
+	private byte[] bytes = new byte[1<<16];
+	private int bytePos = 0;
+	private int byteLimit = 0;
+	private boolean byteEof = false;
+	private char[] buf = new char[1<<16];
+	private int pos = 0;
+	private int limit = 0;
+	private int recordStart = 0;
+	private boolean skipLineFeed = false;
+	private int[] fieldStarts = new int[16];
+	private int[] fieldEnds = new int[16];
+	private Field[] fields = new Field[16];
+	private int numFields = 0;
+	private long numRecords = 0;
+	private LinkedHashMap<String, Integer> header = new LinkedHashMap<String, Integer>();
+
+	/**
+	 * Constructor
+	 *
+	 * @param fInput The CSV file.
+	 * @param charset The charset of the file.
+	 */
+	public CsvReader(File fInput, Charset charset) throws IOException{
+		this(CompressedFiles.openInput(fInput), charset);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param isInput The CSV content.
+	 * @param charset The charset of the content.
+	 */
+	public CsvReader(InputStream isInput, Charset charset){
+		this.isInput = isInput;
+		String name = charset.name();
+		this.ascii = name.equals("US-ASCII");
+		if(!ascii && !name.equals("UTF-8"))
+			this.rdInput = new InputStreamReader(isInput, charset);
+		for(int f=0;f<fields.length;f++)
+			fields[f] = new Field(f);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param rdInput The CSV content, already decoded.
+	 */
+	public CsvReader(Reader rdInput){
+		this.rdInput = rdInput;
+		for(int f=0;f<fields.length;f++)
+			fields[f] = new Field(f);
+	}
+
+	/**
+	 * Reads the first record as the names of the columns.
+	 *
+	 * @return False if the file is empty.
+	 */
+	public boolean readHeader() throws IOException{
+		if(!this.next())
+			return false;
+		for(int f=0;f<numFields;f++)
+			header.put(this.getString(f).trim(), f);
+		return true;
+	}
+
+	/**
+	 * Returns the index of a column given by its name in the header, or by its index (from 0).
+	 *
+	 * @param column The name or index of the column.
+	 * @return The index of the column.
+	 */
+	public int getColumn(String column) throws IOException{
+		Integer index = header.get(column);
+		if(index!=null)
+			return index;
+		try{
+			return Integer.parseInt(column);
+		}
+		catch(NumberFormatException e){
+			throw new IOException("Column not found in the header: "+column);
+		}
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return False at the end of the file.
+	 */
+	public boolean next() throws IOException{
+		numFields = 0;
+		if(skipLineFeed){ //Second character of \r\n
+			if(pos>=limit){
+				pos = 0;
+				limit = 0;
+				if(!this.fill())
+					return false;
+			}
+			if(buf[pos]=='\n')
+				pos++;
+			skipLineFeed = false;
+		}
+		if(pos>=limit){ //Nothing to keep in the buffer
+			pos = 0;
+			limit = 0;
+			if(!this.fill())
+				return false;
+		}
+		recordStart = pos;
+		int write = pos; //The unescaped field is written over the record
+		int fieldStart = write;
+		boolean fieldQuoted = false;
+		boolean inQuotes = false;
+		boolean afterQuote = false;
+		while(true){
+			if(pos>=limit){
+				int shift = this.compact();
+				write -= shift;
+				fieldStart -= shift;
+				if(!this.fill()){ //End of the file
+					this.addField(fieldStart, write);
+					numRecords++;
+					return true;
+				}
+			}
+			char c = buf[pos++];
+			if(inQuotes){
+				if(c=='"'){
+					inQuotes = false;
+					afterQuote = true;
+				}
+				else
+					buf[write++] = c;
+				continue;
+			}
+			if(c=='"'){
+				if(afterQuote){ //Escaped quote
+					buf[write++] = '"';
+					inQuotes = true;
+					afterQuote = false;
+				}
+				else if(write==fieldStart && !fieldQuoted){
+					fieldQuoted = true;
+					inQuotes = true;
+				}
+				else
+					buf[write++] = c;
+				continue;
+			}
+			afterQuote = false;
+			if(c==','){
+				this.addField(fieldStart, write);
+				fieldStart = write;
+				fieldQuoted = false;
+			}
+			else if(c=='\n' || c=='\r'){
+				this.addField(fieldStart, write);
+				skipLineFeed = c=='\r';
+				numRecords++;
+				return true;
+			}
+			else
+				buf[write++] = c;
+		}
+	}
+
+	private void addField(int start, int end){
+		if(numFields==fieldStarts.length){
+			fieldStarts = Arrays.copyOf(fieldStarts, numFields*2);
+			fieldEnds = Arrays.copyOf(fieldEnds, numFields*2);
+			fields = Arrays.copyOf(fields, numFields*2);
+			for(int f=numFields;f<fields.length;f++)
+				fields[f] = new Field(f);
+		}
+		fieldStarts[numFields] = start;
+		fieldEnds[numFields] = end;
+		numFields++;
+	}
+
+	/**
+	 * Moves the current record to the start of the buffer, growing it if the record fills it.
+	 *
+	 * @return The number of positions that the record moved.
+	 */
+	private int compact(){
+		int shift = recordStart;
+		if(shift>0){
+			System.arraycopy(buf, recordStart, buf, 0, limit-recordStart);
+			for(int f=0;f<numFields;f++){
+				fieldStarts[f] -= shift;
+				fieldEnds[f] -= shift;
+			}
+			recordStart = 0;
+			pos -= shift;
+			limit -= shift;
+		}
+		if(buf.length-limit<2) //Room for a surrogate pair
+			buf = Arrays.copyOf(buf, buf.length*2);
+		return shift;
+	}
+
+	/**
+	 * Reads more characters after the limit of the buffer.
+	 *
+	 * @return False at the end of the file.
+	 */
+	private boolean fill() throws IOException{
+		int start = limit;
+		if(rdInput!=null){
+			int n = rdInput.read(buf, limit, buf.length-limit);
+			if(n>0)
+				limit += n;
+			return n>0;
+		}
+		int capacity = buf.length-1; //Room for a surrogate pair
+		while(limit<capacity){
+			if(bytePos>=byteLimit && !this.readBytes())
+				break;
+			int b;
+			while(bytePos<byteLimit && limit<capacity && (b=bytes[bytePos])>=0){ //ASCII
+				buf[limit++] = (char)b;
+				bytePos++;
+			}
+			if(bytePos<byteLimit && limit<capacity && bytes[bytePos]<0)
+				this.decodeMultibyte();
+		}
+		return limit>start;
+	}
+
+	private boolean readBytes() throws IOException{
+		if(byteEof)
+			return false;
+		if(bytePos<byteLimit){ //Keeps the bytes of an incomplete character
+			System.arraycopy(bytes, bytePos, bytes, 0, byteLimit-bytePos);
+			byteLimit -= bytePos;
+		}
+		else
+			byteLimit = 0;
+		bytePos = 0;
+		int n = isInput.read(bytes, byteLimit, bytes.length-byteLimit);
+		if(n<0){
+			byteEof = true;
+			return byteLimit>0;
+		}
+		byteLimit += n;
+		return true;
+	}
+
+	/**
+	 * Decodes a UTF-8 sequence of several bytes (or a byte that is not ASCII in US-ASCII),
+	 * replacing invalid sequences with U+FFFD.
+	 */
+	private void decodeMultibyte() throws IOException{
+		int b = bytes[bytePos]&0xFF;
+		int length = ascii || b>=0xF5 ? 1 : b>=0xF0 ? 4 : b>=0xE0 ? 3 : b>=0xC2 ? 2 : 1;
+		if(length==1){
+			buf[limit++] = '\uFFFD';
+			bytePos++;
+			return;
+		}
+		while(byteLimit-bytePos<length && !byteEof) //A read can return only part of the sequence
+			this.readBytes(); //May still be incomplete at the end of the file
+		int code = b&(0xFF>>(length+1));
+		int n = 1;
+		while(n<length && bytePos+n<byteLimit && (bytes[bytePos+n]&0xC0)==0x80){
+			code = (code<<6)|(bytes[bytePos+n]&0x3F);
+			n++;
+		}
+		if(n<length || (length==3 && (code<0x800 || (code>=0xD800 && code<0xE000))) || (length==4 && (code<0x10000 || code>0x10FFFF))){
+			buf[limit++] = '\uFFFD';
+			bytePos += n;
+			return;
+		}
+		bytePos += length;
+		if(code>=0x10000){
+			buf[limit++] = Character.highSurrogate(code);
+			buf[limit++] = Character.lowSurrogate(code);
+		}
+		else
+			buf[limit++] = (char)code;
+	}
+
+	/**
+	 * Returns the number of fields of the current record.
+	 */
+	public int getNumFields() {
+		return numFields;
+	}
+
+	/**
+	 * Returns a view of a field of the current record, valid until the next record.
+	 *
+	 * @param field The index of the field.
+	 */
+	public CharSequence getField(int field){
+		return fields[field];
+	}
+
+	/**
+	 * Returns a copy of a field of the current record.
+	 *
+	 * @param field The index of the field.
+	 */
+	public String getString(int field){
+		return new String(buf, fieldStarts[field], fieldEnds[field]-fieldStarts[field]);
+	}
+
+	/**
+	 * Returns the number of records read, including the header.
+	 */
+	public long getNumRecords() {
+		return numRecords;
+	}
+
+	public void close() throws IOException{
+		if(rdInput!=null)
+			rdInput.close();
+		else
+			isInput.close();
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Bitsets for the keywords that occur in a large fraction of the patents of a year.
+ * Each of these keywords gets a bit, and each patent that has at least one of them gets a mask
+ * with its bits. The number of frequent keywords shared by two patents is then the number of
+ * bits set in the AND of their masks, which is computed one 64 bit word at a time instead of
+ * visiting one posting per patent and keyword.
+  */
+package code;
+
+import java.util.Arrays;
+
+public class FrequentTermBitsets {
+
+	private int[] termBits; //Bit of each keyword, -1 if the keyword is not frequent
+	private int numWords;
+	private int[] maskedPatents; //Patents with at least one frequent keyword, sorted by ordinal
+	private int[] maskPositions; //Position of each patent in maskedPatents, -1 if it has no mask
+	private long[] masks; //numWords words per masked patent
+
+	/**
+	 * Constructor. Selects the frequent keywords of an index and builds the mask of each patent.
+	 *
+	 * @param index The patent index.
+	 * @param minDf The minimum document frequency of a frequent keyword.
+	 * @param maxTerms The maximum number of frequent keywords, the most frequent ones are kept.
+	 */
+	public FrequentTermBitsets(PatentIndex index, int minDf, int maxTerms){
+		int numTerms = index.getNumTerms();
+		IntList frequent = new IntList();
+		for(int t=0;t<numTerms;t++){
+			if(index.df(t)>=minDf)
+				frequent.add(t);
+		}
+		long[] byDf = new long[frequent.size()]; //Sorts by decreasing document frequency
+		for(int i=0;i<byDf.length;i++)
+			byDf[i] = ((long)(Integer.MAX_VALUE-index.df(frequent.get(i)))<<32)|frequent.get(i);
+		Arrays.sort(byDf);
+		int numBits = Math.min(byDf.length, maxTerms);
+		this.numWords = (numBits+63)/64;
+		this.termBits = new int[numTerms];
+		Arrays.fill(termBits, -1);
+		for(int i=0;i<numBits;i++)
+			termBits[(int)byDf[i]] = i;
+
+		int numPatents = index.getNumPatents();
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] patentTerms = index.getPatentTerms();
+		this.maskPositions = new int[numPatents];
+		Arrays.fill(maskPositions, -1);
+		IntList patents = new IntList();
+		for(int p=0;p<numPatents && numBits>0;p++){
+			for(int i=patentOffsets[p];i<patentOffsets[p+1];i++){
+				if(termBits[patentTerms[i]]>=0){
+					maskPositions[p] = patents.size();
+					patents.add(p);
+					break;
+				}
+			}
+		}
+		this.maskedPatents = patents.toArray();
+		this.masks = new long[maskedPatents.length*numWords];
+		for(int m=0;m<maskedPatents.length;m++){
+			int p = maskedPatents[m];
+			for(int i=patentOffsets[p];i<patentOffsets[p+1];i++){
+				int bit = termBits[patentTerms[i]];
+				if(bit>=0)
+					masks[m*numWords+(bit>>>6)] |= 1L<<(bit&63);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a keyword is stored in the bitsets.
+	 *
+	 * @param term The keyword index.
+	 * @return True if the keyword is frequent.
+	 */
+	public boolean isFrequent(int term){
+		return termBits[term]>=0;
+	}
+
+	public int getNumTerms(){
+		int n = 0;
+		for(int bit:termBits){
+			if(bit>=0)
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Adds the number of frequent keywords shared by a focus patent (patent A) and every patent
+	 * with a greater ordinal to an accumulator.
+	 *
+	 * @param patentA The ordinal of the focus patent.
+	 * @param values The array that accumulates the intersections.
+	 * @param touched The array with the ordinals of the patents found.
+	 * @param nTouched The number of patents found before this call.
+	 * @return The number of patents found after this call.
+	 */
+	public int addIntersections(int patentA, int[] values, int[] touched, int nTouched){
+		int position = maskPositions[patentA];
+		if(position<0)
+			return nTouched;
+		int baseA = position*numWords;
+		if(numWords==1){ //Most common case, a single word per patent
+			long maskA = masks[baseA];
+			for(int m=position+1;m<maskedPatents.length;m++){
+				int shared = Long.bitCount(maskA&masks[m]);
+				if(shared>0){
+					int patentB = maskedPatents[m];
+					if(values[patentB]==0)
+						touched[nTouched++] = patentB;
+					values[patentB] += shared;
+				}
+			}
+			return nTouched;
+		}
+		for(int m=position+1;m<maskedPatents.length;m++){
+			int baseB = m*numWords;
+			int shared = 0;
+			for(int w=0;w<numWords;w++)
+				shared += Long.bitCount(masks[baseA+w]&masks[baseB+w]);
+			if(shared>0){
+				int patentB = maskedPatents[m];
+				if(values[patentB]==0)
+					touched[nTouched++] = patentB;
+				values[patentB] += shared;
+			}
+		}
+		return nTouched;
+	}
+}
@@ -0,0 +1,382 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Preprocesses the raw patent data into the indexed data of each year (the input of Stage05) in two
+ * passes over the CSV file, instead of writing and reading again the intermediate files of the
+ * stages 01 to 04.
+ * The first pass counts the number of documents where each word occurs and extracts the vocabulary,
+ * pruned as in Stage01PreprocessData.extractVocabulary (a ceiling of documents adds a pass that
+ * counts the documents of each year of the candidate stopwords). The second pass creates the
+ * bag-of-words of each patent, cleans it with the vocabulary, codifies it and writes it directly to
+ * the file of its year.
+ * The result is the same as with the stages: vocabulary_raw.txt, vocabulary.txt, patents_numbers.txt,
+ * patents_years.txt, patents_idxs.txt and the years directory. The document frequencies are stored
+ * in vocabulary_df.txt for IncrementalUpdate. The bag-of-words, clean and indexed files
+ * (patents_terms_raw.txt, patents_terms.txt and patents_indexed.txt) are only written on request.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class FusedPreprocessing {
+
+	private Stage01PreprocessData ppd;
+	private Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+	private Stage04SplitDataPerYear sdpy = new Stage04SplitDataPerYear(); //Range of years of the data
+	private int threshold = 2;
+	private boolean intermediateFiles = false;
+
+	/**
+	 * Patents of a chunk kept after cleaning: the end of the number and of the indexed line of each
+	 * one in the outputs of the chunk, and the output of its year (-1 for years out of range).
+	 */
+	private static class ChunkPatents {
+		private IntList numberEnds = new IntList();
+		private IntList indexedEnds = new IntList();
+		private IntList yearOutputs = new IntList();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param ppd The preprocessing settings (charset, columns, stopwords, ceiling of documents,
+	 * term counts and threads).
+	 */
+	public FusedPreprocessing(Stage01PreprocessData ppd){
+		this.ppd = ppd;
+	}
+
+	/**
+	 * Sets the minimum number of documents where a word should occur (2 by default).
+	 */
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Sets the range of years of the data (1900 to 2016 by default), as in
+	 * Stage04SplitDataPerYear. The patents of other years are not added to the year files, and are
+	 * reported.
+	 *
+	 * @param minYear The first year.
+	 * @param maxYear The last year.
+	 */
+	public void setYears(int minYear, int maxYear) {
+		sdpy.setYears(minYear, maxYear);
+	}
+
+	/**
+	 * Sets if the intermediate files of the stages (patents_terms_raw.txt, patents_terms.txt and
+	 * patents_indexed.txt) are also written (false by default).
+	 */
+	public void setIntermediateFiles(boolean intermediateFiles) {
+		this.intermediateFiles = intermediateFiles;
+	}
+
+	/**
+	 * Counts the number of documents where each word occurs in the raw patent data, and the number
+	 * of documents of each year. Only the patents with some word are documents, as in the
+	 * bag-of-words file. Each thread counts in its own TermCounter, and the counters are merged at
+	 * the end.
+	 *
+	 * @param fData The raw patent data in CSV format.
+	 * @param sw The stopword list.
+	 * @param df The map to store the number of documents of each word.
+	 * @param yearDocs The map to store the number of documents of each year.
+	 * @return The number of documents.
+	 */
+	public int countDocumentFrequencies(File fData, StopWords sw, LinkedHashMap<String, Integer> df, LinkedHashMap<String, Integer> yearDocs) throws IOException{
+		final Metrics.Phase phase = Metrics.get().start("fused.countDocumentFrequencies", "documents", "Stage");
+		List<TermCounter> wordCounters = new ArrayList<TermCounter>();
+		List<TermCounter> yearCounters = new ArrayList<TermCounter>();
+		final ThreadLocal<TermCounter> threadWords = TermCounter.perThread(wordCounters);
+		final ThreadLocal<TermCounter> threadYears = TermCounter.perThread(yearCounters);
+		ppd.readBagofWords(fData, 0, sw, new Stage01PreprocessData.BagofWordsHandler(){
+			public void add(ParallelLines.Chunk chunk, long nDoc, String patentNum, String year, String[] words, int[] counts, int nWords){
+				if(nWords==0)
+					return;
+				threadYears.get().add(year, 0, year.length(), nDoc, 0);
+				TermCounter wordCounter = threadWords.get();
+				for(int i=0;i<nWords;i++)
+					wordCounter.add(words[i], 0, words[i].length(), nDoc, i);
+			}
+		}, new ParallelLines.ChunkWriter(){
+			public void write(ParallelLines.Chunk chunk){
+				if(chunk.getEndLine()/100000>chunk.getFirstLine()/100000){ //Outputs the progress of this process
+					phase.progress(chunk.getEndLine());
+				}
+			}
+		});
+		TermCounter.merge(wordCounters).toMap(df, 0); //In order of first occurrence
+		TermCounter.merge(yearCounters).toMap(yearDocs, 0);
+		int nDocs = 0;
+		for(int nYear:yearDocs.values())
+			nDocs += nYear;
+		phase.set("words", df.size());
+		phase.set("bytesRead", fData.length());
+		phase.end(nDocs);
+		return nDocs;
+	}
+
+	/**
+	 * Extracts the vocabulary from the raw patent data (first pass), pruned with the minimum number
+	 * of documents and the ceiling of documents if there is one, and stores the vocabulary, its
+	 * codes and the document frequencies of all the words.
+	 *
+	 * @param fData The raw patent data in CSV format.
+	 * @param fMainDir The working directory.
+	 * @param sw The stopword list.
+	 * @param vocabularyCodes The map to store the code of each word of the vocabulary.
+	 * @param yearDocs The map to store the number of documents of each year.
+	 */
+	public void extractVocabulary(File fData, File fMainDir, StopWords sw, LinkedHashMap<String, String> vocabularyCodes, LinkedHashMap<String, Integer> yearDocs) throws IOException{
+		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
+		int nDocs = this.countDocumentFrequencies(fData, sw, vocabulary, yearDocs);
+		new IncrementalUpdate(fMainDir, threshold).writeDocumentFrequencies(new File(fMainDir, "vocabulary_df.txt"), vocabulary);
+		ppd.pruneVocabulary(vocabulary, threshold);
+		if(ppd.hasMaxDf())
+			ppd.pruneVocabularyMaxDf(fData, true, vocabulary, yearDocs, nDocs);
+		File fVocabulary = new File(fMainDir, "vocabulary_raw.txt");
+		File fVocabularyIdxs = new File(fMainDir, "vocabulary.txt");
+		PrintWriter pwVocabulary = CompressedFiles.newWriter(fVocabulary);
+		PrintWriter pwVocabularyIdxs = CompressedFiles.newWriter(fVocabularyIdxs);
+		for(String word:vocabulary.keySet()){
+			String code = cip.convertToCode(vocabularyCodes.size());
+			pwVocabulary.println(word);
+			pwVocabularyIdxs.println(code+" "+word); //Stores the codified word and the original one
+			vocabularyCodes.put(word, code);
+		}
+		pwVocabulary.close();
+		pwVocabularyIdxs.close();
+		System.out.println("\tVocabulary = "+vocabularyCodes.size());
+	}
+
+	/**
+	 * Creates the bag-of-words of each patent of the raw patent data (second pass), cleans it with
+	 * the vocabulary and the learned stopwords of its year, codifies it and writes it to the file of
+	 * its year, together with the patent numbers, years and codes of the patents kept.
+	 * Stores periodic checkpoints, and resumes from the last one if the process was interrupted.
+	 *
+	 * @param fData The raw patent data in CSV format.
+	 * @param fMainDir The working directory.
+	 * @param sw The stopword list (the same of the first pass).
+	 * @param vocabularyCodes The code of each word of the vocabulary.
+	 * @param yearDocs The number of documents of each year.
+	 */
+	public void indexPatents(File fData, File fMainDir, StopWords sw, final LinkedHashMap<String, String> vocabularyCodes, LinkedHashMap<String, Integer> yearDocs) throws IOException{
+		final LearnedStopWords learned = ppd.readYearStopWords();
+		final boolean termCounts = ppd.isTermCounts();
+		final LinkedHashMap<String, Integer> yearOutputs = new LinkedHashMap<String, Integer>(); //Output of each year in the chunks
+		for(String year:yearDocs.keySet()){
+			if(sdpy.isDataYear(year))
+				yearOutputs.put(year, yearOutputs.size());
+		}
+		final String[] outputYears = yearOutputs.keySet().toArray(new String[yearOutputs.size()]);
+		final File yearsDir = new File(fMainDir+"/years");
+		if (!yearsDir.exists())  //Create directory if it does not exist
+			yearsDir.mkdirs();
+		final File fPatentsIdxs = new File(fMainDir, "patents_idxs.txt");
+		File fPatentsNum = new File(fMainDir, "patents_numbers.txt");
+		final Metrics.Phase phase = Metrics.get().start("fused.indexPatents", "documents", "Stage");
+		final Checkpoint checkpoint = Checkpoint.forOutput(fPatentsIdxs);
+		final LinkedHashMap<String, PrintWriter> years = new LinkedHashMap<String, PrintWriter>();
+		final int[] nPatents = {this.countLines(fPatentsNum)}; //Patents kept before the checkpoint
+		long nDocs = 0;
+		try{
+			long done = checkpoint.resume();
+			final PrintWriter pwNumbers = checkpoint.getWriter(fPatentsNum);
+			final PrintWriter pwYears = checkpoint.getWriter(new File(fMainDir, "patents_years.txt"));
+			final PrintWriter pwIdxs = checkpoint.getWriter(fPatentsIdxs);
+			final PrintWriter pwTerms = intermediateFiles ? checkpoint.getWriter(CompressedFiles.getFile(fMainDir, "patents_terms_raw.txt")) : null;
+			final PrintWriter pwClean = intermediateFiles ? checkpoint.getWriter(CompressedFiles.getFile(fMainDir, "patents_terms.txt")) : null;
+			final PrintWriter pwIndexed = intermediateFiles ? checkpoint.getWriter(CompressedFiles.getFile(fMainDir, "patents_indexed.txt")) : null;
+			nDocs = ppd.readBagofWords(fData, done, sw, new Stage01PreprocessData.BagofWordsHandler(){ //Skip the documents done before the checkpoint
+				public void add(ParallelLines.Chunk chunk, long nDoc, String patentNum, String year, String[] words, int[] counts, int nWords){
+					if(nWords==0){
+						System.out.println(nDoc);
+						return;
+					}
+					if(intermediateFiles)
+						ppd.appendBagofWords(chunk.getOutput(3), patentNum, year, words, counts, nWords);
+					int nClean = 0;
+					for(int i=0;i<nWords;i++){ //Removes the words that are not in the vocabulary
+						if(vocabularyCodes.get(words[i])!=null && (learned==null || !learned.isStopWord(words[i], year))){
+							words[nClean] = words[i];
+							counts[nClean] = counts[i];
+							nClean++;
+						}
+					}
+					if(nClean==0)
+						return;
+					if(chunk.getResult()==null)
+						chunk.setResult(new ChunkPatents());
+					ChunkPatents patents = (ChunkPatents)chunk.getResult();
+					StringBuilder sbNumbers = chunk.getOutput(0);
+					sbNumbers.append(patentNum);
+					patents.numberEnds.add(sbNumbers.length());
+					chunk.getOutput(1).append(year).append(ParallelLines.LINE_SEPARATOR);
+					StringBuilder sbIndexed = chunk.getOutput(2); //The indexed line without the patent code
+					sbIndexed.append(' ').append(nClean);
+					for(int i=0;i<nClean;i++){
+						sbIndexed.append(' ').append(vocabularyCodes.get(words[i])).append(':').append(termCounts ? counts[i] : 1);
+					}
+					sbIndexed.append(ParallelLines.LINE_SEPARATOR);
+					patents.indexedEnds.add(sbIndexed.length());
+					Integer output = yearOutputs.get(year); //The patents out of the range of years are reported at the end
+					patents.yearOutputs.add(output==null ? -1 : output);
+					if(intermediateFiles){
+						StringBuilder sbClean = chunk.getOutput(4);
+						sbClean.append(patentNum).append(';').append(nClean).append(';');
+						for(int i=0;i<nClean;i++){
+							if(i>0)
+								sbClean.append(' ');
+							sbClean.append(words[i]);
+							if(termCounts)
+								sbClean.append(':').append(counts[i]);
+						}
+						sbClean.append(ParallelLines.LINE_SEPARATOR);
+					}
+				}
+			}, new ParallelLines.ChunkWriter(){
+				public void write(ParallelLines.Chunk chunk) throws IOException{ //Codifies the patents in order
+					ChunkPatents patents = (ChunkPatents)chunk.getResult();
+					if(patents!=null){
+						boolean opened = false;
+						for(int p=0;p<patents.yearOutputs.size();p++){ //Opens the new year files before writing the chunk
+							int output = patents.yearOutputs.get(p);
+							if(output>=0 && years.get(outputYears[output])==null){
+								File fYear = CompressedFiles.getFile(yearsDir, "patents_indexed_"+outputYears[output]+".txt");
+								years.put(outputYears[output], checkpoint.getWriter(fYear));
+								opened = true;
+							}
+						}
+						if(opened)
+							checkpoint.save(chunk.getFirstLine()-1); //Stores the initial length of the year files
+						StringBuilder sbNumbers = chunk.getOutput(0);
+						StringBuilder sbIndexed = chunk.getOutput(2);
+						int numberStart = 0;
+						int indexedStart = 0;
+						for(int p=0;p<patents.numberEnds.size();p++){
+							String code = cip.convertToCode(nPatents[0]);
+							String patentNum = sbNumbers.substring(numberStart, patents.numberEnds.get(p));
+							pwNumbers.println(patentNum);
+							pwIdxs.println(code+" "+patentNum); //Stores the codified patent number and the original one
+							int output = patents.yearOutputs.get(p);
+							if(output>=0){
+								PrintWriter pwYear = years.get(outputYears[output]);
+								pwYear.print(code);
+								pwYear.append(sbIndexed, indexedStart, patents.indexedEnds.get(p));
+							}
+							if(pwIndexed!=null){
+								pwIndexed.print(code);
+								pwIndexed.append(sbIndexed, indexedStart, patents.indexedEnds.get(p));
+							}
+							numberStart = patents.numberEnds.get(p);
+							indexedStart = patents.indexedEnds.get(p);
+							nPatents[0]++;
+						}
+						pwYears.append(chunk.getOutput(1));
+						if(intermediateFiles)
+							pwClean.append(chunk.getOutput(4));
+					}
+					if(pwTerms!=null && chunk.hasOutput(3))
+						pwTerms.append(chunk.getOutput(3));
+					long nDocs = chunk.getEndLine()-1; //Without the header
+					checkpoint.update(nDocs);
+					if(nDocs/100000>(chunk.getFirstLine()-1)/100000){ //Outputs the progress of this process
+						phase.progress(nDocs);
+					}
+				}
+			});
+			checkpoint.finish();
+		}
+		catch(Throwable e){ //Closes the outputs, keeping the last checkpoint
+			checkpoint.abort();
+			throw e;
+		}
+		long bytesWritten = 0;
+		for(String yearName:years.keySet())
+			bytesWritten += CompressedFiles.getFile(yearsDir, "patents_indexed_"+yearName+".txt").length();
+		phase.set("patents", nPatents[0]);
+		phase.set("years", years.size());
+		ArrayList<String> alYears = new ArrayList<String>();
+		sdpy.readYears(new File(fMainDir, "patents_years.txt"), alYears); //Also the patents before the checkpoint
+		phase.set("dropped", sdpy.reportDropped(alYears));
+		phase.set("bytesRead", fData.length());
+		phase.set("bytesWritten", bytesWritten);
+		phase.end(nDocs);
+		System.out.println("\tTotal patents = "+nPatents[0]);
+	}
+
+	/**
+	 * Counts the lines of a file (0 if it does not exist).
+	 */
+	private int countLines(File fInput) throws IOException{
+		if(!fInput.exists())
+			return 0;
+		int nLines = 0;
+		BufferedReader brContent = CompressedFiles.newReader(fInput);
+		while(brContent.readLine()!=null)
+			nLines++;
+		brContent.close();
+		return nLines;
+	}
+
+	/**
+	 * Preprocesses the raw patent data into the indexed data of each year in two passes.
+	 *
+	 * @param fData The raw patent data in CSV format.
+	 * @param fMainDir The working directory.
+	 */
+	public void preprocess(File fData, File fMainDir) throws IOException{
+		StopWords sw = ppd.getStopWords(); //Loaded before learning new stopwords, as in the stages
+		LinkedHashMap<String, String> vocabularyCodes = new LinkedHashMap<String, String>();
+		LinkedHashMap<String, Integer> yearDocs = new LinkedHashMap<String, Integer>();
+		System.out.println("Extracting vocabulary...");
+		this.extractVocabulary(fData, fMainDir, sw, vocabularyCodes, yearDocs);
+		System.out.println("Indexing patent data per year...");
+		this.indexPatents(fData, fMainDir, sw, vocabularyCodes, yearDocs);
+	}
+
+	public static void main(String[] args) throws IOException{
+		Stage01PreprocessData ppd = new Stage01PreprocessData();
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fData = CompressedFiles.getFile(fMainDir, "patent_data_raw.csv"); //Raw patent data in CSV format
+		File fLearned = new File(fMainDir, "stopwords_learned.txt"); //Stopwords learned by the ceiling of documents
+		File fReport = new File(fMainDir, "stopwords_learned_report.txt"); //Pairs of patents that share each learned stopword
+		int threshold = 2; //Minimum number of documents where a word should occur
+		int maxDf = 0; //Maximum number of documents where a word can occur (0 for no limit)
+		double maxDfRatio = 0.0; //Maximum ratio of documents where a word can occur, e.g. 0.3 (0 for no limit)
+		boolean maxDfPerYear = false; //Apply the ceiling to the documents of each year
+		boolean termCounts = false; //Keep the number of times each word occurs in a patent (needed for TF-IDF similarities)
+		boolean intermediateFiles = false; //Also write patents_terms_raw.txt, patents_terms.txt and patents_indexed.txt
+		int minYear = 1900; //First year of the data
+		int maxYear = 2016; //Last year of the data (the patents of later years are reported and not split)
+		int numThreads = Runtime.getRuntime().availableProcessors(); //Number of threads that transform the records (the output does not change)
+
+		ppd.setCharset(Charset.forName("UTF-8")); //Charset of the raw patent data
+		ppd.setColumns("0", "1", "2", "3"); //Columns (name or index) of the patent number, year, title and abstract
+		ppd.setTermCounts(termCounts);
+		ppd.setMaxDf(maxDf, maxDfRatio, maxDfPerYear);
+		ppd.setLearnedStopWords(fLearned, fReport);
+		ppd.setNumThreads(numThreads);
+		FusedPreprocessing fp = new FusedPreprocessing(ppd);
+		fp.setThreshold(threshold);
+		fp.setIntermediateFiles(intermediateFiles);
+		fp.setYears(minYear, maxYear);
+		fp.preprocess(fData, fMainDir);
+		Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "fused"));
+	}
+}
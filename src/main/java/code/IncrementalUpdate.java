@@ -0,0 +1,499 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Adds a new batch of patents (a CSV file in the same format as the raw patent data) to the
+ * data of a working directory without rebuilding the pipeline.
+ * Only the new patents are tokenized. The document frequencies of all the words (also the pruned
+ * ones) are stored in vocabulary_df.txt, so the words that reach the minimum number of documents
+ * are added at the end of the vocabulary, and the new patents get the next codes, without changing
+ * the existing ones. The new patents are added at the end of the year files, and only the pairs
+ * with a new patent are computed and added to the similarity files of their years.
+ * A batch is added only once, and an update that did not finish is rolled back before the batch
+ * is added again, so the data never has the same patents twice.
+ *
+ * The similarities are the same as with a full rebuild, except for the words that were in the
+ * old patents but did not reach the minimum number of documents before the batch: a full rebuild
+ * would add them to the old patents too. Those words are listed in pruning_report.txt of the batch.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class IncrementalUpdate {
+
+	private Stage01PreprocessData ppd = new Stage01PreprocessData();
+	private Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+	private Stage03IndexPatents ip = new Stage03IndexPatents();
+	private Stage04SplitDataPerYear sdpy = new Stage04SplitDataPerYear();
+	private Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+	private File fMainDir;
+	private int threshold;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fMainDir The working directory, with the files of the pipeline.
+	 * @param threshold The minimum number of documents where a word should occur (as in extractVocabulary).
+	 */
+	public IncrementalUpdate(File fMainDir, int threshold){
+		this.fMainDir = fMainDir;
+		this.threshold = threshold;
+		ppd.setLearnedStopWords(new File(fMainDir, "stopwords_learned.txt"), null); //Same learned stopwords as the corpus
+	}
+
+	/**
+	 * Sets the range of years of the data (1900 to 2016 by default), as in
+	 * Stage04SplitDataPerYear. The last year should include the years of the batch: the patents
+	 * of other years are added to the data but not to the year files, and are listed in
+	 * patents_dropped.txt of the batch.
+	 *
+	 * @param minYear The first year.
+	 * @param maxYear The last year.
+	 */
+	public void setYears(int minYear, int maxYear) {
+		sdpy.setYears(minYear, maxYear);
+	}
+
+	/**
+	 * Counts the number of documents where each word occurs in a patent file in bag-of-words
+	 * format, adding them to a map.
+	 *
+	 * @param fInput The patent file in bag-of-words format.
+	 * @param df The map with the number of documents of each word.
+	 */
+	public void countDocumentFrequencies(File fInput, LinkedHashMap<String, Integer> df) throws IOException{
+		String line = "";
+		String[] lineSplit = null;
+		BufferedReader brContent = CompressedFiles.newReader(fInput);
+		while((line=brContent.readLine())!=null){
+			lineSplit = line.split(" ");
+			for(int i=2;i<lineSplit.length;i++){
+				String word = Stage01PreprocessData.getWord(lineSplit[i]);
+				Integer frequency = df.get(word);
+				df.put(word, frequency==null ? 1 : frequency+1);
+			}
+		}
+		brContent.close();
+	}
+
+	/**
+	 * Loads the number of documents of each word, one word and its number of documents per line.
+	 *
+	 * @param fDf The file with the document frequencies.
+	 * @param df The map to store the document frequencies.
+	 */
+	public void readDocumentFrequencies(File fDf, LinkedHashMap<String, Integer> df) throws IOException{
+		String line = "";
+		BufferedReader brContent = CompressedFiles.newReader(fDf);
+		while((line=brContent.readLine())!=null){
+			int pos = line.lastIndexOf(' ');
+			df.put(line.substring(0, pos), Integer.parseInt(line.substring(pos+1)));
+		}
+		brContent.close();
+	}
+
+	/**
+	 * Stores the number of documents of each word, one word and its number of documents per line.
+	 * The file is replaced only when it is completely written.
+	 *
+	 * @param fDf The file to store the document frequencies.
+	 * @param df The document frequencies.
+	 */
+	public void writeDocumentFrequencies(File fDf, LinkedHashMap<String, Integer> df) throws IOException{
+		File fTmp = new File(fDf.getPath()+".tmp");
+		PrintWriter pwDf = new PrintWriter(fTmp);
+		for(String word:df.keySet())
+			pwDf.println(word+" "+df.get(word));
+		pwDf.close();
+		if(fDf.exists() && !fDf.delete())
+			throw new IOException("Cannot replace "+fDf);
+		if(!fTmp.renameTo(fDf))
+			throw new IOException("Cannot rename "+fTmp+" to "+fDf);
+	}
+
+	/**
+	 * Counts the lines of a file (0 if it does not exist).
+	 */
+	private int countLines(File fInput) throws IOException{
+		if(!fInput.exists())
+			return 0;
+		int nLines = 0;
+		BufferedReader brContent = CompressedFiles.newReader(fInput);
+		while(brContent.readLine()!=null)
+			nLines++;
+		brContent.close();
+		return nLines;
+	}
+
+	/**
+	 * Adds the content of a file at the end of another one (compressed or not as each file).
+	 */
+	private void appendFile(File fFrom, File fTo) throws IOException{
+		InputStream isFrom = CompressedFiles.openInput(fFrom);
+		OutputStream osTo = CompressedFiles.openOutput(CompressedFiles.find(fTo), true);
+		byte[] buffer = new byte[1<<16];
+		int n = 0;
+		while((n=isFrom.read(buffer))>0)
+			osTo.write(buffer, 0, n);
+		isFrom.close();
+		osTo.close();
+	}
+
+	/**
+	 * Lists the new patents out of the range of years of the data, which are not added to the
+	 * year files, one patent number and its year per line.
+	 *
+	 * @param fPatentsNum The patent numbers of the batch.
+	 * @param alYears The year of each patent of the batch.
+	 * @param fDropped The file to store the list.
+	 * @return The number of patents listed.
+	 */
+	private int writeDropped(File fPatentsNum, ArrayList<String> alYears, File fDropped) throws IOException{
+		String line = "";
+		int nPatent = 0;
+		int nDropped = 0;
+		BufferedReader brContent = CompressedFiles.newReader(fPatentsNum);
+		PrintWriter pwDropped = new PrintWriter(fDropped);
+		while((line=brContent.readLine())!=null){
+			String year = alYears.get(nPatent++);
+			if(!sdpy.isDataYear(year)){
+				pwDropped.println(line+" "+year);
+				nDropped++;
+			}
+		}
+		brContent.close();
+		pwDropped.close();
+		if(nDropped>0)
+			System.out.println("\tNew patents out of the years "+sdpy.getYears()+" = "+nDropped+" (not added to the year files, see "+fDropped+")");
+		return nDropped;
+	}
+
+	/**
+	 * Computes the similarity between the new patents of a year and the patents before them in
+	 * the year file, and adds the pairs with a similarity greater than 0 to a similarity file.
+	 * As in the full computation, the patent that comes first in the year file is written first.
+	 *
+	 * @param index The patent index of the year, with the new patents at the end.
+	 * @param firstNew The ordinal of the first new patent.
+	 * @param patentNumbers The original patent number of each patent of the year, by ordinal.
+	 * @param fSimilarity The similarity file of the year.
+	 * @return The number of pairs added.
+	 */
+	public long newPairs(PatentIndex index, int firstNew, String[] patentNumbers, File fSimilarity) throws IOException{
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] patentTerms = index.getPatentTerms();
+		int[] termOffsets = index.getTermOffsets();
+		int[] postings = index.getPostings();
+		int[] values = new int[index.getNumPatents()];
+		int[] touched = new int[index.getNumPatents()];
+		long nPairs = 0;
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fSimilarity, true);
+		for(int patentA=firstNew;patentA<index.getNumPatents();patentA++){
+			int nTouched = 0;
+			for(int i=patentOffsets[patentA];i<patentOffsets[patentA+1];i++){
+				int term = patentTerms[i];
+				for(int j=termOffsets[term];j<termOffsets[term+1] && postings[j]<patentA;j++){ //Only the patents before patent A
+					int patentB = postings[j];
+					if(values[patentB]++==0)
+						touched[nTouched++] = patentB;
+				}
+			}
+			int numKwPatentA = index.size(patentA);
+			for(int i=0;i<nTouched;i++){
+				int patentB = touched[i];
+				int intersection = values[patentB];
+				values[patentB] = 0;
+				int roundSim = TextSimilarityWriter.roundSimilarity(intersection, (numKwPatentA+index.size(patentB))-intersection);
+				if(roundSim>0){ //Outputs only values greather than 0
+					pwSimilarity.println(patentNumbers[patentB]+" "+patentNumbers[patentA]+" "+TextSimilarityWriter.getSimilarity(roundSim));
+					nPairs++;
+				}
+			}
+		}
+		pwSimilarity.close();
+		return nPairs;
+	}
+
+	/**
+	 * Stores the state of the files of the working directory before an update, so the update can
+	 * be rolled back if it does not finish: the length of each file where it appends (-1 if the
+	 * file does not exist), and the copy of each file that it replaces ("-" if the file does not
+	 * exist). The state is forced to disk, and the file is replaced only when it is complete.
+	 *
+	 * @param fState The file to store the state.
+	 * @param appended The files where the update appends.
+	 * @param replaced The files that the update replaces, and the copy of each one.
+	 */
+	private void saveState(File fState, ArrayList<File> appended, LinkedHashMap<File, File> replaced) throws IOException{
+		for(File fReplaced:replaced.keySet()){
+			if(fReplaced.exists())
+				Files.copy(fReplaced.toPath(), replaced.get(fReplaced).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		File fTmp = new File(fState.getPath()+".tmp");
+		FileOutputStream fosState = new FileOutputStream(fTmp);
+		PrintWriter pwState = new PrintWriter(new OutputStreamWriter(fosState, "UTF-8"));
+		for(File fAppended:appended)
+			pwState.println("append "+(fAppended.exists() ? fAppended.length() : -1)+" "+fAppended.getPath());
+		for(File fReplaced:replaced.keySet())
+			pwState.println("replace "+(fReplaced.exists() ? replaced.get(fReplaced).getPath() : "-")+" "+fReplaced.getPath());
+		pwState.flush();
+		fosState.getFD().sync();
+		pwState.close();
+		Files.move(fTmp.toPath(), fState.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Restores the files of the working directory to their state before an update that did not
+	 * finish: the files where it appended are truncated to their previous length (or deleted if
+	 * it created them), and the files that it replaced are restored from their copies.
+	 *
+	 * @param fState The state stored before the update.
+	 */
+	private void rollback(File fState) throws IOException{
+		String line = "";
+		BufferedReader brState = new BufferedReader(new InputStreamReader(new FileInputStream(fState), "UTF-8"));
+		try{
+			while((line=brState.readLine())!=null){
+				String[] lineSplit = line.split(" ", 3);
+				File fTarget = new File(lineSplit[2]);
+				if(lineSplit[0].equals("append")){
+					long length = Long.parseLong(lineSplit[1]);
+					if(length<0){
+						if(fTarget.exists() && !fTarget.delete())
+							throw new IOException("Cannot delete "+fTarget);
+					}
+					else if(fTarget.exists()){
+						if(fTarget.length()<length)
+							throw new IOException("The file "+fTarget+" is shorter than before the update");
+						FileOutputStream fosTarget = new FileOutputStream(fTarget, true);
+						fosTarget.getChannel().truncate(length);
+						fosTarget.close();
+					}
+					else
+						throw new IOException("The file "+fTarget+" was deleted after the update started");
+				}
+				else if(lineSplit[0].equals("replace")){
+					if(lineSplit[1].equals("-")){
+						if(fTarget.exists() && !fTarget.delete())
+							throw new IOException("Cannot delete "+fTarget);
+					}
+					else
+						Files.copy(new File(lineSplit[1]).toPath(), fTarget.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				else
+					throw new IOException("Invalid state file "+fState+": "+line);
+			}
+		}
+		catch(RuntimeException e){
+			throw new IOException("Invalid state file "+fState+": "+line);
+		}
+		finally{
+			brState.close();
+		}
+	}
+
+	/**
+	 * Adds a batch of patents to the working directory and computes the new similarities.
+	 * The intermediate files of the batch are stored in incremental/NAME, where NAME is the name
+	 * of the batch file.
+	 * The files of the batch are created first. Before the files of the working directory are
+	 * modified, their state is stored in update_state.txt of the batch, and when the update
+	 * finishes the batch is marked in update_done.txt. A batch that is marked is not added again.
+	 * If an update did not finish (update_state.txt exists), the working directory is restored to
+	 * its state before that update, and the batch is added again.
+	 * The new pairs are added to the similarity files, so the update fails before modifying the
+	 * data if a year of the batch already has patents but its similarity file is missing or was
+	 * not finished (such a year should be computed first with Stage05ComputeSimilarity).
+	 *
+	 * @param fNewData The new patents, in the CSV format of the raw patent data (with a header).
+	 */
+	public void update(File fNewData) throws IOException{
+		String name = fNewData.getName().replaceFirst("\\.[^.]*$", "");
+		File fBatchDir = new File(fMainDir, "incremental/"+name);
+		File fDone = new File(fBatchDir, "update_done.txt");
+		File fState = new File(fBatchDir, "update_state.txt");
+		if(fDone.exists())
+			throw new IOException("The batch "+name+" was already added to the data (see "+fDone+")");
+		if (!fBatchDir.exists())
+			fBatchDir.mkdirs();
+		File fYearsDir = new File(fMainDir, "years");
+		if(fState.exists()){
+			System.out.println("Restoring the data to its state before the last update of the batch, which did not finish...");
+			this.rollback(fState);
+			new File(fYearsDir, "patents_indexed.ckpt").delete(); //Checkpoint of the year files of that update
+			if(!fState.delete())
+				throw new IOException("Cannot delete "+fState);
+		}
+		File fTerms = new File(fBatchDir, "patents_terms_raw.txt");
+		File fClean = new File(fBatchDir, "patents_terms.txt");
+		File fYears = new File(fBatchDir, "patents_years.txt");
+		File fPatentsNum = new File(fBatchDir, "patents_numbers.txt");
+		File fPatentsIdxs = new File(fBatchDir, "patents_idxs.txt");
+		File fIndexed = new File(fBatchDir, "patents_indexed.txt");
+		File fVocabulary = new File(fBatchDir, "vocabulary_raw.txt");
+		File fVocabularyIdxs = new File(fBatchDir, "vocabulary.txt");
+		File fReport = new File(fBatchDir, "pruning_report.txt");
+		File fDf = new File(fMainDir, "vocabulary_df.txt");
+
+		System.out.println("Creating bag-of-words file of the new patents...");
+		ppd.createBagofWords(fNewData, fTerms);
+
+		System.out.println("Updating the vocabulary...");
+		LinkedHashMap<String, Integer> df = new LinkedHashMap<String, Integer>();
+		if(fDf.exists())
+			this.readDocumentFrequencies(fDf, df);
+		else //First batch, counts the words of the existing patents
+			this.countDocumentFrequencies(CompressedFiles.getFile(fMainDir, "patents_terms_raw.txt"), df);
+		LinkedHashMap<String, Integer> batchDf = new LinkedHashMap<String, Integer>();
+		this.countDocumentFrequencies(fTerms, batchDf);
+		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
+		ppd.readVocabulary(new File(fMainDir, "vocabulary_raw.txt"), vocabulary);
+		PrintWriter pwVocabulary = CompressedFiles.newWriter(fVocabulary); //Words added, appended to the vocabulary later
+		PrintWriter pwVocabularyIdxs = CompressedFiles.newWriter(fVocabularyIdxs);
+		PrintWriter pwReport = CompressedFiles.newWriter(fReport);
+		pwReport.println("#Words added to the vocabulary that also occur in old patents: word, old patents, new patents");
+		int nNewWords = 0;
+		int nPromoted = 0;
+		long nOldPatents = 0;
+		for(String word:batchDf.keySet()){
+			int oldDf = df.get(word)==null ? 0 : df.get(word);
+			df.put(word, oldDf+batchDf.get(word));
+			if(vocabulary.get(word)==null && oldDf+batchDf.get(word)>=threshold){
+				int idx = vocabulary.size();
+				vocabulary.put(word, idx);
+				pwVocabulary.println(word);
+				pwVocabularyIdxs.println(cip.convertToCode(idx)+" "+word);
+				nNewWords++;
+				if(oldDf>0){ //A full rebuild would also add the word to the old patents
+					pwReport.println(word+" "+oldDf+" "+batchDf.get(word));
+					nPromoted++;
+					nOldPatents += oldDf;
+				}
+			}
+		}
+		pwVocabulary.close();
+		pwVocabularyIdxs.close();
+		pwReport.println("#Words added = "+nNewWords+", also in old patents = "+nPromoted+", occurrences in old patents = "+nOldPatents);
+		pwReport.close();
+		System.out.println("\tWords added = "+nNewWords+", vocabulary = "+vocabulary.size());
+		System.out.println("\tWords that a full rebuild would also add to old patents = "+nPromoted+" (in "+nOldPatents+" old patent keywords, see "+fReport+")");
+
+		System.out.println("Cleaning the bag-of-words file of the new patents...");
+		ppd.cleanPatents(fTerms, fClean, fYears, fPatentsNum, vocabulary);
+
+		System.out.println("Codifying the new patent numbers...");
+		int firstCode = this.countLines(new File(fMainDir, "patents_numbers.txt"));
+		LinkedHashMap<String, String> patentsIdxs = new LinkedHashMap<String, String>();
+		String line = "";
+		int n = firstCode;
+		BufferedReader brContent = CompressedFiles.newReader(fPatentsNum);
+		PrintWriter pwIndexed = CompressedFiles.newWriter(fPatentsIdxs);
+		while((line=brContent.readLine())!=null){
+			String code = cip.convertToCode(n);
+			pwIndexed.println(code+" "+line); //Stores the codified patent number and the original one
+			patentsIdxs.put(line, code);
+			n++;
+		}
+		brContent.close();
+		pwIndexed.close();
+		System.out.println("\tNew patents = "+(n-firstCode));
+
+		System.out.println("Indexing the new patents...");
+		LinkedHashMap<String, String> vocabularyIdxs = new LinkedHashMap<String, String>();
+		for(String word:vocabulary.keySet())
+			vocabularyIdxs.put(word, cip.convertToCode(vocabulary.get(word)));
+		ip.indexPatents(fClean, fIndexed, vocabularyIdxs, patentsIdxs);
+
+		ArrayList<String> alYears = new ArrayList<String>();
+		sdpy.readYears(fYears, alYears);
+		LinkedHashMap<String, Integer> newPerYear = new LinkedHashMap<String, Integer>();
+		for(String year:alYears){
+			if(sdpy.isDataYear(year)) //Same years as in splitDataPerYear
+				newPerYear.put(year, newPerYear.get(year)==null ? 1 : newPerYear.get(year)+1);
+		}
+		this.writeDropped(fPatentsNum, alYears, new File(fBatchDir, "patents_dropped.txt"));
+		File fJaccard = new File(fMainDir+"/jaccard/");
+		if (!fJaccard.exists())
+			fJaccard.mkdirs();
+		for(String year:newPerYear.keySet()){ //Only the pairs of a new year are complete without the similarity file of the year
+			File fSimilarity = CompressedFiles.getFile(fJaccard, "jaccard_"+year+".txt");
+			if(CompressedFiles.find(CompressedFiles.getFile(fYearsDir, "patents_indexed_"+year+".txt")).exists()
+					&& (!CompressedFiles.find(fSimilarity).exists() || new File(fSimilarity.getPath()+".ckpt").exists()))
+				throw new IOException("The similarities of year "+year+" are not complete in "+fSimilarity+", compute the year with Stage05ComputeSimilarity before adding the batch");
+		}
+
+		System.out.println("Adding the new patents to the data...");
+		File[] batchFiles = {fVocabulary, fVocabularyIdxs, fTerms, fClean, fYears, fPatentsNum, fPatentsIdxs, fIndexed};
+		File[] dataFiles = {new File(fMainDir, "vocabulary_raw.txt"), new File(fMainDir, "vocabulary.txt"),
+				CompressedFiles.getFile(fMainDir, "patents_terms_raw.txt"), CompressedFiles.getFile(fMainDir, "patents_terms.txt"),
+				new File(fMainDir, "patents_years.txt"), new File(fMainDir, "patents_numbers.txt"),
+				new File(fMainDir, "patents_idxs.txt"), CompressedFiles.getFile(fMainDir, "patents_indexed.txt")};
+		ArrayList<File> appended = new ArrayList<File>(); //Files of the data where the batch is added
+		for(File fData:dataFiles)
+			appended.add(CompressedFiles.find(fData));
+		for(String year:newPerYear.keySet()){
+			appended.add(CompressedFiles.getFile(fYearsDir, "patents_indexed_"+year+".txt"));
+			appended.add(CompressedFiles.getFile(fJaccard, "jaccard_"+year+".txt"));
+		}
+		LinkedHashMap<File, File> replaced = new LinkedHashMap<File, File>();
+		replaced.put(fDf, new File(fBatchDir, "vocabulary_df_before.txt"));
+		this.saveState(fState, appended, replaced);
+		for(int i=0;i<batchFiles.length;i++)
+			this.appendFile(batchFiles[i], appended.get(i));
+		this.writeDocumentFrequencies(fDf, df);
+		sdpy.splitDataPerYear(fIndexed, alYears, fMainDir, true);
+
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		cs.readIndexes(new File(fMainDir, "patents_idxs.txt"), lhmPatentsIdx);
+		long nNewPairs = 0;
+		for(String year:newPerYear.keySet()){
+			System.out.println("Computing new similarities for year = "+year);
+			PatentIndex index = cs.readPatentIndex(CompressedFiles.getFile(fYearsDir, "patents_indexed_"+year+".txt"));
+			long nPairs = this.newPairs(index, index.getNumPatents()-newPerYear.get(year), cs.getPatentNumbers(index, lhmPatentsIdx),
+					CompressedFiles.getFile(fJaccard, "jaccard_"+year+".txt"));
+			System.out.println("\tNew patents = "+newPerYear.get(year)+", new pairs = "+nPairs);
+			nNewPairs += nPairs;
+		}
+
+		PrintWriter pwDone = new PrintWriter(fDone);
+		pwDone.println("batch "+fNewData.getPath());
+		pwDone.println("patents "+(n-firstCode));
+		pwDone.println("codes "+cip.convertToCode(firstCode)+" "+cip.convertToCode(n-1));
+		pwDone.println("words "+nNewWords);
+		pwDone.println("pairs "+nNewPairs);
+		pwDone.close();
+		if(pwDone.checkError())
+			throw new IOException("Error writing "+fDone);
+		fState.delete();
+		replaced.get(fDf).delete();
+	}
+
+	public static void main(String[] args) throws IOException{
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fNewData = new File(fMainDir, "patent_data_2017.csv"); //New patents in the CSV format of the raw patent data
+
+		int minYear = 1900; //First year of the data
+		int maxYear = 2017; //Last year of the data, including the years of the new patents
+
+		IncrementalUpdate iu = new IncrementalUpdate(fMainDir, 2); //Same minimum number of documents as in Stage01PreprocessData
+		iu.setYears(minYear, maxYear);
+		iu.update(fNewData);
+	}
+}
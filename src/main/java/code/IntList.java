@@ -0,0 +1,83 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * A growable list of primitive integers, used to build the index arrays without boxing.
+  */
+package code;
+
+import java.util.Arrays;
+
+public class IntList {
+
+	private static final int MAX_SIZE = Integer.MAX_VALUE-8; //Largest array that the JVM can allocate
+
+	private int[] values;
+	private int size = 0;
+
+	/**
+	 * Constructor
+	 */
+	public IntList(){
+		this(16);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity The initial capacity of the list.
+	 */
+	public IntList(int capacity){
+		values = new int[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * Appends a value at the end of the list.
+	 *
+	 * @param value The value to append.
+	 */
+	public void add(int value){
+		if(size==values.length){
+			if(size==MAX_SIZE)
+				throw new IllegalStateException("The list cannot have more than "+MAX_SIZE+" values");
+			values = Arrays.copyOf(values, (int)Math.min(2L*values.length, MAX_SIZE));
+		}
+		values[size++] = value;
+	}
+
+	public int get(int i){
+		return values[i];
+	}
+
+	public void set(int i, int value){
+		values[i] = value;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public void clear(){
+		size = 0;
+	}
+
+	/**
+	 * Returns the internal array of the list. Only the first size() positions are valid.
+	 *
+	 * @return The internal array.
+	 */
+	public int[] getValues(){
+		return values;
+	}
+
+	/**
+	 * Returns a copy of the list with the exact size.
+	 *
+	 * @return The values in the list.
+	 */
+	public int[] toArray(){
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Stopword list learned from the corpus by the document frequency ceiling of Stage01PreprocessData,
+ * added to another stopword list (the English one).
+ * The file has one word per line. A word alone is a stopword in all the years, and a word followed
+ * by a year ("word year") is a stopword only in the patents of that year.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+
+public class LearnedStopWords extends StopWords {
+
+	private StopWords base;
+	private LinkedHashMap<String, Integer> yearStopWords = new LinkedHashMap<String, Integer>(); //Keys are "word year"
+
+	/**
+	 * Constructor
+	 *
+	 * @param fStopWords The file of learned stopwords.
+	 * @param base The stopword list to add the learned stopwords.
+	 */
+	public LearnedStopWords(File fStopWords, StopWords base) throws IOException{
+		setStopWords();
+		this.base = base;
+		String line = "";
+		BufferedReader brStopWords = CompressedFiles.newReader(fStopWords);
+		while((line=brStopWords.readLine())!=null){
+			if(line.isEmpty())
+				continue;
+			if(line.indexOf(' ')<0)
+				add(line);
+			else
+				yearStopWords.put(line, 1);
+		}
+		brStopWords.close();
+	}
+
+	public boolean isStopWord(String word){
+		return super.isStopWord(word) || base.isStopWord(word);
+	}
+
+	/**
+	 * Checks if a word is a stopword in the patents of a year.
+	 *
+	 * @param word The word.
+	 * @param year The year of the patent.
+	 */
+	public boolean isStopWord(String word, String year){
+		return this.isStopWord(word) || (!yearStopWords.isEmpty() && yearStopWords.get(word+" "+year)!=null);
+	}
+
+	/**
+	 * Checks if there are stopwords of only some years.
+	 */
+	public boolean hasYearStopWords(){
+		return !yearStopWords.isEmpty();
+	}
+}
@@ -0,0 +1,177 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Reads the lines of a file mapped in memory (FileChannel.map), without decoding the bytes into
+ * Strings. The reader is the sequence of characters of the mapped segment (one byte per character,
+ * as the codes of the indexed patent files), and the current line is a part of it, given by
+ * getLineStart and getLineEnd, which can be decoded directly by PatentLineParser.
+ * A file can be larger than what a single mapping allows (2 GB), so it is mapped in segments, and
+ * a segment starts again at the beginning of the line that did not fit in the previous one.
+ * A line ends with \n, \r\n or \r, as in BufferedReader.
+ * A compressed file cannot be mapped, so it is read line by line through CompressedFiles, and the
+ * current line is then a String.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedLineReader implements CharSequence {
+
+	private static final int SEGMENT_SIZE = 1<<30;
+
+	private File file;
+	private int segmentSize;
+	//Mapped file: the segment starts at segmentStart, and the next line at pos
+	private RandomAccessFile rafInput = null;
+	private FileChannel channel = null;
+	private long size;
+	private MappedByteBuffer segment = null;
+	private long segmentStart = 0;
+	private int pos = 0;
+	//Compressed file
+	private BufferedReader brInput = null;
+	private String line = null;
+	//Current line
+	private int lineStart = 0;
+	private int lineEnd = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param file The file.
+	 */
+	public MappedLineReader(File file) throws IOException{
+		this(file, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param file The file.
+	 * @param segmentSize The maximum number of bytes mapped at once (longer than any line).
+	 */
+	public MappedLineReader(File file, int segmentSize) throws IOException{
+		this.file = CompressedFiles.find(file);
+		this.segmentSize = segmentSize;
+		if(CompressedFiles.isCompressed(this.file)){
+			this.brInput = CompressedFiles.newReader(this.file);
+			return;
+		}
+		this.rafInput = new RandomAccessFile(this.file, "r");
+		this.channel = rafInput.getChannel();
+		this.size = channel.size();
+		this.map(0);
+	}
+
+	/**
+	 * Maps the segment that starts at a position of the file.
+	 */
+	private void map(long start) throws IOException{
+		segment = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size-start));
+		segmentStart = start;
+		pos = 0;
+	}
+
+	/**
+	 * Moves to the next line of the file.
+	 *
+	 * @return False at the end of the file.
+	 */
+	public boolean nextLine() throws IOException{
+		if(brInput!=null){
+			line = brInput.readLine();
+			lineStart = 0;
+			lineEnd = line==null ? 0 : line.length();
+			return line!=null;
+		}
+		while(true){
+			int limit = segment.limit();
+			boolean last = segmentStart+limit==size; //The segment reaches the end of the file
+			if(pos==limit && last)
+				return false;
+			int p = pos;
+			byte b = 0;
+			while(p<limit && (b=segment.get(p))!='\n' && b!='\r')
+				p++;
+			if(last || p<limit-1 || (p==limit-1 && b=='\n')){ //The end of the line is known
+				lineStart = pos;
+				lineEnd = p;
+				if(p<limit){
+					if(b=='\r' && p+1<limit && segment.get(p+1)=='\n')
+						p++;
+					p++;
+				}
+				pos = p;
+				return true;
+			}
+			if(pos==0)
+				throw new IOException("Line longer than "+segmentSize+" bytes in "+file);
+			this.map(segmentStart+pos); //The line continues after the segment
+		}
+	}
+
+	/**
+	 * Returns the position of the start of the current line in the sequence.
+	 */
+	public int getLineStart() {
+		return lineStart;
+	}
+
+	/**
+	 * Returns the position of the end of the current line in the sequence (exclusive).
+	 */
+	public int getLineEnd() {
+		return lineEnd;
+	}
+
+	/**
+	 * Returns the current line as a String (for error messages).
+	 */
+	public String getLine(){
+		return this.subSequence(lineStart, lineEnd).toString();
+	}
+
+	public char charAt(int index){
+		if(segment!=null)
+			return (char)(segment.get(index)&0xff);
+		return line.charAt(index);
+	}
+
+	public int length(){
+		if(segment!=null)
+			return segment.limit();
+		return line==null ? 0 : line.length();
+	}
+
+	public CharSequence subSequence(int start, int end){
+		if(segment==null)
+			return line.substring(start, end);
+		char[] chars = new char[end-start];
+		for(int i=start;i<end;i++)
+			chars[i-start] = (char)(segment.get(i)&0xff);
+		return new String(chars);
+	}
+
+	public String toString(){
+		return this.getLine();
+	}
+
+	/**
+	 * Closes the file. The mapped segment is released by the garbage collector.
+	 */
+	public void close() throws IOException{
+		if(brInput!=null)
+			brInput.close();
+		if(rafInput!=null)
+			rafInput.close();
+		segment = null;
+	}
+}
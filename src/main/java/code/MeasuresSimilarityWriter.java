@@ -0,0 +1,149 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Writes several similarity measures computed from the same intersections, in text format with
+ * the original patent numbers and each similarity rounded to 5 digits.
+ * The measures are written as columns of one file (one pair per line followed by a column per
+ * measure), or each one to its own file (one pair per line followed by the similarity, as the
+ * Jaccard file). A pair is written if any of its similarities in the file is greater than 0.
+ * The binary measures use the number of keywords of each patent. The TF-IDF cosine uses the dot
+ * products accumulated by the calculation in the array given to the constructor, in the same
+ * positions as the intersections.
+  */
+package code;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+public class MeasuresSimilarityWriter implements SimilarityWriter {
+
+	/**
+	 * Similarity measure between two patents.
+	 */
+	public enum Measure {
+		JACCARD, //intersection/union
+		DICE, //2*intersection/(size A+size B)
+		OVERLAP, //intersection/min(size A, size B)
+		COSINE, //intersection/sqrt(size A*size B)
+		TFIDF_COSINE; //Cosine of the TF-IDF weights of the keywords
+
+		/**
+		 * Returns the name of the measure used in the output files.
+		 */
+		public String getName(){
+			return this.name().toLowerCase();
+		}
+	}
+
+	private PatentIndex index;
+	private String[] patentNumbers;
+	private Measure[] measures;
+	private PrintWriter[] pwMeasures;
+	private double[] dots;
+	private int[] roundSims;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pwMeasures The writers to store the similarities: one for all the measures as columns,
+	 * or one per measure.
+	 * @param index The patent index (with frequencies for the TF-IDF cosine).
+	 * @param patentNumbers The original patent number of each patent, by ordinal.
+	 * @param measures The measures.
+	 * @param dots The array where the calculation stores the dot products of the TF-IDF weights
+	 * (null if the TF-IDF cosine is not a measure).
+	 */
+	public MeasuresSimilarityWriter(PrintWriter[] pwMeasures, PatentIndex index, String[] patentNumbers, Measure[] measures, double[] dots){
+		if(pwMeasures.length!=1 && pwMeasures.length!=measures.length)
+			throw new IllegalArgumentException("There must be one writer or one writer per measure");
+		this.pwMeasures = pwMeasures;
+		this.index = index;
+		this.patentNumbers = patentNumbers;
+		this.measures = measures;
+		this.dots = dots;
+		this.roundSims = new int[measures.length];
+	}
+
+	/**
+	 * Checks if a list of measures needs the TF-IDF weights.
+	 */
+	public static boolean isWeighted(Measure[] measures){
+		for(Measure measure:measures)
+			if(measure==Measure.TFIDF_COSINE)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Rounds a similarity to 5 digits and scales it to an integer.
+	 */
+	private static int round(double similarity){
+		return Math.max(0, Math.min(100000, (int)(similarity*100000)));
+	}
+
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+		int numKwPatentA = index.size(patentA);
+		String numPatentA = patentNumbers[patentA];
+		for(int i=0;i<count;i++){
+			int patentB = patentsB[i];
+			int intersection = intersections[i];
+			int numKwPatentB = index.size(patentB);
+			for(int m=0;m<measures.length;m++){
+				switch(measures[m]){
+				case JACCARD:
+					roundSims[m] = TextSimilarityWriter.roundSimilarity(intersection, (numKwPatentA+numKwPatentB)-intersection);
+					break;
+				case DICE:
+					roundSims[m] = round(2.0*intersection/(numKwPatentA+numKwPatentB));
+					break;
+				case OVERLAP:
+					roundSims[m] = round((double)intersection/Math.min(numKwPatentA, numKwPatentB));
+					break;
+				case COSINE:
+					roundSims[m] = round(intersection/Math.sqrt((double)numKwPatentA*numKwPatentB));
+					break;
+				case TFIDF_COSINE:
+					double norms = (double)index.norm(patentA)*index.norm(patentB);
+					roundSims[m] = norms>0 ? round(dots[i]/norms) : 0;
+					break;
+				}
+			}
+			if(pwMeasures.length==1){ //Columns
+				boolean positive = false;
+				for(int m=0;m<measures.length;m++)
+					positive |= roundSims[m]>0;
+				if(positive){ //Outputs only values greather than 0
+					PrintWriter pwSimilarity = pwMeasures[0];
+					pwSimilarity.print(numPatentA);
+					pwSimilarity.print(' ');
+					pwSimilarity.print(patentNumbers[patentB]);
+					for(int m=0;m<measures.length;m++){
+						pwSimilarity.print(' ');
+						pwSimilarity.print(TextSimilarityWriter.getSimilarity(roundSims[m]));
+					}
+					pwSimilarity.println();
+				}
+			}
+			else{
+				for(int m=0;m<measures.length;m++){
+					if(roundSims[m]>0){ //Outputs only values greather than 0
+						PrintWriter pwSimilarity = pwMeasures[m];
+						pwSimilarity.print(numPatentA);
+						pwSimilarity.print(' ');
+						pwSimilarity.print(patentNumbers[patentB]);
+						pwSimilarity.print(' ');
+						pwSimilarity.println(TextSimilarityWriter.getSimilarity(roundSims[m]));
+					}
+				}
+			}
+		}
+	}
+
+	public void close() throws IOException{
+		for(PrintWriter pwSimilarity:pwMeasures)
+			pwSimilarity.close();
+	}
+}
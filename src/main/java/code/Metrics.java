@@ -0,0 +1,295 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Runtime metrics of the stages. Each stage (and each year of Stage05) is a phase with its
+ * duration, its number of units (documents, words or patents) and counters such as pairs,
+ * postings touched, bytes read and written, index size and heap used. The progress lines show
+ * the throughput, and a summary of all the phases is stored in JSON format at the end of a run.
+ * When the JVM has Flight Recorder events (jdk.jfr), the phases with an event type are also
+ * recorded as custom events (code.YearLoad, code.PairLoop, code.Stage); older JVMs skip them.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class Metrics {
+
+	/**
+	 * A timed part of a run.
+	 */
+	public static class Phase {
+		private String name;
+		private String unit;
+		private long startNanos;
+		private long endNanos = -1;
+		private long units = 0;
+		private LinkedHashMap<String, Long> counters = new LinkedHashMap<String, Long>();
+		private Object event; //Flight Recorder event, or null
+
+		Phase(String name, String unit, Object event){
+			this.name = name;
+			this.unit = unit;
+			this.event = event;
+			this.startNanos = System.nanoTime();
+			this.updateHeap();
+		}
+
+		/**
+		 * Adds a value to a counter.
+		 */
+		public synchronized void add(String counter, long value){
+			Long current = counters.get(counter);
+			counters.put(counter, current==null ? value : current+value);
+		}
+
+		/**
+		 * Sets the value of a counter.
+		 */
+		public synchronized void set(String counter, long value){
+			counters.put(counter, value);
+		}
+
+		public synchronized long get(String counter){
+			Long current = counters.get(counter);
+			return current==null ? 0 : current;
+		}
+
+		/**
+		 * Keeps the maximum heap used during the phase.
+		 */
+		private void updateHeap(){
+			Runtime runtime = Runtime.getRuntime();
+			long heap = runtime.totalMemory()-runtime.freeMemory();
+			if(heap>this.get("heapBytes"))
+				this.set("heapBytes", heap);
+		}
+
+		/**
+		 * Returns the duration of the phase (until now if it is not finished), in seconds.
+		 */
+		public double getSeconds(){
+			return ((endNanos<0 ? System.nanoTime() : endNanos)-startNanos)/1e9;
+		}
+
+		/**
+		 * Outputs the progress of the phase.
+		 *
+		 * @param units The number of units done.
+		 */
+		public void progress(long units){
+			this.units = units;
+			this.updateHeap();
+			System.out.println("\tProcessed = "+units+" "+unit+" ("+(long)(units/Math.max(1e-9, this.getSeconds()))+" "+unit+"/s, heap = "
+					+(this.get("heapBytes")>>20)+" MB)");
+		}
+
+		/**
+		 * Finishes the phase.
+		 *
+		 * @param units The number of units done.
+		 */
+		public void end(long units){
+			this.units = units;
+			this.updateHeap();
+			this.endNanos = System.nanoTime();
+			if(event!=null)
+				FlightRecorder.commit(event, this);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getUnits() {
+			return units;
+		}
+	}
+
+	/**
+	 * Custom Flight Recorder events, created by reflection so the code also runs on JVMs without
+	 * jdk.jfr (it is available from Java 11 and 8u262).
+	 */
+	private static class FlightRecorder {
+		private static final String[] FIELDS = {"phase", "units", "pairs", "postings", "bytes"};
+		private static boolean available = true;
+		private static LinkedHashMap<String, Object> factories = new LinkedHashMap<String, Object>();
+
+		/**
+		 * Creates and begins an event, or returns null if events are not available.
+		 */
+		static synchronized Object begin(String type){
+			if(!available)
+				return null;
+			try{
+				Object factory = factories.get(type);
+				if(factory==null){
+					Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+					Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+					List<Object> annotations = new ArrayList<Object>();
+					annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Name"), "code."+type));
+					annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Label"), type));
+					annotations.add(annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[]{"Patent similarity"}));
+					Constructor<?> descriptor = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class);
+					List<Object> fields = new ArrayList<Object>();
+					fields.add(descriptor.newInstance(String.class, FIELDS[0]));
+					for(int f=1;f<FIELDS.length;f++)
+						fields.add(descriptor.newInstance(long.class, FIELDS[f]));
+					factory = Class.forName("jdk.jfr.EventFactory").getMethod("create", List.class, List.class).invoke(null, annotations, fields);
+					factories.put(type, factory);
+				}
+				Object event = factory.getClass().getMethod("newEvent").invoke(factory);
+				Class.forName("jdk.jfr.Event").getMethod("begin").invoke(event);
+				return event;
+			}
+			catch(Exception e){ //No Flight Recorder in this JVM
+				available = false;
+				return null;
+			}
+		}
+
+		/**
+		 * Sets the fields of an event from a finished phase and commits it.
+		 */
+		static void commit(Object event, Phase phase){
+			try{
+				Class<?> eventClass = Class.forName("jdk.jfr.Event");
+				Method set = eventClass.getMethod("set", int.class, Object.class);
+				set.invoke(event, 0, phase.getName());
+				set.invoke(event, 1, phase.getUnits());
+				set.invoke(event, 2, phase.get("pairs"));
+				set.invoke(event, 3, phase.get("postings"));
+				set.invoke(event, 4, phase.get("bytesRead")+phase.get("bytesWritten"));
+				eventClass.getMethod("end").invoke(event);
+				eventClass.getMethod("commit").invoke(event);
+			}
+			catch(Exception e){
+				available = false;
+			}
+		}
+	}
+
+	private static Metrics metrics = new Metrics();
+
+	private long startMillis = System.currentTimeMillis();
+	private long startNanos = System.nanoTime();
+	private ArrayList<Phase> phases = new ArrayList<Phase>();
+
+	/**
+	 * Returns the metrics of the current run.
+	 */
+	public static Metrics get(){
+		return metrics;
+	}
+
+	/**
+	 * Starts a phase.
+	 *
+	 * @param name The name of the phase (for example stage01.createBagofWords or stage05.year.1976).
+	 * @param unit The name of the units of the phase (documents, words or patents).
+	 * @return The phase.
+	 */
+	public Phase start(String name, String unit){
+		return this.start(name, unit, null);
+	}
+
+	/**
+	 * Starts a phase that is also recorded as a Flight Recorder event.
+	 *
+	 * @param name The name of the phase.
+	 * @param unit The name of the units of the phase.
+	 * @param eventType The type of the event (YearLoad, PairLoop or Stage), or null.
+	 * @return The phase.
+	 */
+	public Phase start(String name, String unit, String eventType){
+		Phase phase = new Phase(name, unit, eventType==null ? null : FlightRecorder.begin(eventType));
+		synchronized(phases){
+			phases.add(phase);
+		}
+		return phase;
+	}
+
+	private static String quote(String text){
+		return "\""+text.replace("\\", "\\\\").replace("\"", "\\\"")+"\"";
+	}
+
+	/**
+	 * Stores a summary of the run in JSON format, with the duration, throughput and counters of
+	 * each phase.
+	 *
+	 * @param fSummary The file to store the summary.
+	 */
+	public void writeSummary(File fSummary) throws IOException{
+		Runtime runtime = Runtime.getRuntime();
+		PrintWriter pwSummary = new PrintWriter(fSummary, "UTF-8");
+		pwSummary.println("{");
+		pwSummary.println("  \"start\": "+startMillis+",");
+		pwSummary.println("  \"seconds\": "+(System.nanoTime()-startNanos)/1e9+",");
+		pwSummary.println("  \"processors\": "+runtime.availableProcessors()+",");
+		pwSummary.println("  \"maxHeapBytes\": "+runtime.maxMemory()+",");
+		pwSummary.println("  \"phases\": [");
+		Phase[] all = null;
+		synchronized(phases){
+			all = phases.toArray(new Phase[phases.size()]);
+		}
+		for(int p=0;p<all.length;p++){
+			Phase phase = all[p];
+			double seconds = phase.getSeconds();
+			StringBuilder line = new StringBuilder();
+			line.append("    {\"name\": ").append(quote(phase.name));
+			line.append(", \"start\": ").append((phase.startNanos-startNanos)/1e9);
+			line.append(", \"seconds\": ").append(seconds);
+			line.append(", \"finished\": ").append(phase.endNanos>=0);
+			line.append(", \"unit\": ").append(quote(phase.unit));
+			line.append(", \"units\": ").append(phase.units);
+			line.append(", \"unitsPerSecond\": ").append(seconds>0 ? phase.units/seconds : 0);
+			synchronized(phase){
+				for(String counter:phase.counters.keySet())
+					line.append(", ").append(quote(counter)).append(": ").append(phase.counters.get(counter));
+			}
+			if(phase.get("pairs")>0)
+				line.append(", \"pairsPerSecond\": ").append(seconds>0 ? phase.get("pairs")/seconds : 0);
+			line.append(p<all.length-1 ? "}," : "}");
+			pwSummary.println(line);
+		}
+		pwSummary.println("  ]");
+		pwSummary.println("}");
+		pwSummary.close();
+		System.out.println("Metrics stored in "+fSummary);
+	}
+
+	/**
+	 * Returns the summary file of a stage in the working directory, named by the stage and the
+	 * start of the run.
+	 *
+	 * @param fMainDir The working directory.
+	 * @param stage The name of the stage.
+	 */
+	public File getSummaryFile(File fMainDir, String stage){
+		File fMetrics = new File(fMainDir+"/metrics/");
+		if (!fMetrics.exists())
+			fMetrics.mkdirs();
+		return new File(fMetrics, stage+"_"+new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date(startMillis))+".json");
+	}
+
+	/**
+	 * Returns the approximate memory of a primitive patent index, in bytes.
+	 */
+	public static long indexBytes(PatentIndex index){
+		long bytes = 4L*(index.getPatentOffsets().length+index.getPatentTerms().length+index.getTermOffsets().length+index.getPostings().length);
+		for(String id:index.getPatentIds())
+			bytes += 40+2*id.length();
+		return bytes;
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Passes the similarities to another writer and counts the focus patents, the pairs and the
+ * postings touched (the sum of the intersections) in a phase of the metrics, showing the progress
+ * every 10000 focus patents.
+  */
+package code;
+
+import java.io.IOException;
+
+public class MetricsSimilarityWriter implements SimilarityWriter {
+
+	private SimilarityWriter writer;
+	private Metrics.Phase phase;
+	private long nPatents = 0;
+	private long nPairs = 0;
+	private long nPostings = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param writer The writer that stores the similarities.
+	 * @param phase The phase of the metrics.
+	 */
+	public MetricsSimilarityWriter(SimilarityWriter writer, Metrics.Phase phase){
+		this.writer = writer;
+		this.phase = phase;
+	}
+
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+		writer.write(patentA, patentsB, intersections, count);
+		nPairs += count;
+		for(int i=0;i<count;i++)
+			nPostings += intersections[i];
+		nPatents++;
+		if ((patentA+1)%10000==0){ //Outputs the progress of this process
+			phase.set("pairs", nPairs);
+			phase.set("postings", nPostings);
+			phase.progress(patentA+1);
+		}
+	}
+
+	public void close() throws IOException{
+		writer.close();
+		phase.set("pairs", nPairs);
+		phase.set("postings", nPostings);
+		phase.set("focusPatents", nPatents);
+	}
+}
@@ -0,0 +1,279 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Approximate pair-wise Jaccard similarity using MinHash signatures and locality sensitive
+ * hashing (LSH).
+ * Each patent is summarized by bands*rows MinHash values of its keywords. Patents that have
+ * the same values in all the rows of at least one band fall in the same bucket and become
+ * candidates. The candidates are scored with the fraction of equal MinHash values or, optionally,
+ * re-scored with the exact Jaccard similarity of their keywords.
+ * A pair with similarity s becomes a candidate with probability 1-(1-s^rows)^bands.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+public class MinHashSimilarity {
+
+	private int bands;
+	private int rows;
+	private long[] hashSeeds;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bands The number of LSH bands.
+	 * @param rows The number of MinHash values per band.
+	 * @param seed The seed for the hash functions.
+	 */
+	public MinHashSimilarity(int bands, int rows, long seed){
+		this.bands = bands;
+		this.rows = rows;
+		this.hashSeeds = new long[bands*rows];
+		Random random = new Random(seed);
+		for(int i=0;i<hashSeeds.length;i++)
+			hashSeeds[i] = random.nextLong();
+	}
+
+	/**
+	 * Probability that a pair with a given similarity becomes a candidate.
+	 *
+	 * @param similarity The Jaccard similarity of the pair.
+	 * @return The expected recall for that similarity.
+	 */
+	public double expectedRecall(double similarity){
+		return 1-Math.pow(1-Math.pow(similarity, rows), bands);
+	}
+
+	/**
+	 * Similarity at which the probability of becoming a candidate grows fastest, approximately
+	 * (1/bands)^(1/rows).
+	 *
+	 * @return The approximate similarity threshold of the LSH scheme.
+	 */
+	public double lshThreshold(){
+		return Math.pow(1.0/bands, 1.0/rows);
+	}
+
+	/**
+	 * Mixes the bits of a 64 bit value (finalizer of SplitMix64).
+	 */
+	private static long mix(long z){
+		z = (z^(z>>>30))*0xbf58476d1ce4e5b9L;
+		z = (z^(z>>>27))*0x94d049bb133111ebL;
+		return z^(z>>>31);
+	}
+
+	/**
+	 * Computes the MinHash signature of every patent. The signature of patent p is stored in
+	 * positions [p*bands*rows, (p+1)*bands*rows).
+	 *
+	 * @param index The patent index.
+	 * @return The signatures.
+	 */
+	public int[] computeSignatures(PatentIndex index){
+		int numHashes = bands*rows;
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] patentTerms = index.getPatentTerms();
+		long size = (long)index.getNumPatents()*numHashes;
+		if(size>Integer.MAX_VALUE-8)
+			throw new IllegalArgumentException("The signatures of "+index.getNumPatents()+" patents with "+numHashes
+					+" MinHash values do not fit in an array, use fewer bands or rows, or split the patents");
+		int[] signatures = new int[(int)size];
+		Arrays.fill(signatures, Integer.MAX_VALUE);
+		for(int p=0;p<index.getNumPatents();p++){
+			int base = p*numHashes;
+			for(int i=patentOffsets[p];i<patentOffsets[p+1];i++){
+				long term = patentTerms[i];
+				for(int h=0;h<numHashes;h++){
+					int value = (int)(mix(hashSeeds[h]+term*0x9e3779b97f4a7c15L)>>>33);
+					if(value<signatures[base+h])
+						signatures[base+h] = value;
+				}
+			}
+		}
+		return signatures;
+	}
+
+	/**
+	 * Groups the patents in buckets for one band. Each bucket is a run of patents, sorted by
+	 * ordinal, in the members array.
+	 *
+	 * @param signatures The MinHash signatures.
+	 * @param numPatents The number of patents.
+	 * @param band The band.
+	 * @param members The array to store the patents of all the buckets.
+	 * @param bucketStart The array to store the start of the bucket of each patent in members.
+	 * @param bucketEnd The array to store the end of the bucket of each patent in members.
+	 */
+	public void bucketPatents(int[] signatures, int numPatents, int band, int[] members, int[] bucketStart, int[] bucketEnd){
+		int numHashes = bands*rows;
+		long[] keys = new long[numPatents];
+		for(int p=0;p<numPatents;p++){
+			long key = band;
+			for(int r=0;r<rows;r++)
+				key = mix(key*31+signatures[p*numHashes+band*rows+r]);
+			keys[p] = (key<<24)|p; //The key uses the 40 high bits and the patent the 24 low bits
+		}
+		Arrays.sort(keys);
+		int start = 0;
+		for(int i=0;i<=numPatents;i++){
+			if(i==numPatents || (keys[i]>>>24)!=(keys[start]>>>24)){
+				for(int j=start;j<i;j++){
+					int p = (int)(keys[j]&0xffffff);
+					members[j] = p;
+					bucketStart[p] = start;
+					bucketEnd[p] = i;
+				}
+				start = i;
+			}
+		}
+	}
+
+	/**
+	 * Computes the similarity of the candidate pairs of one year and writes the pairs with a
+	 * similarity greater than or equal to a threshold, one per line with the original patent
+	 * numbers and the similarity rounded to 5 digits.
+	 *
+	 * @param index The patent index.
+	 * @param fSimilarity The file to store the similarities.
+	 * @param patentNumbers The original patent number of each patent, by ordinal.
+	 * @param threshold The minimum similarity of the stored pairs.
+	 * @param rescore True to compute the exact Jaccard similarity of the candidates, false to
+	 * estimate it from the signatures.
+	 * @return The number of candidate pairs.
+	 */
+	public long jaccardSimilarity(PatentIndex index, File fSimilarity, String[] patentNumbers, double threshold, boolean rescore) throws IOException{
+		int numPatents = index.getNumPatents();
+		if(numPatents>(1<<24))
+			throw new IllegalArgumentException("Too many patents for the LSH buckets: "+numPatents);
+		int numHashes = bands*rows;
+		System.out.println("\tComputing signatures...");
+		int[] signatures = this.computeSignatures(index);
+		int[][] members = new int[bands][numPatents];
+		int[][] bucketStart = new int[bands][numPatents];
+		int[][] bucketEnd = new int[bands][numPatents];
+		for(int b=0;b<bands;b++)
+			this.bucketPatents(signatures, numPatents, b, members[b], bucketStart[b], bucketEnd[b]);
+
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] sortedTerms = Arrays.copyOf(index.getPatentTerms(), patentOffsets[numPatents]); //For the exact intersections
+		for(int p=0;p<numPatents;p++)
+			Arrays.sort(sortedTerms, patentOffsets[p], patentOffsets[p+1]);
+
+		boolean[] seen = new boolean[numPatents];
+		int[] candidates = new int[numPatents];
+		long nCandidates = 0;
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fSimilarity);
+		System.out.println("\tScoring candidates...");
+		for(int patentA=0;patentA<numPatents;patentA++){
+			if(index.size(patentA)==0)
+				continue;
+			int nCand = 0;
+			for(int b=0;b<bands;b++){
+				for(int i=bucketStart[b][patentA];i<bucketEnd[b][patentA];i++){
+					int patentB = members[b][i];
+					if(patentB>patentA && !seen[patentB]){
+						seen[patentB] = true;
+						candidates[nCand++] = patentB;
+					}
+				}
+			}
+			Arrays.sort(candidates, 0, nCand);
+			nCandidates += nCand;
+			for(int c=0;c<nCand;c++){
+				int patentB = candidates[c];
+				seen[patentB] = false;
+				double similarity;
+				if(rescore){
+					int intersection = 0;
+					int i = patentOffsets[patentA];
+					int j = patentOffsets[patentB];
+					while(i<patentOffsets[patentA+1] && j<patentOffsets[patentB+1]){
+						if(sortedTerms[i]==sortedTerms[j]){
+							intersection++;
+							i++;
+							j++;
+						}
+						else if(sortedTerms[i]<sortedTerms[j])
+							i++;
+						else
+							j++;
+					}
+					similarity = (double)intersection/(double)(index.size(patentA)+index.size(patentB)-intersection);
+				}
+				else{
+					int equal = 0;
+					for(int h=0;h<numHashes;h++){
+						if(signatures[patentA*numHashes+h]==signatures[patentB*numHashes+h])
+							equal++;
+					}
+					similarity = (double)equal/numHashes;
+				}
+				int roundSim = (int)(similarity*100000);
+				if(similarity>=threshold && roundSim>0){
+					pwSimilarity.print(patentNumbers[patentA]);
+					pwSimilarity.print(' ');
+					pwSimilarity.print(patentNumbers[patentB]);
+					pwSimilarity.print(' ');
+					pwSimilarity.println(TextSimilarityWriter.getSimilarity(roundSim));
+				}
+			}
+			if ((patentA+1)%10000==0){ //Outputs the progress of this process
+				System.out.println("\t\t"+(patentA+1)+" patents processed...");
+			}
+		}
+		pwSimilarity.close();
+		return nCandidates;
+	}
+
+	public static void main(String[] args) throws IOException{
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+
+		int initYear = 1940; //Initial year to compute similarities
+		int endYear = 1945; //Final year to compute similarities (check the maximum year in the data)
+		boolean allYears = false; //Compares all the patents in the data instead of each year separately
+		int bands = 20; //Number of LSH bands
+		int rows = 5; //Number of MinHash values per band
+		double threshold = 0.5; //Minimum similarity of the stored pairs
+		boolean rescore = true; //Re-scores the candidates with the exact Jaccard similarity
+
+		MinHashSimilarity mhs = new MinHashSimilarity(bands, rows, 1);
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fPatentsIdxs = new File(fMainDir,"patents_idxs.txt");
+		File fJaccard = new File(fMainDir+"/jaccard/");
+		if (!fJaccard.exists())
+			fJaccard.mkdirs();
+
+		System.out.println("Expected recall at similarity "+threshold+" = "+mhs.expectedRecall(threshold)+" (LSH threshold = "+mhs.lshThreshold()+")");
+		System.out.println("Reading the codified patent numbers...");
+		cs.readIndexes(fPatentsIdxs, lhmPatentsIdx);
+
+		String name = "jaccard_minhash_b"+bands+"_r"+rows+"_t"+threshold;
+		if(allYears){
+			System.out.println("Computing similarities for all the patents");
+			PatentIndex index = cs.readPatentIndex(CompressedFiles.getFile(fMainDir, "patents_indexed.txt"));
+			long nCandidates = mhs.jaccardSimilarity(index, CompressedFiles.getFile(fJaccard, name+"_all.txt"), cs.getPatentNumbers(index, lhmPatentsIdx), threshold, rescore);
+			System.out.println("\tCandidate pairs = "+nCandidates);
+		}
+		else{
+			for(int year=initYear;year<=endYear;year++){
+				System.out.println("Computing similarities for year = "+year);
+				PatentIndex index = cs.readPatentIndex(CompressedFiles.getFile(fMainDir, "years/patents_indexed_"+year+".txt"));
+				long nCandidates = mhs.jaccardSimilarity(index, CompressedFiles.getFile(fJaccard, name+"_"+year+".txt"), cs.getPatentNumbers(index, lhmPatentsIdx), threshold, rescore);
+				System.out.println("\tCandidate pairs = "+nCandidates);
+			}
+		}
+	}
+}
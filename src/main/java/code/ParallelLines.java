@@ -0,0 +1,439 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Processes a text file line by line (or CSV record by record) using several threads.
+ * The file is read in chunks of consecutive lines, which are transformed by a pool of threads into
+ * one or more outputs per chunk. The outputs of the chunks are passed to a writer in the order of the
+ * file, so the result is the same as the sequential one and the outputs of each line keep their
+ * correspondence. The dictionaries used by the transformations are shared and must be read-only.
+ * A line ends with \n, \r\n or \r, as in BufferedReader. In CSV mode a chunk only ends at the end of
+ * a record (following the rules of CsvReader), since the quoted fields can contain line breaks.
+ * The number of lines (or records) before each chunk is known, so the transformations can use it,
+ * and the lines done before a checkpoint can be skipped.
+  */
+package code;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParallelLines {
+
+	public static final String LINE_SEPARATOR = System.getProperty("line.separator"); //As in PrintWriter.println
+
+	/**
+	 * Transformation of the lines of a chunk into its outputs, computed by the threads of the pool.
+	 */
+	public interface ChunkTransform {
+		void transform(Chunk chunk) throws IOException;
+	}
+
+	/**
+	 * Writer of the outputs of the chunks, called in the order of the file.
+	 */
+	public interface ChunkWriter {
+		void write(Chunk chunk) throws IOException;
+	}
+
+	/**
+	 * Consecutive lines of the file and their outputs.
+	 */
+	public static class Chunk {
+		private char[] chars;
+		private int pos = 0;
+		private long firstLine;
+		private int numLines;
+		private StringBuilder[] outputs = new StringBuilder[4];
+		private long count = 0;
+		private Object result = null;
+
+		Chunk(char[] chars, long firstLine, int numLines){
+			this.chars = chars;
+			this.firstLine = firstLine;
+			this.numLines = numLines;
+		}
+
+		/**
+		 * Reads the next line of the chunk, without the line break.
+		 *
+		 * @return The line, or null at the end of the chunk.
+		 */
+		public String readLine(){
+			if(pos>=chars.length)
+				return null;
+			int start = pos;
+			while(pos<chars.length && chars[pos]!='\n' && chars[pos]!='\r')
+				pos++;
+			String line = new String(chars, start, pos-start);
+			if(pos<chars.length){
+				if(chars[pos]=='\r' && pos+1<chars.length && chars[pos+1]=='\n')
+					pos++;
+				pos++;
+			}
+			return line;
+		}
+
+		/**
+		 * Returns a reader of the content of the chunk (for example for a CsvReader).
+		 */
+		public Reader getReader(){
+			return new CharArrayReader(chars);
+		}
+
+		/**
+		 * Returns an output of the chunk, created empty the first time.
+		 *
+		 * @param output The index of the output.
+		 */
+		public StringBuilder getOutput(int output){
+			if(output>=outputs.length)
+				outputs = Arrays.copyOf(outputs, Math.max(output+1, outputs.length*2));
+			if(outputs[output]==null)
+				outputs[output] = new StringBuilder(1024);
+			return outputs[output];
+		}
+
+		/**
+		 * Checks if the chunk has content for an output.
+		 *
+		 * @param output The index of the output.
+		 */
+		public boolean hasOutput(int output){
+			return output<outputs.length && outputs[output]!=null && outputs[output].length()>0;
+		}
+
+		/**
+		 * Returns the number of outputs that the chunk can have (some of them may be empty).
+		 */
+		public int getNumOutputs(){
+			return outputs.length;
+		}
+
+		/**
+		 * Counts an item of the chunk (for example a line written).
+		 */
+		public void count(){
+			count++;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Sets a result of the transformation other than the text outputs (for example counts).
+		 */
+		public void setResult(Object result) {
+			this.result = result;
+		}
+
+		public Object getResult() {
+			return result;
+		}
+
+		/**
+		 * Returns the number of lines of the file before this chunk.
+		 */
+		public long getFirstLine() {
+			return firstLine;
+		}
+
+		public int getNumLines() {
+			return numLines;
+		}
+
+		/**
+		 * Returns the number of lines of the file up to the end of this chunk.
+		 */
+		public long getEndLine() {
+			return firstLine+numLines;
+		}
+	}
+
+	private int numThreads;
+	private boolean csv;
+	private Charset charset = Charset.defaultCharset();
+	private int chunkSize = 1<<22;
+	//Reading state: the next chunk starts at start, and the characters up to pos are scanned
+	private Reader rdInput;
+	private char[] buf;
+	private int start;
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private int boundary; //End of the last complete line found in the chunk (-1 if none)
+	private int lines;
+	private int boundaryLines;
+	private boolean skipLineFeed;
+	private boolean inLine;
+	private boolean inQuotes;
+	private boolean afterQuote;
+	private boolean fieldEmpty;
+	private boolean fieldQuoted;
+
+	/**
+	 * Constructor
+	 *
+	 * @param numThreads The number of threads (1 transforms the chunks in the calling thread).
+	 * @param csv True to split the file in CSV records instead of lines.
+	 */
+	public ParallelLines(int numThreads, boolean csv){
+		this.numThreads = numThreads;
+		this.csv = csv;
+	}
+
+	/**
+	 * Sets the charset of the file (by default the charset of the platform, as FileReader).
+	 */
+	public void setCharset(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Sets the approximate number of characters of each chunk.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Transforms the lines of a file using several threads and passes the outputs to a writer in
+	 * the order of the file.
+	 *
+	 * @param fInput The file.
+	 * @param skip The number of lines to skip at the start of the file (done before a checkpoint,
+	 * or a header).
+	 * @param transform The transformation of each chunk.
+	 * @param writer The writer of the outputs.
+	 * @return The number of lines of the file, including the skipped ones.
+	 */
+	public long process(File fInput, long skip, final ChunkTransform transform, ChunkWriter writer) throws IOException{
+		rdInput = new InputStreamReader(CompressedFiles.openInput(fInput), charset);
+		buf = new char[2*chunkSize];
+		start = 0;
+		pos = 0;
+		limit = 0;
+		eof = false;
+		skipLineFeed = false;
+		long nLines = 0;
+		ExecutorService pool = numThreads>1 ? Executors.newFixedThreadPool(numThreads) : null;
+		try{
+			Chunk chunk;
+			while(nLines<skip && (chunk=this.nextChunk(nLines, skip-nLines))!=null) //Skip the lines
+				nLines = chunk.getEndLine();
+			if(pool==null){
+				while((chunk=this.nextChunk(nLines, Integer.MAX_VALUE))!=null){
+					transform.transform(chunk);
+					writer.write(chunk);
+					nLines = chunk.getEndLine();
+				}
+				return nLines;
+			}
+			int window = 2*numThreads; //Maximum number of chunks transformed ahead of the writer
+			ArrayDeque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+			boolean end = false;
+			while(!end || !pending.isEmpty()){
+				while(!end && pending.size()<window){
+					final Chunk next = this.nextChunk(nLines, Integer.MAX_VALUE);
+					if(next==null){
+						end = true;
+						break;
+					}
+					nLines = next.getEndLine();
+					pending.add(pool.submit(new Callable<Chunk>(){
+						public Chunk call() throws IOException{
+							transform.transform(next);
+							return next;
+						}
+					}));
+				}
+				if(!pending.isEmpty())
+					writer.write(this.getResult(pending.poll()));
+			}
+			return nLines;
+		}
+		finally{
+			if(pool!=null)
+				pool.shutdownNow();
+			rdInput.close();
+			buf = null;
+		}
+	}
+
+	/**
+	 * Waits for a chunk transformed by the pool, passing on the errors of the transformation.
+	 */
+	private Chunk getResult(Future<Chunk> future) throws IOException{
+		try{
+			return future.get();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while transforming the lines", e);
+		}
+		catch(ExecutionException e){
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException)
+				throw (IOException)cause;
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			if(cause instanceof Error)
+				throw (Error)cause;
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Reads the next chunk, which ends at the first end of line after the chunk size, or after a
+	 * maximum number of lines.
+	 *
+	 * @param firstLine The number of lines before the chunk.
+	 * @param maxLines The maximum number of lines of the chunk.
+	 * @return The chunk, or null at the end of the file.
+	 */
+	private Chunk nextChunk(long firstLine, long maxLines) throws IOException{
+		pos = start;
+		boundary = -1;
+		lines = 0;
+		boundaryLines = 0;
+		skipLineFeed = false;
+		inLine = false;
+		inQuotes = false;
+		afterQuote = false;
+		fieldEmpty = true;
+		fieldQuoted = false;
+		while(boundary<0 || (boundary-start<chunkSize && boundaryLines<maxLines)){
+			if(pos==limit && !this.fill()){ //End of the file
+				if(inLine)
+					lines++;
+				if(limit>start){
+					boundary = limit;
+					boundaryLines = lines;
+				}
+				break;
+			}
+			this.scan(maxLines);
+		}
+		if(boundary<0)
+			return null;
+		Chunk chunk = new Chunk(Arrays.copyOfRange(buf, start, boundary), firstLine, boundaryLines);
+		start = boundary;
+		return chunk;
+	}
+
+	/**
+	 * Scans the read characters looking for the ends of line, until the end of a line completes
+	 * the chunk.
+	 */
+	private void scan(long maxLines){
+		while(pos<limit){
+			char c = buf[pos];
+			if(skipLineFeed){ //Second character of \r\n
+				skipLineFeed = false;
+				if(c=='\n')
+					pos++;
+				if(this.setBoundary(maxLines))
+					return;
+				continue;
+			}
+			pos++;
+			if(inQuotes){
+				if(c=='"'){
+					inQuotes = false;
+					afterQuote = true;
+				}
+				else
+					fieldEmpty = false;
+				continue;
+			}
+			if(csv && c=='"'){
+				inLine = true;
+				if(afterQuote){ //Escaped quote
+					fieldEmpty = false;
+					inQuotes = true;
+					afterQuote = false;
+				}
+				else if(fieldEmpty && !fieldQuoted){
+					fieldQuoted = true;
+					inQuotes = true;
+				}
+				else
+					fieldEmpty = false;
+				continue;
+			}
+			afterQuote = false;
+			if(c=='\n' || c=='\r'){
+				lines++;
+				inLine = false;
+				fieldEmpty = true;
+				fieldQuoted = false;
+				if(c=='\r') //The end is known with the next character
+					skipLineFeed = true;
+				else if(this.setBoundary(maxLines))
+					return;
+				continue;
+			}
+			inLine = true;
+			if(csv && c==','){
+				fieldEmpty = true;
+				fieldQuoted = false;
+			}
+			else
+				fieldEmpty = false;
+		}
+	}
+
+	/**
+	 * Marks the current position as the end of a line.
+	 *
+	 * @return True if the chunk is complete.
+	 */
+	private boolean setBoundary(long maxLines){
+		boundary = pos;
+		boundaryLines = lines;
+		return boundary-start>=chunkSize || boundaryLines>=maxLines;
+	}
+
+	/**
+	 * Reads more characters after the limit of the buffer, moving the current chunk to the start
+	 * of the buffer (or growing it) when it is full.
+	 *
+	 * @return False at the end of the file.
+	 */
+	private boolean fill() throws IOException{
+		if(eof)
+			return false;
+		if(limit==buf.length){
+			if(start>0){
+				System.arraycopy(buf, start, buf, 0, limit-start);
+				pos -= start;
+				limit -= start;
+				if(boundary>=0)
+					boundary -= start;
+				start = 0;
+			}
+			else
+				buf = Arrays.copyOf(buf, buf.length*2);
+		}
+		int n = rdInput.read(buf, limit, buf.length-limit);
+		if(n<0){
+			eof = true;
+			return false;
+		}
+		limit += n;
+		return true;
+	}
+}
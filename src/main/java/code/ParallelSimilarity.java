@@ -0,0 +1,232 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Computes the pair-wise similarities of one year using several threads.
+ * The focus patents are split in ranges of similar cost, which are computed by a fork-join pool
+ * over the shared (read-only) patent index. The intersections of each range are buffered and
+ * passed to the writer in ordinal order, so the output is the same as the sequential one.
+  */
+package code;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+public class ParallelSimilarity {
+
+	private Stage05ComputeSimilarity cs;
+	private int numThreads;
+
+	/**
+	 * Constructor
+	 *
+	 * @param cs The similarity computation used by each thread.
+	 * @param numThreads The number of threads.
+	 */
+	public ParallelSimilarity(Stage05ComputeSimilarity cs, int numThreads){
+		this.cs = cs;
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Intersections computed for a range of focus patents.
+	 * For each focus patent it stores the number of patents found, followed by their ordinals
+	 * and intersections.
+	 */
+	public static class PairBuffer {
+		private int from;
+		private int to;
+		private IntList counts;
+		private IntList patentsB;
+		private IntList intersections;
+
+		public PairBuffer(int from, int to){
+			this.from = from;
+			this.to = to;
+			this.counts = new IntList(to-from);
+			this.patentsB = new IntList(1024);
+			this.intersections = new IntList(1024);
+		}
+
+		public void add(int[] touched, int[] values, int nTouched){
+			counts.add(nTouched);
+			for(int i=0;i<nTouched;i++){ //Collect the intersections and reset the accumulator
+				patentsB.add(touched[i]);
+				intersections.add(values[touched[i]]);
+				values[touched[i]] = 0;
+			}
+		}
+
+		/**
+		 * Passes the buffered intersections to a writer, one focus patent at a time.
+		 *
+		 * @param writer The writer.
+		 * @param patentsB A scratch array for the ordinals of the other patents.
+		 * @param intersections A scratch array for the intersections.
+		 */
+		public void replay(SimilarityWriter writer, int[] patentsB, int[] intersections) throws IOException{
+			int pos = 0;
+			for(int patentA=from;patentA<to;patentA++){
+				int count = counts.get(patentA-from);
+				System.arraycopy(this.patentsB.getValues(), pos, patentsB, 0, count);
+				System.arraycopy(this.intersections.getValues(), pos, intersections, 0, count);
+				writer.write(patentA, patentsB, intersections, count);
+				pos += count;
+			}
+		}
+	}
+
+	/**
+	 * Work unit that computes the intersections of a range of focus patents. Each thread of the
+	 * pool keeps its own accumulator.
+	 */
+	private class RangeTask extends RecursiveTask<PairBuffer> {
+		private static final long serialVersionUID = 1L;
+		private PatentIndex index;
+		private int from;
+		private int to;
+		private ThreadLocal<int[][]> accumulators;
+
+		RangeTask(PatentIndex index, int from, int to, ThreadLocal<int[][]> accumulators){
+			this.index = index;
+			this.from = from;
+			this.to = to;
+			this.accumulators = accumulators;
+		}
+
+		protected PairBuffer compute(){
+			int[][] accumulator = accumulators.get();
+			int[] values = accumulator[0];
+			int[] touched = accumulator[1];
+			PairBuffer buffer = new PairBuffer(from, to);
+			for(int patentA=from;patentA<to;patentA++){
+				int nTouched = cs.processPatents(index, patentA, values, touched);
+				buffer.add(touched, values, nTouched);
+			}
+			return buffer;
+		}
+	}
+
+	/**
+	 * Estimates the cost of each focus patent as the number of postings visited when it is
+	 * processed, that is, the postings of its keywords with a greater ordinal, plus its number
+	 * of keywords.
+	 *
+	 * @param index The patent index.
+	 * @return The cost of each patent, by ordinal.
+	 */
+	public long[] estimateCosts(PatentIndex index){
+		long[] costs = new long[index.getNumPatents()];
+		int[] termOffsets = index.getTermOffsets();
+		int[] postings = index.getPostings();
+		for(int p=0;p<costs.length;p++)
+			costs[p] = index.size(p);
+		for(int t=0;t<index.getNumTerms();t++){
+			int end = termOffsets[t+1];
+			for(int j=termOffsets[t];j<end;j++)
+				costs[postings[j]] += end-j-1;
+		}
+		return costs;
+	}
+
+	/**
+	 * Splits the focus patents in consecutive ranges whose cost is close to a target cost.
+	 *
+	 * @param costs The cost of each patent.
+	 * @param targetCost The target cost of each range.
+	 * @return The limits of the ranges, starting with 0 and ending with the number of patents.
+	 */
+	public int[] splitRanges(long[] costs, long targetCost){
+		IntList limits = new IntList();
+		limits.add(0);
+		long cost = 0;
+		for(int p=0;p<costs.length;p++){
+			cost += costs[p];
+			if(cost>=targetCost){
+				limits.add(p+1);
+				cost = 0;
+			}
+		}
+		if(limits.get(limits.size()-1)<costs.length)
+			limits.add(costs.length);
+		return limits.toArray();
+	}
+
+	/**
+	 * Computes the intersections between every pair of patents in a primitive index using
+	 * several threads and passes them to a writer in ordinal order.
+	 *
+	 * @param index The patent index.
+	 * @param writer The writer that stores the similarities.
+	 */
+	public void jaccardSimilarity(final PatentIndex index, SimilarityWriter writer) throws IOException{
+		this.jaccardSimilarity(index, writer, 0);
+	}
+
+	/**
+	 * Computes the intersections between every pair of patents in a primitive index using
+	 * several threads, starting from a focus patent (to resume from a checkpoint), and passes
+	 * them to a writer in ordinal order.
+	 *
+	 * @param index The patent index.
+	 * @param writer The writer that stores the similarities.
+	 * @param firstPatent The ordinal of the first focus patent.
+	 */
+	public void jaccardSimilarity(final PatentIndex index, SimilarityWriter writer, int firstPatent) throws IOException{
+		this.jaccardSimilarity(index, writer, firstPatent, index.getNumPatents());
+	}
+
+	/**
+	 * Computes the intersections between every pair of patents in a primitive index using
+	 * several threads, for a range of focus patents (to resume from a checkpoint or compute a
+	 * shard), and passes them to a writer in ordinal order.
+	 *
+	 * @param index The patent index.
+	 * @param writer The writer that stores the similarities.
+	 * @param firstPatent The ordinal of the first focus patent.
+	 * @param endPatent The ordinal after the last focus patent.
+	 */
+	public void jaccardSimilarity(final PatentIndex index, SimilarityWriter writer, int firstPatent, int endPatent) throws IOException{
+		final int numPatents = index.getNumPatents();
+		long[] costs = Arrays.copyOfRange(this.estimateCosts(index), firstPatent, endPatent);
+		long totalCost = 0;
+		for(long cost:costs)
+			totalCost += cost;
+		long targetCost = Math.max(1, Math.min(totalCost/(numThreads*16L), 1L<<22)); //Bounds the size of each buffer
+		int[] limits = this.splitRanges(costs, targetCost);
+		for(int r=0;r<limits.length;r++)
+			limits[r] += firstPatent;
+		ThreadLocal<int[][]> accumulators = new ThreadLocal<int[][]>(){
+			protected int[][] initialValue(){
+				return new int[][]{new int[numPatents], new int[numPatents]};
+			}
+		};
+		int[] patentsB = new int[numPatents];
+		int[] intersections = new int[numPatents];
+		int window = 2*numThreads; //Maximum number of ranges computed ahead of the writer
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		ArrayDeque<ForkJoinTask<PairBuffer>> pending = new ArrayDeque<ForkJoinTask<PairBuffer>>();
+		int nextRange = 0;
+		int nRanges = limits.length-1;
+		try{
+			while(nextRange<nRanges || !pending.isEmpty()){
+				while(nextRange<nRanges && pending.size()<window){
+					pending.add(pool.submit(new RangeTask(index, limits[nextRange], limits[nextRange+1], accumulators)));
+					nextRange++;
+				}
+				PairBuffer buffer = pending.poll().join();
+				buffer.replay(writer, patentsB, intersections);
+			}
+		}
+		finally{
+			pool.shutdown();
+		}
+		writer.close();
+	}
+}
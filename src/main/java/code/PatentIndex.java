@@ -0,0 +1,204 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Primitive index of the patents of one year.
+ * Patents are identified by their ordinal (the line number in the year file) and keywords by
+ * their position in the vocabulary (the decoded base 50 code), so both are dense integers.
+ * The keywords of each patent and the inverted index are stored in a compressed sparse row
+ * format: the keywords of patent p are patentTerms[patentOffsets[p]..patentOffsets[p+1]) and the
+ * patents associated with keyword t are postings[termOffsets[t]..termOffsets[t+1]), sorted by
+ * ordinal.
+ * Optionally, the index keeps the frequency of each keyword in each patent and the TF-IDF
+ * weights of the keywords of each patent and of each posting, for the weighted similarities.
+  */
+package code;
+
+public class PatentIndex {
+
+	private String[] patentIds;
+	private int[] patentOffsets;
+	private int[] patentTerms;
+	private int[] termOffsets;
+	private int[] postings;
+	private int numPatents;
+	private int numTerms;
+	private FrequentTermBitsets frequentTerms = null;
+	private int[] frequencies = null;
+	private float[] patentWeights = null;
+	private float[] postingWeights = null;
+	private float[] norms = null;
+
+	/**
+	 * Constructor. Builds the inverted index from the keywords of each patent.
+	 *
+	 * @param patentIds The codified patent numbers, by ordinal.
+	 * @param patentOffsets The start of the keywords of each patent, with numPatents+1 positions.
+	 * @param patentTerms The keywords of all the patents, without repetitions inside a patent.
+	 * @param numTerms The number of keywords (one more than the largest keyword index).
+	 */
+	public PatentIndex(String[] patentIds, int[] patentOffsets, int[] patentTerms, int numTerms){
+		this.patentIds = patentIds;
+		this.patentOffsets = patentOffsets;
+		this.patentTerms = patentTerms;
+		this.numPatents = patentIds.length;
+		this.numTerms = numTerms;
+		this.termOffsets = new int[numTerms+1];
+		int nPostings = patentOffsets[numPatents];
+		for(int i=0;i<nPostings;i++)
+			termOffsets[patentTerms[i]+1]++;
+		for(int t=0;t<numTerms;t++)
+			termOffsets[t+1] += termOffsets[t];
+		this.postings = new int[nPostings];
+		int[] next = new int[numTerms];
+		System.arraycopy(termOffsets, 0, next, 0, numTerms);
+		for(int p=0;p<numPatents;p++){ //Patents are visited in order, so each posting list is sorted
+			for(int i=patentOffsets[p];i<patentOffsets[p+1];i++)
+				postings[next[patentTerms[i]]++] = p;
+		}
+	}
+
+	public String[] getPatentIds() {
+		return patentIds;
+	}
+
+	public int[] getPatentOffsets() {
+		return patentOffsets;
+	}
+
+	public int[] getPatentTerms() {
+		return patentTerms;
+	}
+
+	public int[] getTermOffsets() {
+		return termOffsets;
+	}
+
+	public int[] getPostings() {
+		return postings;
+	}
+
+	public int getNumPatents() {
+		return numPatents;
+	}
+
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	public FrequentTermBitsets getFrequentTerms() {
+		return frequentTerms;
+	}
+
+	/**
+	 * Sets the bitsets used for the most frequent keywords when counting intersections, or null
+	 * to use only the posting lists.
+	 *
+	 * @param frequentTerms The bitsets of the frequent keywords.
+	 */
+	public void setFrequentTerms(FrequentTermBitsets frequentTerms) {
+		this.frequentTerms = frequentTerms;
+	}
+
+	public int[] getFrequencies() {
+		return frequencies;
+	}
+
+	/**
+	 * Sets the frequency of each keyword in each patent, in the same positions as patentTerms, and
+	 * computes the TF-IDF weights. The weight of a keyword in a patent is its frequency multiplied
+	 * by log(numPatents/df), so the keywords of all the patents of the year weigh 0.
+	 *
+	 * @param frequencies The frequencies of the keywords.
+	 */
+	public void setFrequencies(int[] frequencies) {
+		this.frequencies = frequencies;
+		double[] idf = new double[numTerms];
+		for(int t=0;t<numTerms;t++)
+			idf[t] = this.df(t)>0 ? Math.log((double)numPatents/this.df(t)) : 0;
+		this.patentWeights = new float[patentTerms.length];
+		this.postingWeights = new float[postings.length];
+		this.norms = new float[numPatents];
+		int[] next = new int[numTerms];
+		System.arraycopy(termOffsets, 0, next, 0, numTerms);
+		for(int p=0;p<numPatents;p++){ //Same order as the postings
+			double norm = 0;
+			for(int i=patentOffsets[p];i<patentOffsets[p+1];i++){
+				float weight = (float)(frequencies[i]*idf[patentTerms[i]]);
+				patentWeights[i] = weight;
+				postingWeights[next[patentTerms[i]]++] = weight;
+				norm += (double)weight*weight;
+			}
+			norms[p] = (float)Math.sqrt(norm);
+		}
+	}
+
+	/**
+	 * Returns the TF-IDF weights of the keywords of the patents, in the same positions as
+	 * patentTerms (null if there are no frequencies).
+	 */
+	public float[] getPatentWeights() {
+		return patentWeights;
+	}
+
+	/**
+	 * Returns the TF-IDF weights of the postings, in the same positions as postings (null if there
+	 * are no frequencies).
+	 */
+	public float[] getPostingWeights() {
+		return postingWeights;
+	}
+
+	/**
+	 * Returns the norm of the TF-IDF weights of a patent.
+	 *
+	 * @param patent The patent ordinal.
+	 * @return The norm.
+	 */
+	public float norm(int patent){
+		return norms[patent];
+	}
+
+	/**
+	 * Returns the number of keywords of a patent.
+	 *
+	 * @param patent The patent ordinal.
+	 * @return The number of keywords.
+	 */
+	public int size(int patent){
+		return patentOffsets[patent+1]-patentOffsets[patent];
+	}
+
+	/**
+	 * Returns the number of patents associated with a keyword (document frequency).
+	 *
+	 * @param term The keyword index.
+	 * @return The document frequency.
+	 */
+	public int df(int term){
+		return termOffsets[term+1]-termOffsets[term];
+	}
+
+	/**
+	 * Finds the first position in the posting list of a keyword whose patent ordinal is greater
+	 * than a given patent.
+	 *
+	 * @param term The keyword index.
+	 * @param patent The patent ordinal.
+	 * @return The position in the postings array.
+	 */
+	public int firstPostingAfter(int term, int patent){
+		int low = termOffsets[term];
+		int high = termOffsets[term+1];
+		while(low<high){
+			int mid = (low+high)>>>1;
+			if(postings[mid]<=patent)
+				low = mid+1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Decodes the lines of an indexed patent file (codified patent number, number of keywords and
+ * codified keywords with their frequencies) into keyword indexes, and optionally their
+ * frequencies, without splitting the line.
+  */
+package code;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+public class PatentLineParser {
+
+	private int[] digitValues;
+	private int digitBase;
+	private int[] lastLine = new int[1<<12]; //Last line (plus one) where each keyword was seen, to skip repetitions
+	private int nLine = 0;
+
+	/**
+	 * Constructor
+	 */
+	public PatentLineParser(){
+		Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+		this.digitValues = cip.getDigitValues();
+		this.digitBase = cip.getDigits().length;
+	}
+
+	/**
+	 * Decodes a line of an indexed patent file. The keywords are added to a list, in the order of
+	 * the line and without repetitions.
+	 *
+	 * @param line The line.
+	 * @param terms The list where to add the keyword indexes.
+	 * @return The codified patent number.
+	 */
+	public String parse(String line, IntList terms) throws IOException{
+		return this.parse(line, terms, null);
+	}
+
+	/**
+	 * Decodes a line of an indexed patent file. The keywords and their frequencies are added to two
+	 * lists, in the order of the line and without repetitions.
+	 *
+	 * @param line The line.
+	 * @param terms The list where to add the keyword indexes.
+	 * @param frequencies The list where to add the frequencies (null to skip them).
+	 * @return The codified patent number.
+	 */
+	public String parse(String line, IntList terms, IntList frequencies) throws IOException{
+		return this.parse(line, 0, line.length(), terms, frequencies);
+	}
+
+	/**
+	 * Decodes a line of an indexed patent file that is a part of a sequence of characters (such
+	 * as a MappedLineReader), without creating other String than the codified patent number.
+	 *
+	 * @param text The sequence that contains the line.
+	 * @param lineStart The start of the line in the sequence.
+	 * @param lineEnd The end of the line in the sequence (exclusive).
+	 * @param terms The list where to add the keyword indexes.
+	 * @param frequencies The list where to add the frequencies (null to skip them).
+	 * @return The codified patent number.
+	 */
+	public String parse(CharSequence text, int lineStart, int lineEnd, IntList terms, IntList frequencies) throws IOException{
+		nLine++;
+		int end = indexOf(text, ' ', lineStart, lineEnd);
+		if(end<0)
+			end = lineEnd;
+		String idPatent = text.subSequence(lineStart, end).toString();
+		int pos = indexOf(text, ' ', end+1, lineEnd); //Skip the number of keywords
+		while(pos>=0 && pos<lineEnd){
+			int term = 0;
+			char c = 0;
+			int start = ++pos;
+			while(pos<lineEnd && (c=text.charAt(pos))!=':' && c!=' '){
+				if(c>=digitValues.length || digitValues[c]<0)
+					throw new IOException("Invalid keyword code for patent "+idPatent+": "+text.subSequence(start, pos+1));
+				if(term>(Integer.MAX_VALUE-1-digitValues[c])/digitBase) //Corrupt or too long code
+					throw new IOException("Keyword code out of the int range for patent "+idPatent+": "+text.subSequence(start, pos+1)
+							+" in line "+text.subSequence(lineStart, lineEnd));
+				term = term*digitBase+digitValues[c];
+				pos++;
+			}
+			if(pos==start){ //Empty element, as in a trailing space
+				pos = indexOf(text, ' ', pos, lineEnd);
+				continue;
+			}
+			int frequency = 0;
+			if(frequencies!=null && c==':'){
+				while(++pos<lineEnd && (c=text.charAt(pos))!=' '){
+					if(c<'0' || c>'9')
+						throw new IOException("Invalid keyword frequency for patent "+idPatent+": "+text.subSequence(start, pos+1));
+					frequency = frequency*10+(c-'0');
+				}
+			}
+			else
+				pos = indexOf(text, ' ', pos, lineEnd); //Skip the frequency of the keyword
+			if(term>=lastLine.length)
+				lastLine = Arrays.copyOf(lastLine, Math.max(term+1, lastLine.length*2));
+			if(lastLine[term]!=nLine){
+				lastLine[term] = nLine;
+				terms.add(term);
+				if(frequencies!=null)
+					frequencies.add(Math.max(1, frequency));
+			}
+		}
+		return idPatent;
+	}
+
+	/**
+	 * Returns the position of a character in a part of a sequence, or -1 if it is not there.
+	 */
+	private static int indexOf(CharSequence text, char c, int from, int end){
+		for(int i=from;i<end;i++)
+			if(text.charAt(i)==c)
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Reads, one pair at a time, the similarities stored by BinarySimilarityWriter, and converts
+ * them back to the text format.
+  */
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+public class SimilarityReader {
+
+	private DataInputStream disSimilarity;
+	private int year;
+	private int scale;
+	private String[] patentNumbers;
+	private int patentA = -1;
+	private int patentB = -1;
+	private int roundSim = 0;
+	private int remaining = 0; //Pairs left in the current group
+
+	/**
+	 * Constructor. Reads the header of the file.
+	 *
+	 * @param fSimilarity The file with the similarities in binary format.
+	 */
+	public SimilarityReader(File fSimilarity) throws IOException{
+		this.disSimilarity = new DataInputStream(new BufferedInputStream(CompressedFiles.openInput(fSimilarity), 1<<16));
+		if(disSimilarity.readInt()!=BinarySimilarityWriter.MAGIC){
+			disSimilarity.close();
+			throw new IOException("Not a binary similarity file: "+fSimilarity);
+		}
+		int version = disSimilarity.readInt();
+		if(version!=BinarySimilarityWriter.VERSION){
+			disSimilarity.close();
+			throw new IOException("Unsupported version "+version+" of the binary similarity file: "+fSimilarity);
+		}
+		this.year = disSimilarity.readInt();
+		this.scale = disSimilarity.readInt();
+		this.patentNumbers = new String[disSimilarity.readInt()];
+		for(int p=0;p<patentNumbers.length;p++)
+			patentNumbers[p] = disSimilarity.readUTF();
+	}
+
+	/**
+	 * Reads an unsigned variable length integer, as written by BinarySimilarityWriter.writeVarInt.
+	 *
+	 * @param dis The input stream.
+	 * @return The value.
+	 */
+	public static int readVarInt(DataInputStream dis) throws IOException{
+		return readVarInt(dis, dis.readUnsignedByte());
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 *
+	 * @param dis The input stream.
+	 * @param first The first byte of the integer.
+	 * @return The value.
+	 */
+	private static int readVarInt(DataInputStream dis, int first) throws IOException{
+		int value = first&0x7f;
+		int shift = 7;
+		int b = first;
+		while((b&0x80)!=0){
+			b = dis.readUnsignedByte();
+			value |= (b&0x7f)<<shift;
+			shift += 7;
+		}
+		return value;
+	}
+
+	/**
+	 * Moves to the next pair.
+	 *
+	 * @return False if there are no more pairs.
+	 */
+	public boolean next() throws IOException{
+		if(remaining==0){
+			int first = disSimilarity.read();
+			if(first<0)
+				return false;
+			patentA = readVarInt(disSimilarity, first);
+			remaining = readVarInt(disSimilarity, disSimilarity.readUnsignedByte());
+			patentB = patentA;
+		}
+		try{
+			patentB += readVarInt(disSimilarity, disSimilarity.readUnsignedByte());
+			roundSim = disSimilarity.readInt();
+		}
+		catch(EOFException e){
+			throw new IOException("Truncated binary similarity file", e);
+		}
+		remaining--;
+		return true;
+	}
+
+	public int getYear(){
+		return year;
+	}
+
+	public String[] getPatentNumbers(){
+		return patentNumbers;
+	}
+
+	/**
+	 * Returns the ordinal of patent A in the current pair.
+	 */
+	public int getPatentA(){
+		return patentA;
+	}
+
+	/**
+	 * Returns the ordinal of patent B in the current pair.
+	 */
+	public int getPatentB(){
+		return patentB;
+	}
+
+	/**
+	 * Returns the similarity of the current pair multiplied by the scale of the file.
+	 */
+	public int getRoundSim(){
+		return roundSim;
+	}
+
+	/**
+	 * Returns the similarity of the current pair, rounded to 5 digits.
+	 */
+	public double getSimilarity(){
+		return roundSim/(double)scale;
+	}
+
+	public void close() throws IOException{
+		disSimilarity.close();
+	}
+
+	/**
+	 * Converts a binary similarity file to the text format, one pair per line with the original
+	 * patent numbers and the similarity.
+	 *
+	 * @param fBinary The file with the similarities in binary format.
+	 * @param fText The file to store the similarities in text format.
+	 * @return The number of pairs.
+	 */
+	public static long convertToText(File fBinary, File fText) throws IOException{
+		SimilarityReader reader = new SimilarityReader(fBinary);
+		String[] patentNumbers = reader.getPatentNumbers();
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fText);
+		long nPairs = 0;
+		while(reader.next()){
+			pwSimilarity.print(patentNumbers[reader.getPatentA()]);
+			pwSimilarity.print(' ');
+			pwSimilarity.print(patentNumbers[reader.getPatentB()]);
+			pwSimilarity.print(' ');
+			if(reader.scale==BinarySimilarityWriter.SCALE)
+				pwSimilarity.println(TextSimilarityWriter.getSimilarity(reader.getRoundSim()));
+			else
+				pwSimilarity.println(reader.getSimilarity());
+			nPairs++;
+			if (nPairs%10000000==0){ //Outputs the progress of this process
+				System.out.println("\t"+nPairs+" pairs converted...");
+			}
+		}
+		reader.close();
+		pwSimilarity.close();
+		return nPairs;
+	}
+
+	public static void main(String[] args) throws IOException{
+		int initYear = 1940; //Initial year to convert
+		int endYear = 1945; //Final year to convert
+		double threshold = 0; //Minimum similarity set in Stage05ComputeSimilarity when the years were computed (0 if all the pairs were stored)
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fJaccard = new File(fMainDir+"/jaccard/");
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		cs.setThreshold(threshold);
+		String name = cs.getOutputName(); //Same names as the binary files of Stage05ComputeSimilarity
+
+		for(int year=initYear;year<=endYear;year++){
+			File fBinary = new File(fJaccard, name+"_"+year+".bin");
+			if(!fBinary.exists())
+				continue;
+			System.out.println("Converting similarities for year = "+year);
+			long nPairs = convertToText(fBinary, CompressedFiles.getFile(fJaccard, name+"_"+year+".txt"));
+			System.out.println("\tPairs = "+nPairs);
+		}
+	}
+}
@@ -0,0 +1,514 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Local HTTP service to query the Jaccard similarity of a patent or a new text against the
+ * patents of one or several years.
+ * The per-year indexes are loaded once, and each query only visits the posting lists of its
+ * keywords. A new text is transformed with the same rules as Stage01PreprocessData (tokens,
+ * stopwords, learned stopwords of all the years and of the year compared, and vocabulary), so its
+ * similarities are comparable with the ones of Stage05.
+ *
+ * GET  /similar?patent=NUMBER[&year=YEAR][&k=K][&threshold=T]  Similar patents of a patent.
+ * POST /similar[?year=YEAR][&k=K][&threshold=T]                Similar patents of the text in the body.
+ * GET  /metrics                                                 Number of queries and latencies.
+ *
+ * The answer has one line per similar patent, with the patent number, its year and the
+ * similarity rounded to 5 digits, from the most to the least similar.
+  */
+package code;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class SimilarityService {
+
+	/**
+	 * A year loaded in the service.
+	 */
+	private static class ServiceYear {
+		int year;
+		PatentIndex index;
+		String[] patentNumbers;
+
+		ServiceYear(int year, PatentIndex index, String[] patentNumbers){
+			this.year = year;
+			this.index = index;
+			this.patentNumbers = patentNumbers;
+		}
+	}
+
+	/**
+	 * A similar patent found by a query.
+	 */
+	public static class Match {
+		public int year;
+		public String patentNumber;
+		public int roundSim; //Similarity multiplied by 100000
+		int order; //Position of the patent among the loaded patents, for the ties
+
+		Match(int year, String patentNumber, int roundSim, int order){
+			this.year = year;
+			this.patentNumber = patentNumber;
+			this.roundSim = roundSim;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * Orders the matches from the most to the least similar, and the ties by year and position
+	 * in the year file.
+	 */
+	private static final Comparator<Match> BEST_FIRST = new Comparator<Match>(){
+		public int compare(Match a, Match b){
+			if(a.roundSim!=b.roundSim)
+				return a.roundSim>b.roundSim ? -1 : 1;
+			return a.order<b.order ? -1 : (a.order==b.order ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Latency histogram safe for concurrent updates. The latencies are kept in microseconds in
+	 * buckets with 8 sub-buckets per power of 2, so the percentiles have an error below 12.5%.
+	 */
+	public static class LatencyStats {
+		private AtomicLongArray buckets = new AtomicLongArray(8+8*61);
+		private AtomicLong count = new AtomicLong();
+		private AtomicLong total = new AtomicLong();
+		private AtomicLong max = new AtomicLong();
+
+		private static int bucket(long micros){
+			if(micros<8)
+				return (int)micros;
+			int exp = 63-Long.numberOfLeadingZeros(micros);
+			return 8+(exp-3)*8+(int)((micros>>>(exp-3))&7);
+		}
+
+		private static long bucketValue(int bucket){
+			if(bucket<8)
+				return bucket;
+			return (8L+(bucket-8)%8)<<((bucket-8)/8);
+		}
+
+		/**
+		 * Adds the latency of a query.
+		 *
+		 * @param nanos The latency in nanoseconds.
+		 */
+		public void add(long nanos){
+			long micros = Math.max(0, nanos/1000);
+			buckets.incrementAndGet(bucket(micros));
+			count.incrementAndGet();
+			total.addAndGet(micros);
+			long current = max.get();
+			while(micros>current && !max.compareAndSet(current, micros))
+				current = max.get();
+		}
+
+		/**
+		 * Returns the latency below which are a fraction of the queries, in microseconds.
+		 *
+		 * @param fraction The fraction of the queries (0.5 for the median).
+		 */
+		public long percentile(double fraction){
+			long n = count.get();
+			if(n==0)
+				return 0;
+			long rank = Math.max(1, (long)Math.ceil(fraction*n));
+			long seen = 0;
+			for(int b=0;b<buckets.length();b++){
+				seen += buckets.get(b);
+				if(seen>=rank)
+					return bucketValue(b);
+			}
+			return max.get();
+		}
+
+		public String toString(){
+			long n = count.get();
+			return "queries = "+n+", mean = "+(n==0 ? 0 : total.get()/n)+" us, p50 = "+this.percentile(0.5)
+					+" us, p90 = "+this.percentile(0.9)+" us, p99 = "+this.percentile(0.99)+" us, max = "+max.get()+" us";
+		}
+	}
+
+	private Stage01PreprocessData ppd = new Stage01PreprocessData();
+	private StopWords sw = new EnglishStopWords();
+	private LearnedStopWords yearStopWords = null; //Learned stopwords of only some years
+	private LinkedHashMap<String, Integer> vocabulary;
+	private ArrayList<ServiceYear> years = new ArrayList<ServiceYear>();
+	private LinkedHashMap<String, int[]> patentLocations = new LinkedHashMap<String, int[]>(); //Position of each patent number in the loaded years
+	private int maxPatents = 0;
+	private int totalPatents = 0;
+	private ThreadLocal<int[][]> accumulators = new ThreadLocal<int[][]>(); //Intersections and patents found, per thread
+	private LatencyStats patentLatency = new LatencyStats();
+	private LatencyStats textLatency = new LatencyStats();
+	private HttpServer server;
+	private ExecutorService pool;
+
+	/**
+	 * Constructor
+	 *
+	 * @param vocabulary The vocabulary, with the index of each word (the line in the vocabulary file).
+	 */
+	public SimilarityService(LinkedHashMap<String, Integer> vocabulary){
+		this.vocabulary = vocabulary;
+	}
+
+	/**
+	 * Sets the file of learned stopwords of Stage01PreprocessData, removed from the texts as from
+	 * the patents. Must be set before starting the service.
+	 *
+	 * @param fStopWords The file of learned stopwords.
+	 */
+	public void setLearnedStopWords(File fStopWords) throws IOException{
+		ppd.setLearnedStopWords(fStopWords, null);
+		this.sw = ppd.getStopWords();
+		this.yearStopWords = ppd.readYearStopWords();
+	}
+
+	/**
+	 * Adds a year to the service. The years must be added before starting the service.
+	 *
+	 * @param year The year.
+	 * @param index The patent index of the year.
+	 * @param patentNumbers The original patent number of each patent of the year, by ordinal.
+	 */
+	public void addYear(int year, PatentIndex index, String[] patentNumbers){
+		for(int p=0;p<patentNumbers.length;p++)
+			patentLocations.put(patentNumbers[p], new int[]{years.size(), p});
+		years.add(new ServiceYear(year, index, patentNumbers));
+		maxPatents = Math.max(maxPatents, index.getNumPatents());
+		totalPatents += index.getNumPatents();
+	}
+
+	/**
+	 * Transforms a text into the indexes of its keywords, using the same rules as the patents.
+	 *
+	 * @param text The text.
+	 * @param year The year of the patents to compare with, for its learned stopwords (0 for none).
+	 * @return The keyword indexes, without repetitions.
+	 */
+	public int[] getTerms(String text, int year){
+		IntList terms = new IntList();
+		String yearString = String.valueOf(year);
+		for(String word:ppd.getBagofWords(text, sw).keySet()){
+			Integer term = vocabulary.get(word);
+			if(term!=null && (yearStopWords==null || !yearStopWords.isStopWord(word, yearString)))
+				terms.add(term);
+		}
+		return terms.toArray();
+	}
+
+	/**
+	 * Finds the patents similar to a list of keywords.
+	 *
+	 * @param terms The keyword indexes, without repetitions.
+	 * @param year The year of the patents to compare with (0 compares with all the loaded years).
+	 * @param exclude The position of a patent to leave out of the answer ({loaded year, ordinal}), or null.
+	 * @param k The maximum number of patents in the answer (0 returns all of them).
+	 * @param threshold The minimum similarity of the patents in the answer.
+	 * @return The similar patents, from the most to the least similar.
+	 */
+	public ArrayList<Match> query(int[] terms, int year, int[] exclude, int k, double threshold){
+		int[][] yearTerms = new int[years.size()][];
+		Arrays.fill(yearTerms, terms);
+		return this.query(yearTerms, year, exclude, k, threshold);
+	}
+
+	/**
+	 * Finds the patents similar to a list of keywords for each loaded year.
+	 *
+	 * @param yearTerms The keyword indexes for each loaded year, without repetitions.
+	 * @param year The year of the patents to compare with (0 compares with all the loaded years).
+	 * @param exclude The position of a patent to leave out of the answer ({loaded year, ordinal}), or null.
+	 * @param k The maximum number of patents in the answer (0 returns all of them).
+	 * @param threshold The minimum similarity of the patents in the answer.
+	 * @return The similar patents, from the most to the least similar.
+	 */
+	private ArrayList<Match> query(int[][] yearTerms, int year, int[] exclude, int k, double threshold){
+		int[][] accumulator = accumulators.get();
+		if(accumulator==null || accumulator[0].length<maxPatents){
+			accumulator = new int[][]{new int[maxPatents], new int[maxPatents]};
+			accumulators.set(accumulator);
+		}
+		int[] values = accumulator[0];
+		int[] touched = accumulator[1];
+		int roundThreshold = (int)Math.ceil(threshold*100000-1e-6);
+		ArrayList<Match> matches = new ArrayList<Match>();
+		PriorityQueue<Match> best = new PriorityQueue<Match>(Math.max(1, k), Collections.reverseOrder(BEST_FIRST)); //Worst match on top
+		int order = 0;
+		for(int y=0;y<years.size();y++){
+			ServiceYear serviceYear = years.get(y);
+			PatentIndex index = serviceYear.index;
+			if(year!=0 && serviceYear.year!=year){
+				order += index.getNumPatents();
+				continue;
+			}
+			int[] terms = yearTerms[y];
+			int[] termOffsets = index.getTermOffsets();
+			int[] postings = index.getPostings();
+			int nTouched = 0;
+			for(int term:terms){
+				if(term>=index.getNumTerms()) //The keyword does not occur in that year
+					continue;
+				for(int j=termOffsets[term];j<termOffsets[term+1];j++){
+					int patentB = postings[j];
+					if(values[patentB]++==0)
+						touched[nTouched++] = patentB;
+				}
+			}
+			for(int i=0;i<nTouched;i++){
+				int patentB = touched[i];
+				int intersection = values[patentB];
+				values[patentB] = 0;
+				if(exclude!=null && exclude[0]==y && exclude[1]==patentB)
+					continue;
+				int roundSim = TextSimilarityWriter.roundSimilarity(intersection, (terms.length+index.size(patentB))-intersection);
+				if(roundSim<=0 || roundSim<roundThreshold)
+					continue;
+				if(k<=0)
+					matches.add(new Match(serviceYear.year, serviceYear.patentNumbers[patentB], roundSim, order+patentB));
+				else if(best.size()<k || roundSim>best.peek().roundSim || (roundSim==best.peek().roundSim && order+patentB<best.peek().order)){
+					best.add(new Match(serviceYear.year, serviceYear.patentNumbers[patentB], roundSim, order+patentB));
+					if(best.size()>k)
+						best.poll();
+				}
+			}
+			order += index.getNumPatents();
+		}
+		if(k>0)
+			matches.addAll(best);
+		Collections.sort(matches, BEST_FIRST);
+		return matches;
+	}
+
+	/**
+	 * Finds the patents similar to a loaded patent.
+	 *
+	 * @param patentNumber The original patent number.
+	 * @param year The year of the patents to compare with (0 compares with all the loaded years).
+	 * @param k The maximum number of patents in the answer (0 returns all of them).
+	 * @param threshold The minimum similarity of the patents in the answer.
+	 * @return The similar patents, from the most to the least similar, or null if the patent is not loaded.
+	 */
+	public ArrayList<Match> queryPatent(String patentNumber, int year, int k, double threshold){
+		int[] location = patentLocations.get(patentNumber);
+		if(location==null)
+			return null;
+		PatentIndex index = years.get(location[0]).index;
+		int[] offsets = index.getPatentOffsets();
+		int[] terms = Arrays.copyOfRange(index.getPatentTerms(), offsets[location[1]], offsets[location[1]+1]);
+		return this.query(terms, year, location, k, threshold);
+	}
+
+	/**
+	 * Finds the patents similar to a new text.
+	 *
+	 * @param text The text (title and abstract).
+	 * @param year The year of the patents to compare with (0 compares with all the loaded years).
+	 * @param k The maximum number of patents in the answer (0 returns all of them).
+	 * @param threshold The minimum similarity of the patents in the answer.
+	 * @return The similar patents, from the most to the least similar.
+	 */
+	public ArrayList<Match> queryText(String text, int year, int k, double threshold){
+		int[][] yearTerms = new int[years.size()][];
+		if(yearStopWords==null)
+			Arrays.fill(yearTerms, this.getTerms(text, 0));
+		else{ //The keywords depend on the learned stopwords of each year
+			for(int y=0;y<years.size();y++){
+				if(year==0 || years.get(y).year==year)
+					yearTerms[y] = this.getTerms(text, years.get(y).year);
+			}
+		}
+		return this.query(yearTerms, year, null, k, threshold);
+	}
+
+	/**
+	 * Splits the query string of a request into parameters.
+	 */
+	private LinkedHashMap<String, String> getParameters(HttpExchange exchange) throws IOException{
+		LinkedHashMap<String, String> parameters = new LinkedHashMap<String, String>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if(query==null)
+			return parameters;
+		for(String parameter:query.split("&")){
+			int pos = parameter.indexOf('=');
+			if(pos>0)
+				parameters.put(URLDecoder.decode(parameter.substring(0, pos), "UTF-8"), URLDecoder.decode(parameter.substring(pos+1), "UTF-8"));
+		}
+		return parameters;
+	}
+
+	/**
+	 * Sends the answer of a request as plain text.
+	 */
+	private void send(HttpExchange exchange, int status, String answer) throws IOException{
+		byte[] bytes = answer.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+
+	/**
+	 * Answers the similarity queries.
+	 */
+	private void handleSimilar(HttpExchange exchange) throws IOException{
+		long start = System.nanoTime();
+		boolean text = "POST".equals(exchange.getRequestMethod());
+		try{
+			LinkedHashMap<String, String> parameters = this.getParameters(exchange);
+			int year = 0;
+			int k = 0;
+			double threshold = 0;
+			try{
+				if(parameters.get("year")!=null)
+					year = Integer.parseInt(parameters.get("year"));
+				if(parameters.get("k")!=null)
+					k = Integer.parseInt(parameters.get("k"));
+				if(parameters.get("threshold")!=null)
+					threshold = Double.parseDouble(parameters.get("threshold"));
+			}
+			catch(NumberFormatException e){
+				this.send(exchange, 400, "Invalid parameter: "+e.getMessage()+"\n");
+				return;
+			}
+			ArrayList<Match> matches = null;
+			if(text){
+				InputStream is = exchange.getRequestBody();
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				byte[] buffer = new byte[1<<13];
+				int n = 0;
+				while((n=is.read(buffer))>0)
+					body.write(buffer, 0, n);
+				is.close();
+				matches = this.queryText(body.toString("UTF-8"), year, k, threshold);
+			}
+			else if("GET".equals(exchange.getRequestMethod())){
+				String patentNumber = parameters.get("patent");
+				if(patentNumber==null){
+					this.send(exchange, 400, "Missing parameter: patent\n");
+					return;
+				}
+				matches = this.queryPatent(patentNumber, year, k, threshold);
+				if(matches==null){
+					this.send(exchange, 404, "Patent not loaded: "+patentNumber+"\n");
+					return;
+				}
+			}
+			else{
+				this.send(exchange, 405, "Use GET with a patent or POST with a text\n");
+				return;
+			}
+			StringBuilder answer = new StringBuilder(matches.size()*32);
+			for(Match match:matches)
+				answer.append(match.patentNumber).append(' ').append(match.year).append(' ').append(TextSimilarityWriter.getSimilarity(match.roundSim)).append('\n');
+			this.send(exchange, 200, answer.toString());
+		}
+		finally{
+			exchange.close();
+			(text ? textLatency : patentLatency).add(System.nanoTime()-start);
+		}
+	}
+
+	/**
+	 * Starts the service on the local machine.
+	 *
+	 * @param port The port.
+	 * @param numThreads The number of queries answered at the same time.
+	 */
+	public void start(int port, int numThreads) throws IOException{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/similar", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException{
+				handleSimilar(exchange);
+			}
+		});
+		server.createContext("/metrics", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException{
+				send(exchange, 200, "years = "+years.size()+", patents = "+totalPatents+"\n"
+						+"patent queries: "+patentLatency+"\n"
+						+"text queries: "+textLatency+"\n");
+			}
+		});
+		pool = Executors.newFixedThreadPool(numThreads);
+		server.setExecutor(pool);
+		server.start();
+	}
+
+	/**
+	 * Stops the service.
+	 */
+	public void stop(){
+		server.stop(0);
+		pool.shutdown();
+	}
+
+	public LatencyStats getPatentLatency() {
+		return patentLatency;
+	}
+
+	public LatencyStats getTextLatency() {
+		return textLatency;
+	}
+
+	public static void main(String[] args) throws IOException{
+		Stage01PreprocessData ppd = new Stage01PreprocessData();
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+
+		int initYear = 1940; //Initial year to load
+		int endYear = 1945; //Final year to load
+		int port = 8080; //Port of the service (only on the local machine)
+		int numThreads = 4; //Number of queries answered at the same time
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fVocabulary = new File(fMainDir, "vocabulary_raw.txt"); //Vocabulary
+		File fPatentsIdxs = new File(fMainDir,"patents_idxs.txt"); //Codified patent numbers
+		File fLearned = new File(fMainDir, "stopwords_learned.txt"); //Stopwords learned by Stage01PreprocessData (if it has a ceiling of documents)
+
+		System.out.println("Reading the vocabulary...");
+		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
+		ppd.readVocabulary(fVocabulary, vocabulary);
+		System.out.println("Reading the codified patent numbers...");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		cs.readIndexes(fPatentsIdxs, lhmPatentsIdx);
+
+		SimilarityService service = new SimilarityService(vocabulary);
+		service.setLearnedStopWords(fLearned);
+		for(int year=initYear;year<=endYear;year++){
+			File fYearData = CompressedFiles.getFile(fMainDir, "years/patents_indexed_"+year+".txt");
+			if(!CompressedFiles.find(fYearData).exists())
+				continue;
+			System.out.println("Reading data for year = "+year);
+			PatentIndex index = cs.readPatentIndex(fYearData);
+			service.addYear(year, index, cs.getPatentNumbers(index, lhmPatentsIdx));
+		}
+		lhmPatentsIdx = null;
+		service.start(port, numThreads);
+		System.out.println("Listening on http://localhost:"+port+"/similar");
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Splits the calculation of the similarities of each year in shards, computed by independent
+ * processes (in one or several machines sharing the working directory) that load the same year
+ * data, and merges their outputs.
+ * Shard i of n computes a consecutive range of focus patents. The ranges have similar cost,
+ * estimated from the year index as in ParallelSimilarity, so every process finds the same ranges
+ * without any coordination. Each shard writes its own file (jaccard_1976.shard1of4.txt), and a
+ * file with the extension .done when it is finished. Since the pairs of each focus patent do not
+ * depend on the shard, the merge concatenates the shards in order and the result is the same
+ * file as the one of a single process.
+  */
+package code;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class SimilarityShards {
+
+	private int shard;
+	private int numShards;
+
+	/**
+	 * Constructor
+	 *
+	 * @param shard The shard computed by this process, from 1 to numShards.
+	 * @param numShards The number of shards.
+	 */
+	public SimilarityShards(int shard, int numShards){
+		if(numShards<1 || shard<1 || shard>numShards)
+			throw new IllegalArgumentException("Invalid shard "+shard+" of "+numShards);
+		this.shard = shard;
+		this.numShards = numShards;
+	}
+
+	/**
+	 * Splits the focus patents in consecutive ranges of similar cost, one per shard.
+	 *
+	 * @param costs The cost of each patent.
+	 * @param numShards The number of shards.
+	 * @return The limits of the ranges, starting with 0 and ending with the number of patents.
+	 */
+	public static int[] splitShards(long[] costs, int numShards){
+		long totalCost = 0;
+		for(long cost:costs)
+			totalCost += cost;
+		int[] limits = new int[numShards+1];
+		long cost = 0;
+		int p = 0;
+		for(int s=1;s<numShards;s++){
+			long targetCost = (long)((double)totalCost*s/numShards);
+			while(p<costs.length && cost+costs[p]<=targetCost)
+				cost += costs[p++];
+			limits[s] = p;
+		}
+		limits[numShards] = costs.length;
+		return limits;
+	}
+
+	/**
+	 * Returns the range of focus patents of this shard in a year.
+	 *
+	 * @param index The patent index of the year.
+	 * @param ps The parallel computation that estimates the costs.
+	 * @return The first focus patent and the end of the range (exclusive).
+	 */
+	public int[] getRange(PatentIndex index, ParallelSimilarity ps){
+		int[] limits = splitShards(ps.estimateCosts(index), numShards);
+		return new int[]{limits[shard-1], limits[shard]};
+	}
+
+	/**
+	 * Returns the file of a shard of an output.
+	 *
+	 * @param fOutput The output file (for example jaccard_1976.txt).
+	 * @param shard The shard.
+	 * @param numShards The number of shards.
+	 */
+	public static File getShardFile(File fOutput, int shard, int numShards){
+		String name = fOutput.getName();
+		int dot = name.lastIndexOf('.');
+		if(dot<0)
+			dot = name.length();
+		return new File(fOutput.getParentFile(), name.substring(0, dot)+".shard"+shard+"of"+numShards+name.substring(dot));
+	}
+
+	/**
+	 * Returns the file of this shard of an output.
+	 *
+	 * @param fOutput The output file.
+	 */
+	public File getShardFile(File fOutput){
+		return getShardFile(fOutput, shard, numShards);
+	}
+
+	private static File getDoneFile(File fShard){
+		return new File(fShard.getPath()+".done");
+	}
+
+	/**
+	 * Marks the file of a shard as finished.
+	 *
+	 * @param fShard The file of the shard.
+	 */
+	public void markDone(File fShard) throws IOException{
+		File fDone = getDoneFile(fShard);
+		if(!fDone.exists() && !fDone.createNewFile())
+			throw new IOException("Cannot create "+fDone);
+	}
+
+	/**
+	 * Merges the files of all the shards of an output into the output, in shard order, and
+	 * deletes them. All the shards must be finished.
+	 *
+	 * @param fOutput The output file.
+	 * @param numShards The number of shards.
+	 */
+	public static void merge(File fOutput, int numShards) throws IOException{
+		for(int s=1;s<=numShards;s++){
+			File fShard = getShardFile(fOutput, s, numShards);
+			if(!fShard.exists() || !getDoneFile(fShard).exists())
+				throw new IOException("The shard "+fShard+" is not finished");
+		}
+		byte[] buffer = new byte[1<<16];
+		File fTmp = new File(fOutput.getPath()+".tmp");
+		OutputStream osOutput = new FileOutputStream(fTmp);
+		try{
+			for(int s=1;s<=numShards;s++){
+				InputStream isShard = new FileInputStream(getShardFile(fOutput, s, numShards));
+				int n;
+				while((n=isShard.read(buffer))>0)
+					osOutput.write(buffer, 0, n);
+				isShard.close();
+			}
+		}
+		finally{
+			osOutput.close();
+		}
+		if(fOutput.exists() && !fOutput.delete())
+			throw new IOException("Cannot replace "+fOutput);
+		if(!fTmp.renameTo(fOutput))
+			throw new IOException("Cannot rename "+fTmp+" to "+fOutput);
+		for(int s=1;s<=numShards;s++){
+			File fShard = getShardFile(fOutput, s, numShards);
+			fShard.delete();
+			getDoneFile(fShard).delete();
+		}
+	}
+
+	public int getShard() {
+		return shard;
+	}
+
+	public int getNumShards() {
+		return numShards;
+	}
+
+	public static void main(String[] args) throws IOException{
+		int initYear = 1940; //Initial year to merge
+		int endYear = 1945; //Final year to merge
+		int numShards = 4; //Number of shards used to compute the similarities
+		String[] names = {"jaccard"}; //Outputs to merge (for example similarity, or dice and cosine with one file per measure)
+
+		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fJaccard = new File(fMainDir+"/jaccard/");
+
+		for(int year=initYear;year<=endYear;year++){
+			for(String name:names){
+				File fOutput = CompressedFiles.getFile(fJaccard, name+"_"+year+".txt");
+				System.out.println("Merging the shards of "+fOutput);
+				merge(fOutput, numShards);
+			}
+		}
+	}
+}
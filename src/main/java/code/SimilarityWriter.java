@@ -0,0 +1,31 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Receives the intersections computed for each focus patent (patent A) and stores the
+ * similarities.
+  */
+package code;
+
+import java.io.IOException;
+
+public interface SimilarityWriter {
+
+	/**
+	 * Stores the similarities between a focus patent and the patents that share at least one
+	 * keyword with it.
+	 *
+	 * @param patentA The ordinal of the focus patent.
+	 * @param patentsB The ordinals of the other patents.
+	 * @param intersections The number of keywords shared with each of the other patents.
+	 * @param count The number of valid positions in patentsB and intersections.
+	 */
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException;
+
+	/**
+	 * Finishes the output.
+	 */
+	public void close() throws IOException;
+}
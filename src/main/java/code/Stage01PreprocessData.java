@@ -10,14 +10,16 @@ package code;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.Vector;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -26,12 +28,173 @@ import code.EnglishStopWords;
 
 public class Stage01PreprocessData {
 
+	private static final int MIN_YEAR_DOCUMENTS = 100; //Years with fewer documents have no ceiling of their own
+	private static final Pattern NUMBER_PATTERN = Pattern.compile("[[0-9]+[-][0-9]+]+"); //Words formed only by numbers
+	private static Pattern $token_pattern = null;
+
+	private int maxDf = 0;
+	private double maxDfRatio = 0.0;
+	private boolean maxDfPerYear = false;
+	private File fLearnedStopWords = null;
+	private File fPruningReport = null;
+	private boolean termCounts = false;
+	private Charset charset = Charset.forName("UTF-8");
+	private String numberColumn = "0";
+	private String yearColumn = "1";
+	private String[] textColumns = {"2", "3"};
+	private int numThreads = 1;
+
+	/**
+	 * Receiver of the bag-of-words of each record of the raw CSV file.
+	 */
+	public interface BagofWordsHandler {
+		/**
+		 * Receives the bag-of-words of a record. It is called by the threads that read the file.
+		 * 
+		 * @param chunk The chunk of the record, where the outputs are stored.
+		 * @param nDoc The number of the record (from 0, without the header).
+		 * @param patentNum The patent number.
+		 * @param year The year of the patent.
+		 * @param words The words in alphabetical order (only the first nWords).
+		 * @param counts The number of times each word occurs.
+		 * @param nWords The number of words (0 if the bag-of-words is empty).
+		 */
+		void add(ParallelLines.Chunk chunk, long nDoc, String patentNum, String year, String[] words, int[] counts, int nWords) throws IOException;
+	}
 	
 	/**
 	 * Constructor
 	 */
 	public Stage01PreprocessData(){}
 
+	/**
+	 * Sets a ceiling of the number of documents where a word can occur. The words above the
+	 * ceiling are learned as stopwords when extracting the vocabulary.
+	 * With a ceiling per year, the ratio is taken from the documents of each year (with at least
+	 * 100 documents) and a word is only removed from the years where it is above the ceiling.
+	 * 
+	 * @param maxDf The maximum number of documents where a word can occur (0 for no limit).
+	 * @param maxDfRatio The maximum ratio of documents where a word can occur (0 for no limit).
+	 * @param perYear True to apply the ceiling to the documents of each year.
+	 */
+	public void setMaxDf(int maxDf, double maxDfRatio, boolean perYear) {
+		this.maxDf = maxDf;
+		this.maxDfRatio = maxDfRatio;
+		this.maxDfPerYear = perYear;
+	}
+
+	/**
+	 * Sets the file of learned stopwords. If the file exists, its stopwords are removed when
+	 * creating and cleaning the bag-of-words; with a ceiling of documents, the new stopwords are
+	 * added to the file when extracting the vocabulary, together with a report of the pairs of
+	 * patents that share each one.
+	 * 
+	 * @param fStopWords The file of learned stopwords.
+	 * @param fReport The report of the learned stopwords (null for no report).
+	 */
+	public void setLearnedStopWords(File fStopWords, File fReport) {
+		this.fLearnedStopWords = fStopWords;
+		this.fPruningReport = fReport;
+	}
+
+	/**
+	 * Sets if the bag-of-words keeps the number of times each word occurs in a patent, written as
+	 * word:count (the default writes only the words).
+	 */
+	public void setTermCounts(boolean termCounts) {
+		this.termCounts = termCounts;
+	}
+
+	/**
+	 * Sets the number of threads that transform the lines of the files (1 by default). The output
+	 * is the same for any number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public boolean isTermCounts() {
+		return termCounts;
+	}
+
+	/**
+	 * Sets the charset of the raw CSV file (UTF-8 by default).
+	 */
+	public void setCharset(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Sets the columns of the raw CSV file, each one given by its name in the header or by its
+	 * index (from 0). By default the columns are the first four: patent number, year, title and
+	 * abstract.
+	 * 
+	 * @param numberColumn The column of the patent number.
+	 * @param yearColumn The column of the year.
+	 * @param textColumns The columns of the text (such as the title and the abstract).
+	 */
+	public void setColumns(String numberColumn, String yearColumn, String... textColumns) {
+		this.numberColumn = numberColumn;
+		this.yearColumn = yearColumn;
+		this.textColumns = textColumns;
+	}
+
+	/**
+	 * Returns the word of a token of a bag-of-words file, without its count if it has one.
+	 * 
+	 * @param token The token, as word or word:count.
+	 * @return The word.
+	 */
+	public static String getWord(String token){
+		int colon = token.indexOf(':');
+		return colon<0 ? token : token.substring(0, colon);
+	}
+
+	/**
+	 * Loads the learned stopwords added to a stopword list, or returns null if there are none.
+	 * 
+	 * @param sw The stopword list.
+	 */
+	private LearnedStopWords readLearnedStopWords(StopWords sw) throws IOException{
+		if(fLearnedStopWords==null || !fLearnedStopWords.exists())
+			return null;
+		return new LearnedStopWords(fLearnedStopWords, sw);
+	}
+
+	/**
+	 * Returns the stopword list used to create the bag-of-words: the English stopwords and the
+	 * learned stopwords, if there are any.
+	 */
+	public StopWords getStopWords() throws IOException{
+		StopWords sw = new EnglishStopWords();
+		LearnedStopWords learned = this.readLearnedStopWords(sw);
+		return learned!=null ? learned : sw;
+	}
+
+	/**
+	 * Loads the learned stopwords of each year, or returns null if there are none. The other
+	 * learned stopwords are not needed to clean the patents, since they are not in the vocabulary.
+	 */
+	public LearnedStopWords readYearStopWords() throws IOException{
+		StopWords none = new StopWords();
+		none.setStopWords();
+		LearnedStopWords learned = this.readLearnedStopWords(none);
+		if(learned!=null && !learned.hasYearStopWords())
+			return null;
+		return learned;
+	}
+
+	/**
+	 * Checks if there is a ceiling of the number of documents where a word can occur.
+	 */
+	public boolean hasMaxDf(){
+		return maxDf>0 || maxDfRatio>0;
+	}
+
 	/**
 	 * Gets a token pattern to extract words from a text using a defined regular expression.
 	 * The default regular expression matches alphanumeric sequences of characters and - and
@@ -40,7 +203,6 @@ public class Stage01PreprocessData {
 	 * @return A token pattern.
 	 */
 	private Pattern getTokenPattern() {
-		Pattern $token_pattern = null;
 		if ($token_pattern == null) {
 			try {
 				$token_pattern = Pattern.compile("\\w[[\\-]\\w&&[^_]]+\\w"); //Regular expression
@@ -67,81 +229,182 @@ public class Stage01PreprocessData {
 		return tokens;
 	}
 
+	/**
+	 * Transforms a text into a bag-of-words, with the words in alphabetical order and the number
+	 * of times each one occurs.
+	 * Transforms the text to lower case and removes stopwords, words formed only by numbers and
+	 * words of only one character.
+	 * 
+	 * @param text The text.
+	 * @param sw The stopword list.
+	 * @return The words of the text and their counts.
+	 */
+	public TreeMap<String, Integer> getBagofWords(String text, StopWords sw){
+		ArrayList<String> tokens = this.tokenize(text.toLowerCase()); //Split the patent content in tokens (words)
+		TreeMap<String, Integer> vector = new TreeMap<String, Integer>();
+		for(String token:tokens){
+			if(!sw.isStopWord(token) && token.length()>1 && !NUMBER_PATTERN.matcher(token).matches()){ //Remove stopwords, words formed only by numbers and words of only one character
+				Integer count = vector.get(token);
+				vector.put(token, count==null ? 1 : count+1);
+			}
+		}
+		return vector;
+	}
+
+	/**
+	 * Reads the bag-of-words of each record of a file containing patent raw content, in chunks
+	 * transformed by the threads that are set, and passes them to a handler.
+	 * The file should have a patent per record in a CSV format, with a header. The bag-of-words
+	 * is taken from the title and the abstract sections (or the text columns that are set), as in
+	 * createBagofWords, without the learned stopwords of the year of the patent. The records with
+	 * fewer columns than needed are skipped.
+	 * The lines of the chunks passed to the writer are the records of the file, including the header.
+	 * 
+	 * @param fInput The file containing the patents raw content.
+	 * @param done The number of records to skip (done before a checkpoint).
+	 * @param sw The stopword list (with the learned stopwords, see getStopWords).
+	 * @param handler The handler of the bag-of-words, called by the threads.
+	 * @param writer The writer of the outputs of the chunks, called in the order of the file.
+	 * @return The number of records, without the header.
+	 */
+	public long readBagofWords(File fInput, long done, final StopWords sw, final BagofWordsHandler handler, ParallelLines.ChunkWriter writer) throws IOException{
+		final LearnedStopWords learned = sw instanceof LearnedStopWords ? (LearnedStopWords)sw : null;
+		final boolean yearStopWords = learned!=null && learned.hasYearStopWords();
+		final ThreadLocal<Tokenizer> tokenizers = new ThreadLocal<Tokenizer>(){ //One tokenizer (and dictionary) per thread
+			protected Tokenizer initialValue(){
+				return new Tokenizer(sw);
+			}
+		};
+		CsvReader csvContent = new CsvReader(fInput, charset);
+		csvContent.readHeader(); //Remove header in case the file contains one
+		final int numberIdx = csvContent.getColumn(numberColumn);
+		final int yearIdx = csvContent.getColumn(yearColumn);
+		final int[] textIdxs = new int[textColumns.length];
+		int maxColumn = Math.max(numberIdx, yearIdx)+1;
+		for(int c=0;c<textColumns.length;c++){
+			textIdxs[c] = csvContent.getColumn(textColumns[c]);
+			maxColumn = Math.max(maxColumn, textIdxs[c]+1);
+		}
+		final int numColumns = maxColumn;
+		final long nHeader = csvContent.getNumRecords();
+		csvContent.close();
+		ParallelLines pl = new ParallelLines(numThreads, true);
+		pl.setCharset(charset);
+		long nRecords = pl.process(fInput, nHeader+done, new ParallelLines.ChunkTransform(){ //Skip the header and the records done
+			public void transform(ParallelLines.Chunk chunk) throws IOException{
+				Tokenizer tokenizer = tokenizers.get();
+				String[] words = new String[256];
+				int[] counts = new int[256];
+				long nDoc = chunk.getFirstLine()-nHeader;
+				CsvReader csvChunk = new CsvReader(chunk.getReader());
+				while(csvChunk.next()){
+					if(csvChunk.getNumFields()<numColumns){
+						System.out.println("\tSkipping record "+(nDoc+1)+" with "+csvChunk.getNumFields()+" columns");
+						nDoc++;
+						continue;
+					}
+					String patentNum = csvChunk.getString(numberIdx);
+					String year = csvChunk.getString(yearIdx);
+					tokenizer.begin();
+					for(int textIdx:textIdxs)
+						tokenizer.add(csvChunk.getField(textIdx));
+					int nTerms = tokenizer.end();
+					if(words.length<nTerms){
+						words = new String[nTerms*2];
+						counts = new int[nTerms*2];
+					}
+					int nWords = 0;
+					for(int i=0;i<nTerms;i++){
+						String token = tokenizer.getTerm(i);
+						if(yearStopWords && learned.isStopWord(token, year)) //Remove the stopwords of the year of the patent
+							continue;
+						words[nWords] = token;
+						counts[nWords] = tokenizer.getCount(i);
+						nWords++;
+					}
+					handler.add(chunk, nDoc, patentNum, year, words, counts, nWords);
+					nDoc++;
+				}
+				csvChunk.close();
+			}
+		}, writer);
+		return Math.max(0, nRecords-nHeader);
+	}
+
 	/**
 	 * Reads a file containing patent raw content and transform it into a bag-of-words file.
-	 * The file with the raw content should have a patent per line in a CSV format.
-	 * Takes the title and the abstract sections.
+	 * The file with the raw content should have a patent per record in a CSV format, with a header.
+	 * Takes the title and the abstract sections (or the text columns that are set), separated by
+	 * a space.
 	 * Transform the patent content to lower case.
 	 * By default this process removes English stopwords, words formed only by numbers
 	 * and words of only one character.
-	 * [Hint: Check the format of the raw CSV file to match the number and order of columns].
+	 * The words are extracted with a Tokenizer, with the same result as getBagofWords.
+	 * Each word is followed by its count (word:count) if the term counts are kept.
+	 * [Hint: Check the format of the raw CSV file to match the columns and the charset].
+	 * The records with fewer columns than needed are skipped.
+	 * The records are transformed in chunks by the threads that are set, and written in order.
+	 * Stores periodic checkpoints, and resumes from the last one if the process was interrupted.
 	 * 
 	 * @param fInput The file containing the patents raw content.
 	 * @param fOutput The file containing the patents content as a bag-of-words.
 	 */
 	public void createBagofWords(File fInput, File fOutput) throws IOException{
-		EnglishStopWords sw = new EnglishStopWords(); //Stopword list
-		String line = "";
-		String[] lineSplit = null;
-		String text = "";
-		String year = "";
-		int nDocs = 0;
-		String patentNum = "";
-		BufferedReader brContent = new BufferedReader(new FileReader(fInput));
-		line = brContent.readLine(); //Remove header in case the file contains one
-		PrintWriter pwOutput = new PrintWriter(fOutput);
-		while((line=brContent.readLine())!=null){
-			lineSplit = line.split("\"");
-			if(lineSplit.length==1){
-				lineSplit = lineSplit[0].split(",");
-				patentNum = lineSplit[0];
-				year = lineSplit[1];
-				text = lineSplit[2]+" "+lineSplit[3];
-			}
-			else if(lineSplit.length==2){
-				text = lineSplit[1];
-				lineSplit = lineSplit[0].split(",");
-				patentNum = lineSplit[0];
-				year = lineSplit[1];
-				text = lineSplit[2]+" "+text;
-			}
-			else if (lineSplit.length==3){
-				text = lineSplit[1]+" "+lineSplit[2];
-				lineSplit = lineSplit[0].split(",");
-				patentNum = lineSplit[0];
-				year = lineSplit[1];
-			}
-			else{ 
-				text = lineSplit[1] + lineSplit[3];
-				lineSplit = lineSplit[0].split(",");
-				patentNum = lineSplit[0];
-				year = lineSplit[1];
-			}
-			text = text.toLowerCase();
-			ArrayList<String> tokens = this.tokenize(text); //Split the patent content in tokens (words)
-			TreeMap<String, Integer> vector = new TreeMap<String, Integer>();
-			for(String token:tokens){
-				if(!sw.isStopWord(token) && token.length()>1 && !token.matches("[[0-9]+[-][0-9]+]+")){ //Remove stopwords, words formed only by numbers and words of only one character
-					vector.put(token, 1);
+		final Metrics.Phase phase = Metrics.get().start("stage01.createBagofWords", "documents", "Stage");
+		final Checkpoint checkpoint = Checkpoint.forOutput(fOutput);
+		long nDocs = 0;
+		try{
+			long done = checkpoint.resume();
+			final PrintWriter pwOutput = checkpoint.getWriter(fOutput);
+			nDocs = this.readBagofWords(fInput, done, this.getStopWords(), new BagofWordsHandler(){ //Skip the documents done before the checkpoint
+				public void add(ParallelLines.Chunk chunk, long nDoc, String patentNum, String year, String[] words, int[] counts, int nWords){
+					if(nWords>0){
+						appendBagofWords(chunk.getOutput(0), patentNum, year, words, counts, nWords);
+					}
+					else{
+						System.out.println(nDoc);
+					}
 				}
-			}
-			if(!vector.isEmpty()){
-				pwOutput.print(patentNum+" "+year);
-				for(String token:vector.keySet()){
-					pwOutput.print(" "+token);
+			}, new ParallelLines.ChunkWriter(){
+				public void write(ParallelLines.Chunk chunk) throws IOException{
+					if(chunk.hasOutput(0))
+						pwOutput.append(chunk.getOutput(0));
+					long nDocs = chunk.getEndLine()-1; //Without the header
+					checkpoint.update(nDocs);
+					if(nDocs/100000>(chunk.getFirstLine()-1)/100000){ //Outputs the progress of this process
+						phase.progress(nDocs);
+					}
 				}
-				pwOutput.println();
-			}
-			else{
-				System.out.println(nDocs);
-			}
-			nDocs++;
-			if((nDocs%100000)==0){ //Outputs the progress of this process
-				System.out.println("\tProcessed = "+nDocs+" documents");
-			}
+			});
+			checkpoint.finish();
+		}
+		catch(Throwable e){ //Closes the outputs, keeping the last checkpoint
+			checkpoint.abort();
+			throw e;
 		}
-		brContent.close();
-		pwOutput.close();
+		phase.set("bytesRead", fInput.length());
+		phase.set("bytesWritten", fOutput.length());
+		phase.end(nDocs);
+	}
+
+	/**
+	 * Appends the line of a patent in a bag-of-words file (patent number, year and words).
+	 * 
+	 * @param sbOutput The output.
+	 * @param patentNum The patent number.
+	 * @param year The year of the patent.
+	 * @param words The words of the patent.
+	 * @param counts The number of times each word occurs.
+	 * @param nWords The number of words.
+	 */
+	public void appendBagofWords(StringBuilder sbOutput, String patentNum, String year, String[] words, int[] counts, int nWords){
+		sbOutput.append(patentNum).append(' ').append(year);
+		for(int i=0;i<nWords;i++){
+			sbOutput.append(' ').append(words[i]);
+			if(termCounts)
+				sbOutput.append(':').append(counts[i]);
+		}
+		sbOutput.append(ParallelLines.LINE_SEPARATOR);
 	}
 
 	/**
@@ -152,58 +415,275 @@ public class Stage01PreprocessData {
 	 * @param threshold The threshold of minimum number of documents where a word should occur.
 	 */
 	public void pruneVocabulary(LinkedHashMap<String, Integer> vocabulary, int threshold){
-		List<String> words = new Vector<String>(vocabulary.keySet());
-		for(String word:words){
-			int totalFrequency = vocabulary.get(word);
+		Iterator<Integer> itFrequencies = vocabulary.values().iterator();
+		while(itFrequencies.hasNext()){
+			int totalFrequency = itFrequencies.next();
 			if(totalFrequency<threshold)
+				itFrequencies.remove();
+		}
+	}
+
+	/**
+	 * Returns the ceiling of documents where a word can occur for a number of documents.
+	 */
+	private int getMaxDf(int nDocs){
+		int ceiling = Integer.MAX_VALUE;
+		if(maxDf>0)
+			ceiling = maxDf;
+		if(maxDfRatio>0)
+			ceiling = Math.min(ceiling, (int)(maxDfRatio*nDocs));
+		return ceiling;
+	}
+
+	/**
+	 * Learns as stopwords the words of a vocabulary above the ceiling of documents where a word can
+	 * occur, in all the documents or in the documents of each year. The words above the ceiling of
+	 * all the documents are also removed from the vocabulary.
+	 * Adds the new stopwords to the file of learned stopwords and stores a report with the number
+	 * of documents of each one and the pairs of patents of the same year that share it (n*(n-1)/2
+	 * for n documents in a year), sorted by the pairs. This is an upper bound of the pair candidates
+	 * that the stopword removes, since most of these pairs share other words; the bounds of several
+	 * stopwords overlap, so they are not added.
+	 *
+	 * @param fInput The patent file in bag-of-words format.
+	 * @param vocabulary The vocabulary with the number of documents of each word.
+	 * @param yearDocs The number of documents of each year.
+	 * @param nDocs The number of documents.
+	 * @return The number of new stopwords.
+	 */
+	public int pruneVocabularyMaxDf(File fInput, LinkedHashMap<String, Integer> vocabulary, LinkedHashMap<String, Integer> yearDocs, int nDocs) throws IOException{
+		return this.pruneVocabularyMaxDf(fInput, false, vocabulary, yearDocs, nDocs);
+	}
+
+	/**
+	 * Learns as stopwords the words of a vocabulary above the ceiling of documents where a word can
+	 * occur, as pruneVocabularyMaxDf, counting the documents of each year from a bag-of-words file
+	 * or from the raw CSV file.
+	 *
+	 * @param fInput The patent file in bag-of-words format, or the raw CSV file.
+	 * @param raw True if the file is the raw CSV file.
+	 * @param vocabulary The vocabulary with the number of documents of each word.
+	 * @param yearDocs The number of documents of each year.
+	 * @param nDocs The number of documents.
+	 * @return The number of new stopwords.
+	 */
+	public int pruneVocabularyMaxDf(File fInput, boolean raw, LinkedHashMap<String, Integer> vocabulary, final LinkedHashMap<String, Integer> yearDocs, int nDocs) throws IOException{
+		String line = "";
+		String[] lineSplit = null;
+		final LinkedHashMap<String, Integer> years = new LinkedHashMap<String, Integer>(); //Index of each year
+		int[] ceilings = new int[yearDocs.size()];
+		int minCeiling = this.getMaxDf(nDocs);
+		for(String year:yearDocs.keySet()){
+			int nYear = yearDocs.get(year);
+			ceilings[years.size()] = nYear>=MIN_YEAR_DOCUMENTS ? this.getMaxDf(nYear) : Integer.MAX_VALUE;
+			if(maxDfPerYear)
+				minCeiling = Math.min(minCeiling, ceilings[years.size()]);
+			years.put(year, years.size());
+		}
+		final LinkedHashMap<String, int[]> candidates = new LinkedHashMap<String, int[]>(); //Number of documents of each year
+		for(String word:vocabulary.keySet())
+			if(vocabulary.get(word)>minCeiling)
+				candidates.put(word, new int[years.size()]);
+		if(candidates.isEmpty())
+			return 0;
+		if(raw){ //Each thread counts the candidates of its chunk
+			this.readBagofWords(fInput, 0, this.getStopWords(), new BagofWordsHandler(){
+				public void add(ParallelLines.Chunk chunk, long nDoc, String patentNum, String year, String[] words, int[] counts, int nWords){
+					if(nWords==0)
+						return;
+					if(chunk.getResult()==null)
+						chunk.setResult(new LinkedHashMap<String, int[]>());
+					@SuppressWarnings("unchecked")
+					LinkedHashMap<String, int[]> chunkCandidates = (LinkedHashMap<String, int[]>)chunk.getResult();
+					int y = years.get(year);
+					for(int i=0;i<nWords;i++){
+						if(candidates.get(words[i])==null)
+							continue;
+						int[] df = chunkCandidates.get(words[i]);
+						if(df==null){
+							df = new int[years.size()];
+							chunkCandidates.put(words[i], df);
+						}
+						df[y]++;
+					}
+				}
+			}, new ParallelLines.ChunkWriter(){
+				public void write(ParallelLines.Chunk chunk){
+					@SuppressWarnings("unchecked")
+					LinkedHashMap<String, int[]> chunkCandidates = (LinkedHashMap<String, int[]>)chunk.getResult();
+					if(chunkCandidates==null)
+						return;
+					for(String word:chunkCandidates.keySet()){
+						int[] df = candidates.get(word);
+						int[] chunkDf = chunkCandidates.get(word);
+						for(int y=0;y<df.length;y++)
+							df[y] += chunkDf[y];
+					}
+				}
+			});
+		}
+		else{
+			BufferedReader brContent = CompressedFiles.newReader(fInput);
+			while((line=brContent.readLine())!=null){
+				lineSplit = line.split(" ");
+				int year = years.get(lineSplit[1]);
+				for(int i=2;i<lineSplit.length;i++){
+					int[] df = candidates.get(getWord(lineSplit[i]));
+					if(df!=null)
+						df[year]++;
+				}
+			}
+			brContent.close();
+		}
+		LinkedHashMap<String, Integer> learned = new LinkedHashMap<String, Integer>();
+		if(fLearnedStopWords!=null && fLearnedStopWords.exists()){ //Keeps the stopwords of previous runs
+			BufferedReader brLearned = CompressedFiles.newReader(fLearnedStopWords);
+			while((line=brLearned.readLine())!=null)
+				if(!line.isEmpty())
+					learned.put(line, 1);
+			brLearned.close();
+		}
+		ArrayList<String> entries = new ArrayList<String>(); //Lines of the report
+		final LinkedHashMap<String, Long> entryPairs = new LinkedHashMap<String, Long>();
+		long maxPairs = 0; //Largest bound of a stopword
+		for(String word:candidates.keySet()){
+			int[] df = candidates.get(word);
+			if(!maxDfPerYear){
+				long pairs = 0;
+				for(int y=0;y<df.length;y++)
+					pairs += (long)df[y]*(df[y]-1)/2;
+				String entry = word+" all "+vocabulary.get(word)+" "+pairs;
+				entries.add(entry);
+				entryPairs.put(entry, pairs);
+				maxPairs = Math.max(maxPairs, pairs);
+				learned.put(word, 1);
 				vocabulary.remove(word);
+			}
+			else{
+				for(String year:years.keySet()){
+					int y = years.get(year);
+					if(df[y]>ceilings[y]){
+						long pairs = (long)df[y]*(df[y]-1)/2;
+						String entry = word+" "+year+" "+df[y]+" "+pairs;
+						entries.add(entry);
+						entryPairs.put(entry, pairs);
+						maxPairs = Math.max(maxPairs, pairs);
+						learned.put(word+" "+year, 1);
+					}
+				}
+			}
+		}
+		if(fLearnedStopWords!=null){
+			PrintWriter pwLearned = CompressedFiles.newWriter(fLearnedStopWords);
+			for(String word:learned.keySet())
+				pwLearned.println(word);
+			pwLearned.close();
+		}
+		if(fPruningReport!=null){
+			Collections.sort(entries, new Comparator<String>() {
+				public int compare(String a, String b) {
+					return Long.compare(entryPairs.get(b), entryPairs.get(a));
+				}
+			});
+			PrintWriter pwReport = CompressedFiles.newWriter(fPruningReport);
+			pwReport.println("#word year documents shared_pairs (upper bound of the pair candidates removed, overlapping between words)");
+			for(String entry:entries)
+				pwReport.println(entry);
+			pwReport.println("#total "+entries.size()+" stopwords");
+			pwReport.close();
 		}
+		System.out.println("\tLearned stopwords = "+entries.size()+" (largest number of pairs sharing one = "+maxPairs+")");
+		return entries.size();
 	}
 
 	/**
 	 * Extracts a vocabulary from a patent file in bag-of-words format.
+	 * The documents where each word occurs are counted in chunks by the threads that are set, each
+	 * thread in its own TermCounter, and the counters are merged at the end. The words are kept in
+	 * order of first occurrence in the file.
 	 * Prunes the vocabulary using a threshold of the minimum number of documents where a word
-	 * should occur.
+	 * should occur (while taking the words from the counters), and the ceiling of documents if
+	 * there is one.
 	 * Stores the vocabulary in a file with one word per line.
 	 * 
 	 * @param fInput The patent file in bag-of-words format.
 	 * @param fVocabulary The file where to store the extracted vocabulary.
 	 * @param threshold The threshold of minimum number of documents where a word should occur.
 	 */
-	public void extractVocabulary(File fInput, File fVocabulary, int threshold) throws IOException{
-		String line = "";
-		String[] lineSplit = null;
-		int nDocs = 0;
-		BufferedReader brContent = new BufferedReader(new FileReader(fInput));
-		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
-		while((line=brContent.readLine())!=null){
-			lineSplit = line.split(" ");
-			for(int i=2;i<lineSplit.length;i++){
-				String word = lineSplit[i];
-				if(vocabulary.get(word)==null)
-					vocabulary.put(word, 0);
-				vocabulary.put(word, vocabulary.get(word)+1);
+	public void extractVocabulary(final File fInput, File fVocabulary, int threshold) throws IOException{
+		final Metrics.Phase phase = Metrics.get().start("stage01.extractVocabulary", "documents", "Stage");
+		List<TermCounter> wordCounters = new ArrayList<TermCounter>();
+		List<TermCounter> yearCounters = new ArrayList<TermCounter>();
+		final ThreadLocal<TermCounter> threadWords = TermCounter.perThread(wordCounters);
+		final ThreadLocal<TermCounter> threadYears = TermCounter.perThread(yearCounters); //Number of documents of each year
+		int nDocs = (int)new ParallelLines(numThreads, false).process(fInput, 0, new ParallelLines.ChunkTransform(){
+			public void transform(ParallelLines.Chunk chunk) throws IOException{
+				TermCounter words = threadWords.get();
+				TermCounter years = threadYears.get();
+				long nLine = chunk.getFirstLine();
+				String line;
+				while((line=chunk.readLine())!=null){
+					int end = line.length();
+					while(end>0 && line.charAt(end-1)==' ') //As split, without the empty fields at the end
+						end--;
+					int field = 0;
+					int start = 0;
+					for(int p=0;p<=end;p++){
+						if(p<end && line.charAt(p)!=' ')
+							continue;
+						if(field==1){
+							years.add(line, start, p, nLine, 0);
+						}
+						else if(field>1){
+							int wordEnd = start;
+							while(wordEnd<p && line.charAt(wordEnd)!=':') //As getWord
+								wordEnd++;
+							words.add(line, start, wordEnd, nLine, field);
+						}
+						field++;
+						start = p+1;
+					}
+					if(field<2)
+						throw new IOException("Line "+(nLine+1)+" without a year in "+fInput);
+					nLine++;
+				}
 			}
-			nDocs++; 
-			if((nDocs%100000)==0){ //Outputs the progress of this process
-				System.out.println("\tProcessed = "+nDocs+" documents");
+		}, new ParallelLines.ChunkWriter(){
+			public void write(ParallelLines.Chunk chunk){
+				if(chunk.getEndLine()/100000>chunk.getFirstLine()/100000){ //Outputs the progress of this process
+					phase.progress(chunk.getEndLine());
+				}
 			}
+		});
+		TermCounter words = TermCounter.merge(wordCounters);
+		phase.set("words", words.getNumTerms());
+		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
+		words.toMap(vocabulary, threshold);
+		words = null;
+		if(this.hasMaxDf()){
+			LinkedHashMap<String, Integer> yearDocs = new LinkedHashMap<String, Integer>();
+			TermCounter.merge(yearCounters).toMap(yearDocs, 0);
+			phase.set("learnedStopWords", this.pruneVocabularyMaxDf(fInput, vocabulary, yearDocs, nDocs));
 		}
-		brContent.close();
-		this.pruneVocabulary(vocabulary, threshold);
-		PrintWriter pwVocabulary = new PrintWriter(fVocabulary);
+		phase.set("vocabulary", vocabulary.size());
+		PrintWriter pwVocabulary = CompressedFiles.newWriter(fVocabulary);
 		for(String word:vocabulary.keySet()){
 			pwVocabulary.println(word);
 		}
 		pwVocabulary.close();
+		phase.set("bytesRead", fInput.length());
+		phase.set("bytesWritten", fVocabulary.length());
+		phase.end(nDocs);
 	}
 
 	/**
 	 * Cleans a patent file in bag-of-words format by removing words that are not in the general
-	 * vocabulary.
+	 * vocabulary, and the learned stopwords of the year of each patent.
 	 * Additionally creates two files, one containing the patent numbers and the year of each patent.
 	 * The clean patent file, the patent number file and the patent year file have a correspondence one
 	 * to one.
+	 * The lines are cleaned in chunks by the threads that are set, and written in order.
+	 * Stores periodic checkpoints, and resumes from the last one if the process was interrupted.
 	 * 
 	 * @param fInput The patent file in bag-of-words format.
 	 * @param fOutput The clean patent file.
@@ -211,47 +691,69 @@ public class Stage01PreprocessData {
 	 * @param fIdx The patent numbers file.
 	 * @param vocabulary The vocabulary that is used to clean the bag-of-words patent file.
 	 */
-	public void cleanPatents(File fInput, File fOutput, File fYear, File fIdx, LinkedHashMap<String, Integer> vocabulary) throws IOException{
-		String line = "";
-		String[] lineSplit = null;
-		String numPatent = "";
-		String year = "";
-		int nDocs = 0;
-		ArrayList<String> vector = new ArrayList<String>();
-		BufferedReader brContent = new BufferedReader(new FileReader(fInput));
-		PrintWriter pwYear = new PrintWriter(fYear);
-		PrintWriter pwIdx = new PrintWriter(fIdx);
-		PrintWriter pwOutput = new PrintWriter(fOutput);
-		while((line=brContent.readLine())!=null){
-			lineSplit = line.split(" ");
-			numPatent = lineSplit[0];
-			year = lineSplit[1];
-			vector.clear();
-			for(int i=2;i<lineSplit.length;i++){
-				String token = lineSplit[i];
-				if(vocabulary.get(token)!=null){
-					vector.add(token);
+	public void cleanPatents(File fInput, File fOutput, File fYear, File fIdx, final LinkedHashMap<String, Integer> vocabulary) throws IOException{
+		final LearnedStopWords learned = this.readYearStopWords();
+		final Metrics.Phase phase = Metrics.get().start("stage01.cleanPatents", "documents", "Stage");
+		final Checkpoint checkpoint = Checkpoint.forOutput(fOutput);
+		long nDocs = 0;
+		try{
+			long done = checkpoint.resume();
+			final PrintWriter pwYear = checkpoint.getWriter(fYear);
+			final PrintWriter pwIdx = checkpoint.getWriter(fIdx);
+			final PrintWriter pwOutput = checkpoint.getWriter(fOutput);
+			phase.set("cleanDocuments", 0);
+			nDocs = new ParallelLines(numThreads, false).process(fInput, done, new ParallelLines.ChunkTransform(){ //Skip the documents done before the checkpoint
+				public void transform(ParallelLines.Chunk chunk){
+					StringBuilder sbYear = chunk.getOutput(0);
+					StringBuilder sbIdx = chunk.getOutput(1);
+					StringBuilder sbOutput = chunk.getOutput(2);
+					ArrayList<String> vector = new ArrayList<String>();
+					String line = "";
+					while((line=chunk.readLine())!=null){
+						String[] lineSplit = line.split(" ");
+						String numPatent = lineSplit[0];
+						String year = lineSplit[1];
+						vector.clear();
+						for(int i=2;i<lineSplit.length;i++){
+							String token = lineSplit[i];
+							String word = getWord(token);
+							if(vocabulary.get(word)!=null && (learned==null || !learned.isStopWord(word, year))){
+								vector.add(token);
+							}
+						}
+						if(!vector.isEmpty()){
+							sbYear.append(year).append(ParallelLines.LINE_SEPARATOR);
+							sbIdx.append(numPatent).append(ParallelLines.LINE_SEPARATOR);
+							sbOutput.append(numPatent).append(';').append(vector.size()).append(';').append(vector.get(0));
+							for(int i=1;i<vector.size();i++){
+								sbOutput.append(' ').append(vector.get(i));
+							}
+							sbOutput.append(ParallelLines.LINE_SEPARATOR);
+							chunk.count();
+						}
+					}
 				}
-			}
-			if(!vector.isEmpty()){
-				pwYear.println(year);
-				pwIdx.println(numPatent);
-				pwOutput.print(numPatent+";"+vector.size()+";"+vector.get(0));
-				for(int i=1;i<vector.size();i++){
-					String token=vector.get(i);
-					pwOutput.print(" "+token);
+			}, new ParallelLines.ChunkWriter(){
+				public void write(ParallelLines.Chunk chunk) throws IOException{
+					pwYear.append(chunk.getOutput(0));
+					pwIdx.append(chunk.getOutput(1));
+					pwOutput.append(chunk.getOutput(2));
+					phase.add("cleanDocuments", chunk.getCount()); //Only those done after the last checkpoint if the process was resumed
+					checkpoint.update(chunk.getEndLine());
+					if(chunk.getEndLine()/100000>chunk.getFirstLine()/100000){ //Outputs the progress of this process
+						phase.progress(chunk.getEndLine());
+					}
 				}
-				pwOutput.println();
-			}
-			nDocs++;
-			if((nDocs%100000)==0){ //Outputs the progress of this process
-				System.out.println("\tProcessed = "+nDocs+" documents");
-			}
+			});
+			checkpoint.finish();
+		}
+		catch(Throwable e){ //Closes the outputs, keeping the last checkpoint
+			checkpoint.abort();
+			throw e;
 		}
-		brContent.close();
-		pwYear.close();
-		pwIdx.close();
-		pwOutput.close();
+		phase.set("bytesRead", fInput.length());
+		phase.set("bytesWritten", fOutput.length()+fYear.length()+fIdx.length());
+		phase.end(nDocs);
 	}
 	
 	/**
@@ -264,7 +766,7 @@ public class Stage01PreprocessData {
 	public void readVocabulary(File fVocabulary, LinkedHashMap<String, Integer> vocabulary) throws IOException{
 		String line = "";
 		int nLine = 0;
-		BufferedReader brVocabulary = new BufferedReader(new FileReader(fVocabulary));
+		BufferedReader brVocabulary = CompressedFiles.newReader(fVocabulary);
 		while((line=brVocabulary.readLine())!=null){
 			vocabulary.put(line, nLine);
 			nLine++;
@@ -276,13 +778,27 @@ public class Stage01PreprocessData {
 		Stage01PreprocessData ppd = new Stage01PreprocessData();
 		
 		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
-		File fData = new File(fMainDir, "patent_data_raw.csv"); //Raw patent data in CSV format
-		File fTerms = new File(fMainDir, "patents_terms_raw.txt"); //Patent data in bag-of-words format
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fData = CompressedFiles.getFile(fMainDir, "patent_data_raw.csv"); //Raw patent data in CSV format
+		File fTerms = CompressedFiles.getFile(fMainDir, "patents_terms_raw.txt"); //Patent data in bag-of-words format
 		File fYears = new File(fMainDir, "patents_years.txt"); //Patent years file
 		File fPatentsIdxs = new File(fMainDir, "patents_numbers.txt"); //Patent numbers file
-		File fClean = new File(fMainDir,"patents_terms.txt"); //Clean patent data
+		File fClean = CompressedFiles.getFile(fMainDir,"patents_terms.txt"); //Clean patent data
 		File fVocabulary = new File(fMainDir, "vocabulary_raw.txt"); //Vocabulary
+		File fLearned = new File(fMainDir, "stopwords_learned.txt"); //Stopwords learned by the ceiling of documents
+		File fReport = new File(fMainDir, "stopwords_learned_report.txt"); //Pairs of patents that share each learned stopword
+		int maxDf = 0; //Maximum number of documents where a word can occur (0 for no limit)
+		double maxDfRatio = 0.0; //Maximum ratio of documents where a word can occur, e.g. 0.3 (0 for no limit)
+		boolean maxDfPerYear = false; //Apply the ceiling to the documents of each year
+		boolean termCounts = false; //Keep the number of times each word occurs in a patent (needed for TF-IDF similarities)
+		int numThreads = Runtime.getRuntime().availableProcessors(); //Number of threads that transform the lines (the output does not change)
 		
+		ppd.setCharset(Charset.forName("UTF-8")); //Charset of the raw patent data
+		ppd.setColumns("0", "1", "2", "3"); //Columns (name or index) of the patent number, year, title and abstract
+		ppd.setTermCounts(termCounts);
+		ppd.setNumThreads(numThreads);
+		ppd.setMaxDf(maxDf, maxDfRatio, maxDfPerYear);
+		ppd.setLearnedStopWords(fLearned, fReport);
 		System.out.println("Creating bag-of-words file...");
 		ppd.createBagofWords(fData, fTerms);
 		System.out.println("Extracting vocabulary...");
@@ -291,5 +807,6 @@ public class Stage01PreprocessData {
 		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
 		ppd.readVocabulary(fVocabulary, vocabulary);
 		ppd.cleanPatents(fTerms, fClean, fYears, fPatentsIdxs, vocabulary);
+		Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "stage01"));
 	}
 }
\ No newline at end of file
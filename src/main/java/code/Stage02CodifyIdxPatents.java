@@ -11,13 +11,13 @@ package code;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 
 public class Stage02CodifyIdxPatents {
 
 	char digits[] = {'0','1','2','3','4','5','6','7','8','9','a','b','c','d','e','f','g','h','i','j','k','l','m','n','o','p','q','r','s','t','u','v','w','x','y','z','!','@','#','$','%','&','*','(',')','-','_','=','+','?'};
+	int digitValues[] = null;
 	
 	public Stage02CodifyIdxPatents(){}
 
@@ -49,6 +49,24 @@ public class Stage02CodifyIdxPatents {
 		return coded;
 	}
 	
+	/**
+	 * Returns a table with the value of each digit, indexed by the digit character.
+	 * Characters that are not digits have the value -1.
+	 * 
+	 * @return The table of digit values.
+	 */
+	public int[] getDigitValues(){
+		if(digitValues==null){
+			int[] values = new int[128];
+			for(int i=0;i<values.length;i++)
+				values[i] = -1;
+			for(int i=0;i<this.getDigits().length;i++)
+				values[this.getDigits()[i]] = i;
+			digitValues = values;
+		}
+		return digitValues;
+	}
+	
 	public static void main(String[] args) throws IOException{
 		Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
 		
@@ -57,36 +75,45 @@ public class Stage02CodifyIdxPatents {
 		File fPatentsNum = new File(fMainDir, "vocabulary_raw.txt"); //Original vocabulary
 		File fPatentsIdxs = new File(fMainDir, "vocabulary.txt"); //Codified vocabulary
 		String line = "";
-		BufferedReader brContent = new BufferedReader(new FileReader(fPatentsNum));
-		PrintWriter pwIndexed = new PrintWriter(fPatentsIdxs);
+		BufferedReader brContent = CompressedFiles.newReader(fPatentsNum);
+		PrintWriter pwIndexed = CompressedFiles.newWriter(fPatentsIdxs);
 		System.out.println("Codifying vocabulary...");
+		Metrics.Phase phase = Metrics.get().start("stage02.codifyVocabulary", "words", "Stage");
 		int n = 0;
 		while((line=brContent.readLine())!=null){
 			String code = cip.convertToCode(n);
 			pwIndexed.println(code+" "+line); //Stores the codified word  and the original one
 			n++;
 			if(n%10000==0){ //Outputs the progress of this process
-				System.out.println("\tProcessed = "+n+" words");
+				phase.progress(n);
 			}
 		}
 		brContent.close();
 		pwIndexed.close();
+		phase.set("bytesRead", fPatentsNum.length());
+		phase.set("bytesWritten", fPatentsIdxs.length());
+		phase.end(n);
 		
 		fPatentsNum = new File(fMainDir, "patents_numbers.txt"); //Original patent numbers
 		fPatentsIdxs = new File(fMainDir, "patents_idxs.txt"); //Codified patent numbers
-		brContent = new BufferedReader(new FileReader(fPatentsNum));
-		pwIndexed = new PrintWriter(fPatentsIdxs);
+		brContent = CompressedFiles.newReader(fPatentsNum);
+		pwIndexed = CompressedFiles.newWriter(fPatentsIdxs);
 		System.out.println("Codifying patent numbers...");
+		phase = Metrics.get().start("stage02.codifyPatents", "patents", "Stage");
 		n = 0;
 		while((line=brContent.readLine())!=null){
 			String code = cip.convertToCode(n);
 			pwIndexed.println(code+" "+line); //Stores the codified patent number and the original one
 			n++;
 			if(n%100000==0){ //Outputs the progress of this process
-				System.out.println("\tProcessed = "+n+" patents");
+				phase.progress(n);
 			}
 		}
 		brContent.close();
 		pwIndexed.close();
+		phase.set("bytesRead", fPatentsNum.length());
+		phase.set("bytesWritten", fPatentsIdxs.length());
+		phase.end(n);
+		Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "stage02"));
 	}
 }
@@ -12,56 +12,89 @@ package code;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 
 public class Stage03IndexPatents {
 
+	private int numThreads = 1;
+
 	/**
 	 * Constructor
 	 */
 	public Stage03IndexPatents(){}
+
+	/**
+	 * Sets the number of threads that index the lines of the file (1 by default). The output is
+	 * the same for any number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
 	
 	/**
 	 * Indexes the patent data using the codified patent numbers and words from the general
 	 * vocabulary.
+	 * The frequency of each word is its count if the clean patent data keeps the counts
+	 * (word:count), and 1 otherwise.
+	 * The lines are indexed in chunks by the threads that are set, and written in order.
+	 * Stores periodic checkpoints, and resumes from the last one if the process was interrupted.
 	 * 
 	 * @param fClean The file containing the clean patent data.
 	 * @param vocabulary The codified vocabulary for the data.
 	 * @param patentsIdxs The codified patent numbers.
 	 */
-	public void indexPatents(File fClean, File fIndexed, LinkedHashMap<String, String> vocabulary, LinkedHashMap<String, String> patentsIdxs) throws IOException{
-		String line = "";
-		String[] lineSplit = null;
-		String numPatent = "";
-		String numTerms = "";
-		int nDocs = 0;
-		BufferedReader brContent = new BufferedReader(new FileReader(fClean));
-		PrintWriter pwIndexed = new PrintWriter(fIndexed);
-		while((line=brContent.readLine())!=null){
-			lineSplit = line.split(";");
-			numPatent = lineSplit[0];
-			numTerms = lineSplit[1];
-			String idxPatent = patentsIdxs.get(numPatent);
-			pwIndexed.print(idxPatent+" "+numTerms);
-			lineSplit = lineSplit[2].split(" ");
-			for(int i=0;i<lineSplit.length;i++){
-				String token = lineSplit[i];
-				String idxToken = vocabulary.get(token);
-				pwIndexed.print(" "+idxToken+":"+1);
-			}
-			pwIndexed.println();
-			nDocs++;
-			if((nDocs%100000)==0){  //Outputs the progress of this process
-				System.out.println("\tProcessed = "+nDocs+" documents");
-			}
+	public void indexPatents(File fClean, File fIndexed, final LinkedHashMap<String, String> vocabulary, final LinkedHashMap<String, String> patentsIdxs) throws IOException{
+		final Metrics.Phase phase = Metrics.get().start("stage03.indexPatents", "documents", "Stage");
+		final Checkpoint checkpoint = Checkpoint.forOutput(fIndexed);
+		long nDocs = 0;
+		try{
+			long done = checkpoint.resume();
+			final PrintWriter pwIndexed = checkpoint.getWriter(fIndexed);
+			nDocs = new ParallelLines(numThreads, false).process(fClean, done, new ParallelLines.ChunkTransform(){ //Skip the documents done before the checkpoint
+				public void transform(ParallelLines.Chunk chunk){
+					StringBuilder sbIndexed = chunk.getOutput(0);
+					String line = "";
+					while((line=chunk.readLine())!=null){
+						String[] lineSplit = line.split(";");
+						String numPatent = lineSplit[0];
+						String numTerms = lineSplit[1];
+						String idxPatent = patentsIdxs.get(numPatent);
+						sbIndexed.append(idxPatent).append(' ').append(numTerms);
+						lineSplit = lineSplit[2].split(" ");
+						for(int i=0;i<lineSplit.length;i++){
+							String token = lineSplit[i];
+							int colon = token.indexOf(':');
+							if(colon<0){
+								sbIndexed.append(' ').append(vocabulary.get(token)).append(":1");
+							}
+							else{ //Keeps the count of the word
+								sbIndexed.append(' ').append(vocabulary.get(token.substring(0, colon))).append(token, colon, token.length());
+							}
+						}
+						sbIndexed.append(ParallelLines.LINE_SEPARATOR);
+					}
+				}
+			}, new ParallelLines.ChunkWriter(){
+				public void write(ParallelLines.Chunk chunk) throws IOException{
+					pwIndexed.append(chunk.getOutput(0));
+					checkpoint.update(chunk.getEndLine());
+					if(chunk.getEndLine()/100000>chunk.getFirstLine()/100000){  //Outputs the progress of this process
+						phase.progress(chunk.getEndLine());
+					}
+				}
+			});
+			checkpoint.finish();
 		}
-		brContent.close();
-		pwIndexed.close();
+		catch(Throwable e){ //Closes the outputs, keeping the last checkpoint
+			checkpoint.abort();
+			throw e;
+		}
+		phase.set("bytesRead", fClean.length());
+		phase.set("bytesWritten", fIndexed.length());
+		phase.end(nDocs);
 	}
 	
 	/**
@@ -72,13 +105,12 @@ public class Stage03IndexPatents {
 	 * @param lhmIdx The map to store the data from the file.
 	 */
 	public void readIndexes(File fContent, LinkedHashMap<String, String> lhmIdx) throws IOException{
-		FileInputStream fIContent = new FileInputStream(fContent);
-		BufferedReader brContent = new BufferedReader(new InputStreamReader(fIContent,"UTF-8"));
+		BufferedReader brContent = CompressedFiles.newReader(fContent, Charset.forName("UTF-8"));
 		String line = null;
-		String[] lineBreak = null;
 		while ((line=brContent.readLine())!=null){
-			lineBreak = line.split(" ");
-			lhmIdx.put(lineBreak[1], lineBreak[0]);
+			int first = line.indexOf(' ');
+			int second = line.indexOf(' ', first+1);
+			lhmIdx.put(line.substring(first+1, second<0 ? line.length() : second), line.substring(0, first));
 		}
 		brContent.close();
 	}
@@ -87,10 +119,12 @@ public class Stage03IndexPatents {
 		Stage03IndexPatents ip = new Stage03IndexPatents();
 		
 		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
-		File fClean = new File(fMainDir,"patents_terms.txt"); //Clean patent data
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fClean = CompressedFiles.getFile(fMainDir,"patents_terms.txt"); //Clean patent data
 		File fPatentsIdxs = new File(fMainDir, "patents_idxs.txt"); //Codified patent numbers
 		File fVocabulary = new File(fMainDir, "vocabulary.txt"); //Codified vocabulary
-		File fIndexed = new File(fMainDir, "patents_indexed.txt"); //Indexed patent data
+		File fIndexed = CompressedFiles.getFile(fMainDir, "patents_indexed.txt"); //Indexed patent data
+		int numThreads = Runtime.getRuntime().availableProcessors(); //Number of threads that index the lines (the output does not change)
 		
 		LinkedHashMap<String, String> vocabulary = new LinkedHashMap<String, String>();
 		LinkedHashMap<String, String> patentsIdxs = new LinkedHashMap<String, String>();
@@ -100,6 +134,8 @@ public class Stage03IndexPatents {
 		System.out.println("Loading codified patent numbers...");
 		ip.readIndexes(fPatentsIdxs, patentsIdxs);
 		System.out.println("Indexing patent data...");
+		ip.setNumThreads(numThreads);
 		ip.indexPatents(fClean, fIndexed, vocabulary, patentsIdxs);
+		Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "stage03"));
 	}
 }
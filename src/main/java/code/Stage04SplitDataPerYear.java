@@ -10,19 +10,58 @@ package code;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 
 public class Stage04SplitDataPerYear {
 	
+	private int numThreads = 1;
+	private int minYear = 1900;
+	private int maxYear = 2016;
+	
 	/**
 	 * Constructor
 	 */
 	public Stage04SplitDataPerYear(){}
 	
+	/**
+	 * Sets the number of threads that split the lines of the file (1 by default). The output is
+	 * the same for any number of threads.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+	
+	/**
+	 * Sets the range of years of the data (1900 to 2016 by default). The patents of other years
+	 * are not added to the year files, and are reported.
+	 * 
+	 * @param minYear The first year.
+	 * @param maxYear The last year.
+	 */
+	public void setYears(int minYear, int maxYear) {
+		this.minYear = minYear;
+		this.maxYear = maxYear;
+	}
+	
+	/**
+	 * Checks if a year is in the range of years of the data.
+	 */
+	public boolean isDataYear(String year){
+		int yearPat = Integer.valueOf(year);
+		return yearPat>=minYear && yearPat<=maxYear;
+	}
+	
+	/**
+	 * Returns the range of years of the data, as text.
+	 */
+	public String getYears(){
+		return minYear+"-"+maxYear;
+	}
+	
 	/**
 	 * Splits the indexed patent data per year. It creates new directory (years) inside
 	 * the current working directory.
@@ -32,41 +71,115 @@ public class Stage04SplitDataPerYear {
 	 * @param fMainDir The working directory to store the split data.
 	 */
 	public void splitDataPerYear(File fContent, ArrayList<String> alYears, File fMainDir) throws IOException{
-		LinkedHashMap<String, PrintWriter> years = new LinkedHashMap<String, PrintWriter>();
-		String line = "";
-		String yearPatent = "";
-		int yearPat = 0;
-		int nPatent = 0;
-		BufferedReader brContent = new BufferedReader(new FileReader(fContent));
-		File yearsDir = new File(fMainDir+"/years");
+		this.splitDataPerYear(fContent, alYears, fMainDir, false);
+	}
+
+	/**
+	 * Splits the indexed patent data per year, optionally adding the patents at the end of the
+	 * existing year files (to add a new batch of patents).
+	 * The lines are split in chunks by the threads that are set, and written in order.
+	 * Stores periodic checkpoints, and resumes from the last one if the process was interrupted.
+	 * 
+	 * @param fContent The file containing the indexed patent data.
+	 * @param alYear A list containing the year of each patent.
+	 * @param fMainDir The working directory to store the split data.
+	 * @param append True to add the patents to the existing year files.
+	 */
+	public void splitDataPerYear(File fContent, final ArrayList<String> alYears, File fMainDir, final boolean append) throws IOException{
+		final LinkedHashMap<String, PrintWriter> years = new LinkedHashMap<String, PrintWriter>();
+		final LinkedHashMap<String, Integer> yearOutputs = new LinkedHashMap<String, Integer>(); //Output of each year in the chunks
+		for(String yearPatent:alYears){
+			if(yearOutputs.get(yearPatent)==null && this.isDataYear(yearPatent))
+				yearOutputs.put(yearPatent, yearOutputs.size());
+		}
+		final String[] outputYears = yearOutputs.keySet().toArray(new String[yearOutputs.size()]);
+		final File yearsDir = new File(fMainDir+"/years");
 		System.out.println(yearsDir);
 		if (!yearsDir.exists())  //Create directory if it does not exist
             yearsDir.mkdirs();
-		while((line=brContent.readLine())!=null){
-			yearPatent = alYears.get(nPatent);
-			yearPat = Integer.valueOf(yearPatent);
-			if(yearPat>=1900 && yearPat<=2016){ //Check the maximum year of the data
-				if(years.get(yearPatent)==null){
-					File fYear = new File(yearsDir,"patents_indexed_"+yearPatent+".txt");
-					PrintWriter pwYear = new PrintWriter(fYear);
-					years.put(yearPatent, pwYear);
+		final Metrics.Phase phase = Metrics.get().start("stage04.splitDataPerYear", "documents", "Stage");
+		final Checkpoint checkpoint = Checkpoint.forOutput(new File(yearsDir, "patents_indexed"));
+		long nPatent = 0;
+		try{
+			long done = checkpoint.resume();
+			nPatent = new ParallelLines(numThreads, false).process(fContent, done, new ParallelLines.ChunkTransform(){ //Skip the patents done before the checkpoint
+				public void transform(ParallelLines.Chunk chunk){
+					long nPatent = chunk.getFirstLine();
+					String line = "";
+					while((line=chunk.readLine())!=null){
+						String yearPatent = alYears.get((int)nPatent);
+						Integer output = yearOutputs.get(yearPatent);
+						if(output!=null) //The patents out of the range of years are reported at the end
+							chunk.getOutput(output).append(line).append(ParallelLines.LINE_SEPARATOR);
+						nPatent++;
+					}
 				}
-				years.get(yearPatent).println(line);
-			}
-			else{
-				System.out.println(yearPat);
-			}
-			nPatent++;
-			if (nPatent%100000==0){ //Outputs the progress of this process
-				System.out.println("\tProcessed "+nPatent+" documents...");
-			}
+			}, new ParallelLines.ChunkWriter(){
+				public void write(ParallelLines.Chunk chunk) throws IOException{
+					boolean opened = false;
+					for(int output=0;output<chunk.getNumOutputs();output++){ //Opens the new year files before writing the chunk
+						if(!chunk.hasOutput(output))
+							continue;
+						String yearPatent = outputYears[output];
+						if(years.get(yearPatent)==null){
+							File fYear = CompressedFiles.getFile(yearsDir,"patents_indexed_"+yearPatent+".txt");
+							years.put(yearPatent, checkpoint.getWriter(fYear, append));
+							opened = true;
+						}
+					}
+					if(opened)
+						checkpoint.save(chunk.getFirstLine()); //Stores the initial length of the year files
+					for(int output=0;output<chunk.getNumOutputs();output++){
+						if(chunk.hasOutput(output))
+							years.get(outputYears[output]).append(chunk.getOutput(output));
+					}
+					checkpoint.update(chunk.getEndLine());
+					if(chunk.getEndLine()/100000>chunk.getFirstLine()/100000){ //Outputs the progress of this process
+						phase.progress(chunk.getEndLine());
+					}
+				}
+			});
+			checkpoint.finish();
 		}
-		brContent.close();
-		for(String pwYear:years.keySet())
-			years.get(pwYear).close();
+		catch(Throwable e){ //Closes the outputs, keeping the last checkpoint
+			checkpoint.abort();
+			throw e;
+		}
+		long bytesWritten = 0;
+		for(String yearName:years.keySet())
+			bytesWritten += CompressedFiles.getFile(yearsDir,"patents_indexed_"+yearName+".txt").length();
+		phase.set("years", years.size());
+		phase.set("dropped", this.reportDropped(alYears));
+		phase.set("bytesRead", fContent.length());
+		phase.set("bytesWritten", bytesWritten);
+		phase.end(nPatent);
 		System.out.println("Total patents = "+nPatent);
 	}
 	
+	/**
+	 * Reports the number of patents of each year out of the range of years of the data, which are
+	 * not added to the year files.
+	 * 
+	 * @param alYears A list containing the year of each patent.
+	 * @return The number of patents out of the range.
+	 */
+	public long reportDropped(List<String> alYears){
+		LinkedHashMap<String, Integer> dropped = new LinkedHashMap<String, Integer>();
+		long nDropped = 0;
+		for(String yearPatent:alYears){
+			if(!this.isDataYear(yearPatent)){
+				dropped.put(yearPatent, dropped.get(yearPatent)==null ? 1 : dropped.get(yearPatent)+1);
+				nDropped++;
+			}
+		}
+		if(nDropped>0){
+			System.out.println("Patents out of the years "+this.getYears()+" (not added to the year files) = "+nDropped);
+			for(String yearPatent:dropped.keySet())
+				System.out.println("\tYear "+yearPatent+" = "+dropped.get(yearPatent));
+		}
+		return nDropped;
+	}
+	
 	/**
 	 * Read a file containing the year of each patent. The years are stored one per line, and
 	 * there is a correspondence one to one with the indexed patent data.
@@ -76,7 +189,7 @@ public class Stage04SplitDataPerYear {
 	 */
 	public void readYears(File fYears, ArrayList<String> years) throws IOException{
 		String line = "";
-		BufferedReader brContent = new BufferedReader(new FileReader(fYears));
+		BufferedReader brContent = CompressedFiles.newReader(fYears);
 		while((line=brContent.readLine())!=null){
 			years.add(line);
 		}
@@ -87,14 +200,21 @@ public class Stage04SplitDataPerYear {
 		Stage04SplitDataPerYear sdpy = new Stage04SplitDataPerYear();
 		
 		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
-		File fIndexed = new File(fMainDir, "patents_indexed.txt"); //Indexed patent data
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
+		File fIndexed = CompressedFiles.getFile(fMainDir, "patents_indexed.txt"); //Indexed patent data
 		File fYears = new File(fMainDir, "patents_years.txt");  //Patent years file
+		int numThreads = Runtime.getRuntime().availableProcessors(); //Number of threads that split the lines (the output does not change)
+		int minYear = 1900; //First year of the data
+		int maxYear = 2016; //Last year of the data (the patents of later years are reported and not split)
 		
 		ArrayList<String> alYears = new ArrayList<String>();
 		
 		System.out.println("Loading patent years...");
 		sdpy.readYears(fYears, alYears);
 		System.out.println("Splitting patent data per year...");
+		sdpy.setNumThreads(numThreads);
+		sdpy.setYears(minYear, maxYear);
 		sdpy.splitDataPerYear(fIndexed, alYears, fMainDir);
+		Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "stage04"));
 	}
 }
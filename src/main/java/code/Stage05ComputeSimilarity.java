@@ -11,7 +11,6 @@ package code;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -19,11 +18,99 @@ import java.util.LinkedHashMap;
 
 public class Stage05ComputeSimilarity {
 
+	private int numThreads = 1;
+	private int topK = 0;
+	private TopKSimilarityWriter.TieBreak tieBreak = TopKSimilarityWriter.TieBreak.EARLIER_PATENT;
+	private double threshold = 0;
+	private double bitsetRatio = 0;
+	private int bitsetTerms = 128;
+	private boolean binaryOutput = false;
+	private int blockSize = 0;
+	private MeasuresSimilarityWriter.Measure[] measures = null;
+	private boolean measureColumns = true;
+	private SimilarityShards shards = null;
+
 	/**
 	 * Constructor
 	  */
 	public Stage05ComputeSimilarity(){}
 
+	/**
+	 * Sets the number of threads for the calculations of each year (1 computes them sequentially).
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Sets the number of most similar patents to store per patent (0 stores all the pairs), and
+	 * the rule for neighbours with the same similarity.
+	 */
+	public void setTopK(int topK, TopKSimilarityWriter.TieBreak tieBreak) {
+		this.topK = topK;
+		this.tieBreak = tieBreak;
+	}
+
+	/**
+	 * Sets the minimum similarity of the stored pairs (0 stores all the pairs with a shared keyword).
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Returns the start of the names of the similarity files of the current settings, followed by
+	 * _year and the extension (jaccard, or jaccard_t0.5 and jaccard_top10 for the threshold and
+	 * top-k outputs).
+	 */
+	public String getOutputName() {
+		String name = "jaccard";
+		if(threshold>0)
+			name += "_t"+threshold;
+		if(topK>0)
+			name += "_top"+topK;
+		return name;
+	}
+
+	/**
+	 * Sets the fraction of the patents of a year where a keyword must occur to be counted with
+	 * bitsets (0 disables them), and the maximum number of keywords counted with bitsets.
+	 */
+	public void setBitsets(double bitsetRatio, int bitsetTerms) {
+		this.bitsetRatio = bitsetRatio;
+		this.bitsetTerms = bitsetTerms;
+	}
+
+	/**
+	 * Sets if the similarities are stored in binary format (converted to text with SimilarityReader).
+	 * The top-k output is only stored in text format.
+	 */
+	public void setBinaryOutput(boolean binaryOutput) {
+		this.binaryOutput = binaryOutput;
+	}
+
+	/**
+	 * Sets the similarity measures computed together for each pair (null computes only the Jaccard
+	 * similarity with the other settings), and if they are stored as columns of one file or each
+	 * one in its own file. The measures are computed with one thread and store all the pairs in
+	 * text format, so they cannot be combined with the top-k, threshold, binary, threads or block
+	 * size settings.
+	 */
+	public void setMeasures(MeasuresSimilarityWriter.Measure[] measures, boolean columns) {
+		this.measures = measures;
+		this.measureColumns = columns;
+	}
+
+	/**
+	 * Sets the shard of the focus patents computed by this process (shard i of n, from 1 to n),
+	 * or 1 of 1 to compute all of them. Each shard is stored in its own file and the shards are
+	 * merged with SimilarityShards. Only the outputs with all the pairs (text or measures) can be
+	 * computed by shards.
+	 */
+	public void setShard(int shard, int numShards) {
+		this.shards = numShards>1 ? new SimilarityShards(shard, numShards) : null;
+	}
+
 	/**
 	 * Reads the codified patent numbers and the original ones and stores them in a map.
 	 * 
@@ -31,11 +118,11 @@ public class Stage05ComputeSimilarity {
 	 */
 	public void readIndexes(File fInput, LinkedHashMap<String, String> lhm) throws IOException{
 		String line = "";
-		String[] lineBreak;
-		BufferedReader brInput = new BufferedReader(new FileReader(fInput));
+		BufferedReader brInput = CompressedFiles.newReader(fInput);
 		while((line=brInput.readLine())!=null){
-			lineBreak = line.split(" ");
-			lhm.put(lineBreak[0], lineBreak[1]);
+			int first = line.indexOf(' ');
+			int second = line.indexOf(' ', first+1);
+			lhm.put(line.substring(0, first), line.substring(first+1, second<0 ? line.length() : second));
 		}
 		brInput.close();	
 	}
@@ -54,22 +141,41 @@ public class Stage05ComputeSimilarity {
 	 */
 	public void readPatentsSequencially(File fContent, LinkedHashMap<String, LinkedHashMap<String, Integer>> patents,
 			LinkedHashMap<String, ArrayList<String>> invertedIndex) throws IOException{
-		String line = "";
-		String[] lineSplit = null;
-		String[] elements = null;
 		String token = "";
 		int tfToken = 0; 
 		String idPatent = "";
 		int nPatent = 0;
-		BufferedReader brContent = new BufferedReader(new FileReader(fContent));
-		while((line=brContent.readLine())!=null){
-			lineSplit = line.split(" ");
-			idPatent = lineSplit[0];
+		MappedLineReader mlrContent = new MappedLineReader(fContent); //Elements read from the bytes of the file, without splitting the lines
+		while(mlrContent.nextLine()){
+			int end = mlrContent.getLineEnd();
+			int pos = mlrContent.getLineStart();
+			while(pos<end && mlrContent.charAt(pos)!=' ')
+				pos++;
+			idPatent = mlrContent.subSequence(mlrContent.getLineStart(), pos).toString();
 			LinkedHashMap<String, Integer> patent = new LinkedHashMap<String, Integer>();
-			for(int i=2;i<lineSplit.length;i++){
-				elements = lineSplit[i].split(":");
-				token = elements[0];
-				tfToken = Integer.valueOf(elements[1]);
+			int nElement = 0;
+			while(pos<end){
+				int start = ++pos;
+				while(pos<end && mlrContent.charAt(pos)!=' ')
+					pos++;
+				nElement++;
+				if(nElement==1 || pos==start) //The number of keywords, or an empty element
+					continue;
+				int colon = start;
+				while(colon<pos && mlrContent.charAt(colon)!=':')
+					colon++;
+				token = mlrContent.subSequence(start, colon).toString();
+				boolean valid = colon+1<pos;
+				tfToken = 0;
+				for(int i=colon+1;i<pos && valid;i++){
+					char c = mlrContent.charAt(i);
+					valid = c>='0' && c<='9';
+					tfToken = tfToken*10+(c-'0');
+				}
+				if(!valid){
+					mlrContent.close();
+					throw new IOException("Line "+(nPatent+1)+" of "+fContent+": invalid keyword frequency for patent "+idPatent);
+				}
 				patent.put(token, tfToken);
 				if(invertedIndex.get(token)==null)
 					invertedIndex.put(token, new ArrayList<String>());
@@ -81,9 +187,84 @@ public class Stage05ComputeSimilarity {
 				System.out.println("\t"+nPatent+" patents read...");
 			}
 		}
-		brContent.close();
+		mlrContent.close();
 	}
 	
+	/**
+	 * Loads the patent data from a file into a primitive index. The patents are identified by
+	 * their line number in the file and the keywords by their decoded position in the vocabulary,
+	 * so no map is needed to store the data or the inverted index. The file is mapped in memory
+	 * and the keywords are decoded from its bytes (MappedLineReader).
+	 * 
+	 * @param fContent The patent data file.
+	 * @return The patent index.
+	 */
+	public PatentIndex readPatentIndex(File fContent) throws IOException{
+		return this.readPatentIndex(fContent, false);
+	}
+
+	/**
+	 * Loads the patent data from a file into a primitive index, optionally with the frequency of
+	 * each keyword and the TF-IDF weights.
+	 * 
+	 * @param fContent The patent data file.
+	 * @param withFrequencies True to keep the frequencies of the keywords.
+	 * @return The patent index.
+	 */
+	public PatentIndex readPatentIndex(File fContent, boolean withFrequencies) throws IOException{
+		PatentLineParser parser = new PatentLineParser();
+		ArrayList<String> patentIds = new ArrayList<String>();
+		IntList patentOffsets = new IntList();
+		IntList patentTerms = new IntList(1<<16);
+		IntList frequencies = withFrequencies ? new IntList(1<<16) : null;
+		int numTerms = 0;
+		int nPatent = 0;
+		Metrics.Phase phase = Metrics.get().start("stage05.load."+fContent.getName(), "patents", "YearLoad");
+		MappedLineReader mlrContent = new MappedLineReader(fContent);
+		patentOffsets.add(0);
+		while(mlrContent.nextLine()){
+			int start = patentTerms.size();
+			try{
+				patentIds.add(parser.parse(mlrContent, mlrContent.getLineStart(), mlrContent.getLineEnd(), patentTerms, frequencies));
+			}
+			catch(IOException e){
+				mlrContent.close();
+				throw new IOException("Line "+(nPatent+1)+" of "+fContent+": "+e.getMessage());
+			}
+			for(int i=start;i<patentTerms.size();i++)
+				numTerms = Math.max(numTerms, patentTerms.get(i)+1);
+			patentOffsets.add(patentTerms.size());
+			nPatent++;
+			if (nPatent%10000==0){ //Outputs the progress of this process
+				phase.progress(nPatent);
+			}
+		}
+		mlrContent.close();
+		PatentIndex index = new PatentIndex(patentIds.toArray(new String[patentIds.size()]), patentOffsets.toArray(), patentTerms.toArray(), numTerms);
+		if(withFrequencies)
+			index.setFrequencies(frequencies.toArray());
+		phase.set("postings", index.getPostings().length);
+		phase.set("terms", numTerms);
+		phase.set("indexBytes", Metrics.indexBytes(index));
+		phase.set("bytesRead", fContent.length());
+		phase.end(nPatent);
+		return index;
+	}
+
+	/**
+	 * Gets the original patent number of each patent in an index.
+	 * 
+	 * @param index The patent index.
+	 * @param lhmPatentsIdx The map containing the codified patent numbers.
+	 * @return The original patent numbers, by ordinal.
+	 */
+	public String[] getPatentNumbers(PatentIndex index, LinkedHashMap<String, String> lhmPatentsIdx){
+		String[] patentNumbers = new String[index.getNumPatents()];
+		for(int p=0;p<patentNumbers.length;p++)
+			patentNumbers[p] = lhmPatentsIdx.get(index.getPatentIds()[p]);
+		return patentNumbers;
+	}
+
 	/**
 	 * Computes the number of keywords shared by two patents (intersection).
 	 * It uses the inverted index to compute the intersection for all the patents related with
@@ -112,6 +293,141 @@ public class Stage05ComputeSimilarity {
 		}
 	}
 
+	/**
+	 * Computes the number of keywords shared by a focus patent (patent A) and every patent with
+	 * a greater ordinal, using the primitive index. Since posting lists are sorted by ordinal,
+	 * the patents already processed are skipped with a binary search instead of a map of
+	 * previous patents.
+	 * The intersections are accumulated in an array indexed by ordinal, and the patents found are
+	 * listed in touched in the order they are found, so the caller can read and reset only those
+	 * positions.
+	 * If the index has bitsets for the frequent keywords, those keywords are counted with the
+	 * bitsets after the posting lists of the other keywords. The intersections are the same, but
+	 * the patents are found in a different order.
+	 * 
+	 * @param index The patent index.
+	 * @param patentA The ordinal of the focus patent.
+	 * @param values The array to accumulate the intersections, with all positions set to 0.
+	 * @param touched The array to store the ordinals of the patents found.
+	 * @return The number of patents found.
+	 */
+	public int processPatents(PatentIndex index, int patentA, int[] values, int[] touched){
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] patentTerms = index.getPatentTerms();
+		int[] termOffsets = index.getTermOffsets();
+		int[] postings = index.getPostings();
+		FrequentTermBitsets frequentTerms = index.getFrequentTerms();
+		int nTouched = 0;
+		for(int i=patentOffsets[patentA];i<patentOffsets[patentA+1];i++){
+			int term = patentTerms[i];
+			if(frequentTerms!=null && frequentTerms.isFrequent(term))
+				continue;
+			int end = termOffsets[term+1];
+			for(int j=index.firstPostingAfter(term, patentA);j<end;j++){
+				int patentB = postings[j];
+				if(values[patentB]++==0)
+					touched[nTouched++] = patentB;
+			}
+		}
+		if(frequentTerms!=null)
+			nTouched = frequentTerms.addIntersections(patentA, values, touched, nTouched);
+		return nTouched;
+	}
+
+	/**
+	 * Computes the number of keywords shared by a focus patent (patent A) and every patent with
+	 * a greater ordinal, as the other processPatents, and also the dot product of their TF-IDF
+	 * weights in a second accumulator. It uses only the posting lists (no bitsets).
+	 * 
+	 * @param index The patent index, with frequencies.
+	 * @param patentA The ordinal of the focus patent.
+	 * @param values The array to accumulate the intersections, with all positions set to 0.
+	 * @param weights The array to accumulate the dot products, with all positions set to 0.
+	 * @param touched The array to store the ordinals of the patents found.
+	 * @return The number of patents found.
+	 */
+	public int processPatents(PatentIndex index, int patentA, int[] values, double[] weights, int[] touched){
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] patentTerms = index.getPatentTerms();
+		int[] termOffsets = index.getTermOffsets();
+		int[] postings = index.getPostings();
+		float[] patentWeights = index.getPatentWeights();
+		float[] postingWeights = index.getPostingWeights();
+		int nTouched = 0;
+		for(int i=patentOffsets[patentA];i<patentOffsets[patentA+1];i++){
+			int term = patentTerms[i];
+			double weight = patentWeights[i];
+			int end = termOffsets[term+1];
+			for(int j=index.firstPostingAfter(term, patentA);j<end;j++){
+				int patentB = postings[j];
+				if(values[patentB]++==0)
+					touched[nTouched++] = patentB;
+				weights[patentB] += weight*postingWeights[j];
+			}
+		}
+		return nTouched;
+	}
+
+	/**
+	 * Computes the intersections between every pair of patents in a primitive index and passes
+	 * them to a writer, one focus patent at a time in ordinal order.
+	 * 
+	 * @param index The patent index.
+	 * @param writer The writer that stores the similarities.
+	 */
+	public void jaccardSimilarity(PatentIndex index, SimilarityWriter writer) throws IOException{
+		this.jaccardSimilarity(index, writer, 0);
+	}
+
+	/**
+	 * Computes the intersections between every pair of patents in a primitive index, starting
+	 * from a focus patent (to resume from a checkpoint), and passes them to a writer, one focus
+	 * patent at a time in ordinal order.
+	 * 
+	 * @param index The patent index.
+	 * @param writer The writer that stores the similarities.
+	 * @param firstPatent The ordinal of the first focus patent.
+	 */
+	public void jaccardSimilarity(PatentIndex index, SimilarityWriter writer, int firstPatent) throws IOException{
+		this.jaccardSimilarity(index, writer, firstPatent, index.getNumPatents(), null);
+	}
+
+	/**
+	 * Computes the intersections between every pair of patents in a primitive index, for a range
+	 * of focus patents, and optionally the dot products of their TF-IDF weights in the same
+	 * pass, and passes them to a writer, one focus patent at a time in ordinal order.
+	 * The dot products are stored in an array shared with the writer, in the same positions as
+	 * the intersections, before each call to the writer.
+	 * 
+	 * @param index The patent index (with frequencies for the dot products).
+	 * @param writer The writer that stores the similarities.
+	 * @param firstPatent The ordinal of the first focus patent.
+	 * @param endPatent The ordinal after the last focus patent.
+	 * @param dots The array to store the dot products, with a position per patent (null to skip them).
+	 */
+	public void jaccardSimilarity(PatentIndex index, SimilarityWriter writer, int firstPatent, int endPatent, double[] dots) throws IOException{
+		int numPatents = index.getNumPatents();
+		int[] values = new int[numPatents];
+		double[] weights = dots==null ? null : new double[numPatents];
+		int[] touched = new int[numPatents];
+		int[] intersections = new int[numPatents];
+		for(int patentA=firstPatent;patentA<endPatent;patentA++){
+			int nTouched = dots==null ? this.processPatents(index, patentA, values, touched) : this.processPatents(index, patentA, values, weights, touched);
+			for(int i=0;i<nTouched;i++){ //Collect the intersections and reset the accumulator
+				intersections[i] = values[touched[i]];
+				values[touched[i]] = 0;
+			}
+			if(dots!=null){
+				for(int i=0;i<nTouched;i++){
+					dots[i] = weights[touched[i]];
+					weights[touched[i]] = 0;
+				}
+			}
+			writer.write(patentA, touched, intersections, nTouched);
+		}
+		writer.close();
+	}
+
 	/**
 	 * Computes the pair-wise Jaccard similarity between two patents.
 	 * 
@@ -132,7 +448,7 @@ public class Stage05ComputeSimilarity {
 		int numKwPatentB = 0;
 		int union = 0;
 		int n = 0;
-		PrintWriter pwSimilarity = new PrintWriter(fSimilarity);
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fSimilarity);
 		for(String idxPatentA:patents.keySet()){
 			previousPatents.put(idxPatentA, 0);
 			patentA = patents.get(idxPatentA);
@@ -161,20 +477,209 @@ public class Stage05ComputeSimilarity {
 		pwSimilarity.close();
 	}
 
+	/**
+	 * Sets the number of patents per block to compute the years by blocks with bounded memory
+	 * (0 loads each year completely). The blocks only compute the Jaccard similarity of all the
+	 * pairs in text format, with one thread and without bitsets, so they cannot be combined with
+	 * the top-k, threshold, binary, measures, threads or bitsets settings.
+	 */
+	public void setBlockSize(int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Estimates the memory needed to compute a year with the current settings: the primitive
+	 * index (keywords of each patent and posting lists, plus the growth of the arrays while
+	 * loading), the patent numbers and an accumulator, and the memory of the mode and the output
+	 * (TF-IDF weights, bitsets, accumulators and buffers of each thread, top-k heaps, pairs of the
+	 * threshold join, binary output or blocks).
+	 *
+	 * @param numPatents The number of patents of the year.
+	 * @param numPostings The number of keywords of all the patents.
+	 * @param numTerms The number of keywords (the largest keyword index plus one).
+	 * @param sumDf2 The sum of the squared document frequencies of the keywords (bound of the pairs).
+	 * @return The estimated memory in bytes.
+	 */
+	public long estimateMemory(int numPatents, long numPostings, int numTerms, long sumDf2){
+		long memory = (16*numPostings+120L*numPatents+8L*numTerms)*3/2;
+		if(blockSize>0){ //Two blocks at a time
+			if(blockSize<numPatents)
+				memory = memory*2*blockSize/numPatents;
+			return memory+16L*blockSize;
+		}
+		boolean weighted = measures!=null && MeasuresSimilarityWriter.isWeighted(measures);
+		if(weighted) //Frequencies and weights of the keywords, norms and dot products
+			memory += 12*numPostings+12L*numPatents;
+		else if(bitsetRatio>0) //Masks of the patents with frequent keywords
+			memory += (8L*((bitsetTerms+63)/64)+8)*numPatents+4L*numTerms;
+		if(measures!=null)
+			return memory;
+		long numPairs = Math.min(sumDf2/2, (long)numPatents*(numPatents-1)/2); //Bound of the pairs with a shared keyword
+		if(threshold>0){ //Sorted keywords, indexed prefixes and the pairs kept in memory (triplets and their sorting)
+			memory += 12*numPostings+16L*numPatents+32*Math.min(ThresholdSimilarity.MAX_PAIRS, numPairs);
+		}
+		else if(numThreads>1){ //Accumulators of each thread, costs, and the pairs buffered for the writer
+			memory += 8L*numPatents*numThreads+16L*numPatents+16*Math.min(numPairs/4, (1L<<23)*numThreads);
+		}
+		if(topK>0) //Heaps of the most similar patents
+			memory += 12L*numPatents*topK+4L*numPatents;
+		else if(binaryOutput)
+			memory += 8L*numPatents;
+		return memory;
+	}
+
+	/**
+	 * Computes the similarities of one year with the current settings and stores them in the
+	 * similarity directory.
+	 * The text output with all the pairs stores periodic checkpoints, and resumes from the last
+	 * one if the year was interrupted (the other outputs are written at the end or sorted).
+	 * 
+	 * @param year The year.
+	 * @param fYearData The patent data file of the year.
+	 * @param fJaccard The directory to store the similarities.
+	 * @param lhmPatentsIdx The map containing the codified patent numbers.
+	 */
+	public void computeYear(int year, File fYearData, File fJaccard, LinkedHashMap<String, String> lhmPatentsIdx) throws IOException{
+		File fSimilarity = null;
+		Metrics.Phase yearPhase = Metrics.get().start("stage05.year."+year, "patents");
+		if(shards!=null && measures==null && (blockSize>0 || topK>0 || binaryOutput || threshold>0))
+			throw new IllegalArgumentException("Only the outputs with all the pairs can be computed by shards");
+		if(measures!=null && (topK>0 || threshold>0 || binaryOutput || numThreads>1))
+			throw new IllegalArgumentException("The measures are computed with one thread and store all the pairs in text format");
+		if(topK>0 && binaryOutput)
+			throw new IllegalArgumentException("The top-k output is only stored in text format");
+		if(blockSize>0 && (topK>0 || threshold>0 || binaryOutput || measures!=null || numThreads>1 || bitsetRatio>0))
+			throw new IllegalArgumentException("The blocks only compute all the pairs in text format, with one thread and without bitsets");
+		if(blockSize>0){
+			fSimilarity = CompressedFiles.getFile(fJaccard,"jaccard_"+year+".txt");
+			new BlockedSimilarity(this, blockSize, new File(fJaccard, "tmp_"+year)).jaccardSimilarity(fYearData, fSimilarity, lhmPatentsIdx);
+			yearPhase.set("bytesRead", fYearData.length());
+			yearPhase.set("bytesWritten", fSimilarity.length());
+			yearPhase.end(0);
+			return;
+		}
+		System.out.println("\tReading data for year = "+year);
+		boolean weighted = measures!=null && MeasuresSimilarityWriter.isWeighted(measures);
+		PatentIndex index = this.readPatentIndex(fYearData, weighted);
+		if(bitsetRatio>0 && !weighted){
+			index.setFrequentTerms(new FrequentTermBitsets(index, Math.max(1, (int)Math.ceil(bitsetRatio*index.getNumPatents())), bitsetTerms));
+			System.out.println("\tKeywords counted with bitsets = "+index.getFrequentTerms().getNumTerms());
+		}
+		System.out.println("\tDoing the calculations...");
+		String name = this.getOutputName();
+		SimilarityWriter writer = null;
+		int firstPatent = 0;
+		int endPatent = index.getNumPatents();
+		if(shards!=null){
+			int[] range = shards.getRange(index, new ParallelSimilarity(this, numThreads));
+			firstPatent = range[0];
+			endPatent = range[1];
+			System.out.println("\tShard "+shards.getShard()+" of "+shards.getNumShards()+" = patents "+firstPatent+" to "+(endPatent-1));
+		}
+		File[] fOutputs = null;
+		double[] dots = null;
+		Checkpoint checkpoint = null; //Of the outputs with all the pairs
+		if(measures!=null){
+			File[] fMeasures = new File[measureColumns ? 1 : measures.length];
+			if(measureColumns){
+				fMeasures[0] = CompressedFiles.getFile(fJaccard,"similarity_"+year+".txt");
+			}
+			else{
+				for(int m=0;m<measures.length;m++)
+					fMeasures[m] = CompressedFiles.getFile(fJaccard,measures[m].getName()+"_"+year+".txt");
+			}
+			for(int m=0;m<fMeasures.length && shards!=null;m++)
+				fMeasures[m] = shards.getShardFile(fMeasures[m]);
+			fOutputs = fMeasures;
+			fSimilarity = fMeasures[0];
+			checkpoint = Checkpoint.forOutput(fSimilarity);
+			firstPatent = Math.max(firstPatent, (int)checkpoint.resume());
+			PrintWriter[] pwMeasures = new PrintWriter[fMeasures.length];
+			for(int m=0;m<fMeasures.length;m++)
+				pwMeasures[m] = checkpoint.getWriter(fMeasures[m]);
+			if(weighted)
+				dots = new double[index.getNumPatents()];
+			writer = new CheckpointSimilarityWriter(new MeasuresSimilarityWriter(pwMeasures, index,
+					this.getPatentNumbers(index, lhmPatentsIdx), measures, dots), checkpoint);
+		}
+		else if(topK>0){
+			fSimilarity = CompressedFiles.getFile(fJaccard,name+"_"+year+".txt");
+			writer = new TopKSimilarityWriter(fSimilarity, index, this.getPatentNumbers(index, lhmPatentsIdx), topK, tieBreak);
+		}
+		else if(binaryOutput){
+			fSimilarity = new File(fJaccard,name+"_"+year+".bin");
+			writer = new BinarySimilarityWriter(fSimilarity, index, this.getPatentNumbers(index, lhmPatentsIdx), year);
+		}
+		else if(threshold>0){
+			fSimilarity = CompressedFiles.getFile(fJaccard,name+"_"+year+".txt");
+			writer = new TextSimilarityWriter(fSimilarity, index, this.getPatentNumbers(index, lhmPatentsIdx));
+		}
+		else{
+			fSimilarity = CompressedFiles.getFile(fJaccard,name+"_"+year+".txt");
+			if(shards!=null)
+				fSimilarity = shards.getShardFile(fSimilarity);
+			fOutputs = new File[]{fSimilarity};
+			checkpoint = Checkpoint.forOutput(fSimilarity);
+			firstPatent = Math.max(firstPatent, (int)checkpoint.resume());
+			writer = new CheckpointSimilarityWriter(new TextSimilarityWriter(checkpoint.getWriter(fSimilarity), index,
+					this.getPatentNumbers(index, lhmPatentsIdx)), checkpoint);
+		}
+		Metrics.Phase pairsPhase = Metrics.get().start("stage05.pairs."+year, "patents", "PairLoop");
+		writer = new MetricsSimilarityWriter(writer, pairsPhase);
+		try{
+			if(measures!=null)
+				this.jaccardSimilarity(index, writer, firstPatent, endPatent, dots);
+			else if(threshold>0){
+				ThresholdSimilarity ts = new ThresholdSimilarity(threshold);
+				ts.setTmpDir(new File(fJaccard, "tmp_"+year));
+				ts.jaccardSimilarity(index, writer);
+				new File(fJaccard, "tmp_"+year).delete();
+			}
+			else if(numThreads>1)
+				new ParallelSimilarity(this, numThreads).jaccardSimilarity(index, writer, firstPatent, endPatent);
+			else
+				this.jaccardSimilarity(index, writer, firstPatent, endPatent, null);
+			if(shards!=null){
+				for(File fOutput:fOutputs)
+					shards.markDone(fOutput);
+			}
+		}
+		catch(Throwable e){ //Closes the outputs, keeping the last checkpoint
+			if(checkpoint!=null)
+				checkpoint.abort();
+			throw e;
+		}
+		pairsPhase.set("bytesWritten", fSimilarity.length());
+		pairsPhase.end(Math.max(0, endPatent-firstPatent));
+		yearPhase.set("postings", index.getPostings().length);
+		yearPhase.set("pairs", pairsPhase.get("pairs"));
+		yearPhase.set("bytesRead", fYearData.length());
+		yearPhase.set("bytesWritten", fSimilarity.length());
+		yearPhase.end(index.getNumPatents());
+	}
+
 	public static void main(String[] args) throws IOException{
 		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
 		
 		int initYear = 1940; //Initial year to compute similarities
 		int endYear = 1945; //Final year to compute similarities (check the maximum year in the data)
+		cs.setNumThreads(1); //Number of threads for the calculations (1 computes them sequentially)
+		cs.setTopK(0, TopKSimilarityWriter.TieBreak.EARLIER_PATENT); //Number of most similar patents to store per patent (0 stores all the pairs)
+		cs.setThreshold(0); //Minimum similarity of the stored pairs (0 stores all the pairs with a shared keyword)
+		cs.setBitsets(0, 128); //Keywords in at least this fraction of the patents of a year are counted with bitsets (0 disables them)
+		cs.setBinaryOutput(false); //Stores the similarities in binary format (converted to text with SimilarityReader)
+		cs.setBlockSize(0); //Number of patents per block for the years that do not fit in memory (0 loads each year completely)
+		cs.setShard(1, 1); //Shard of the focus patents computed by this process, e.g. (2, 4) for the second of four (1, 1 computes all of them); merge the shards with SimilarityShards
+		cs.setMeasures(null, true); //Measures computed together, e.g. {JACCARD, DICE, OVERLAP, COSINE, TFIDF_COSINE} (null computes only the Jaccard similarity), as columns of one file or one file per measure
+		int concurrentYears = 1; //Number of years computed at the same time (1 computes them one after the other)
+		long memoryBudget = Runtime.getRuntime().maxMemory(); //Memory available for the years computed at the same time, in bytes
 
-		LinkedHashMap<String, LinkedHashMap<String, Integer>> patents = new LinkedHashMap<String, LinkedHashMap<String, Integer>>();
-		LinkedHashMap<String, ArrayList<String>> invertedIndex = new LinkedHashMap<String, ArrayList<String>>();
 		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
 		
 		File fMainDir = new File("C:/Users/JC/Documents/CodeandData/datasets/2016_smj_data"); //Working directory
+		CompressedFiles.setExtension(""); //Extension of the large files (".gz" to compress them)
 		File fPatentsIdxs = new File(fMainDir,"patents_idxs.txt");
 		File fYearData = null;
-		File fSimilarity = null;
 		File fJaccard = new File(fMainDir+"/jaccard/");
 		if (!fJaccard.exists())
 			fJaccard.mkdirs();
@@ -182,16 +687,17 @@ public class Stage05ComputeSimilarity {
 		System.out.println("Reading the codified patent numbers...");
 		cs.readIndexes(fPatentsIdxs, lhmPatentsIdx);
 		
+		if(concurrentYears>1){
+			YearScheduler ys = new YearScheduler(cs, concurrentYears, memoryBudget);
+			ys.computeYears(initYear, endYear, fMainDir, fJaccard, lhmPatentsIdx);
+			Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "stage05"));
+			return;
+		}
 		for(int year=initYear;year<=endYear;year++){
-			patents.clear();
-			invertedIndex.clear();
 			System.out.println("Computing similarities for year = "+year);
-			fYearData = new File(fMainDir, "years/patents_indexed_"+year+".txt");
-			System.out.println("\tReading data for year = "+year);
-			cs.readPatentsSequencially(fYearData, patents, invertedIndex);
-			fSimilarity = new File(fJaccard,"jaccard_"+year+".txt");
-			System.out.println("\tDoing the calculations...");
-			cs.jaccardSimilarity(patents, invertedIndex, fSimilarity, lhmPatentsIdx);
+			fYearData = CompressedFiles.getFile(fMainDir, "years/patents_indexed_"+year+".txt");
+			cs.computeYear(year, fYearData, fJaccard, lhmPatentsIdx);
 		}
+		Metrics.get().writeSummary(Metrics.get().getSummaryFile(fMainDir, "stage05"));
 	}
 }
\ No newline at end of file
@@ -0,0 +1,222 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Counts the occurrences of terms (words or years) in an open-addressing hash table of their
+ * characters, without a String or a boxed count per term. The characters of all the terms are
+ * stored one after the other in a single array.
+ * Each thread counts its part of a file in its own counter, and the counters are merged at the end.
+ * Every term keeps its first occurrence (line and position in the line), so the terms can be
+ * listed in order of first occurrence in the file, as a LinkedHashMap filled in order of the file.
+  */
+package code;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class TermCounter {
+
+	private char[] chars = new char[1<<16];
+	private int nChars = 0;
+	private int[] termStarts = new int[1<<10];
+	private int[] termLengths = new int[1<<10];
+	private int[] counts = new int[1<<10];
+	private long[] firstLines = new long[1<<10];
+	private int[] firstPositions = new int[1<<10];
+	private int numTerms = 0;
+	private int[] table = new int[1<<11]; //Term plus one, or 0 for an empty position
+	private char[] token = new char[64];
+
+	/**
+	 * Constructor
+	 */
+	public TermCounter(){}
+
+	/**
+	 * Returns a counter per thread. The counters created are added to a list, to merge them at
+	 * the end.
+	 *
+	 * @param counters The list of the counters created.
+	 */
+	public static ThreadLocal<TermCounter> perThread(List<TermCounter> counters){
+		final List<TermCounter> created = Collections.synchronizedList(counters);
+		return new ThreadLocal<TermCounter>(){
+			protected TermCounter initialValue(){
+				TermCounter counter = new TermCounter();
+				created.add(counter);
+				return counter;
+			}
+		};
+	}
+
+	/**
+	 * Merges several counters into a new one.
+	 *
+	 * @param counters The counters.
+	 */
+	public static TermCounter merge(List<TermCounter> counters){
+		TermCounter merged = new TermCounter();
+		for(TermCounter counter:counters)
+			merged.add(counter);
+		return merged;
+	}
+
+	/**
+	 * Counts an occurrence of a term.
+	 *
+	 * @param text The text that contains the term.
+	 * @param start The start of the term in the text.
+	 * @param end The end of the term in the text (exclusive).
+	 * @param line The line of the occurrence.
+	 * @param position The position of the occurrence in the line.
+	 */
+	public void add(CharSequence text, int start, int end, long line, int position){
+		int length = end-start;
+		if(token.length<length)
+			token = new char[Math.max(length, token.length*2)];
+		int hash = 0;
+		for(int p=0;p<length;p++){
+			char c = text.charAt(start+p);
+			token[p] = c;
+			hash = 31*hash+c;
+		}
+		this.add(token, 0, length, hash, 1, line, position);
+	}
+
+	/**
+	 * Adds the counts of another counter.
+	 *
+	 * @param other The other counter.
+	 */
+	public void add(TermCounter other){
+		for(int term=0;term<other.numTerms;term++){
+			int start = other.termStarts[term];
+			int length = other.termLengths[term];
+			int hash = 0;
+			for(int p=start;p<start+length;p++)
+				hash = 31*hash+other.chars[p];
+			this.add(other.chars, start, length, hash, other.counts[term], other.firstLines[term], other.firstPositions[term]);
+		}
+	}
+
+	/**
+	 * Adds a count to a term, keeping its earliest occurrence.
+	 */
+	private void add(char[] src, int start, int length, int hash, int count, long line, int position){
+		int mask = table.length-1;
+		int pos = (hash^(hash>>>16))&mask;
+		while(table[pos]!=0){
+			int term = table[pos]-1;
+			if(termLengths[term]==length){
+				int termStart = termStarts[term];
+				int p = 0;
+				while(p<length && chars[termStart+p]==src[start+p])
+					p++;
+				if(p==length){
+					counts[term] += count;
+					if(line<firstLines[term] || (line==firstLines[term] && position<firstPositions[term])){
+						firstLines[term] = line;
+						firstPositions[term] = position;
+					}
+					return;
+				}
+			}
+			pos = (pos+1)&mask;
+		}
+		if(numTerms==termStarts.length){
+			int size = numTerms*2;
+			termStarts = Arrays.copyOf(termStarts, size);
+			termLengths = Arrays.copyOf(termLengths, size);
+			counts = Arrays.copyOf(counts, size);
+			firstLines = Arrays.copyOf(firstLines, size);
+			firstPositions = Arrays.copyOf(firstPositions, size);
+		}
+		if(nChars+length>chars.length)
+			chars = Arrays.copyOf(chars, Math.max(nChars+length, chars.length*2));
+		System.arraycopy(src, start, chars, nChars, length);
+		int term = numTerms++;
+		termStarts[term] = nChars;
+		termLengths[term] = length;
+		counts[term] = count;
+		firstLines[term] = line;
+		firstPositions[term] = position;
+		nChars += length;
+		table[pos] = term+1;
+		if(numTerms*2>table.length)
+			this.rehash(table.length*2);
+	}
+
+	private void rehash(int size){
+		table = new int[size];
+		int mask = size-1;
+		for(int term=0;term<numTerms;term++){
+			int hash = 0;
+			for(int p=termStarts[term];p<termStarts[term]+termLengths[term];p++)
+				hash = 31*hash+chars[p];
+			int pos = (hash^(hash>>>16))&mask;
+			while(table[pos]!=0)
+				pos = (pos+1)&mask;
+			table[pos] = term+1;
+		}
+	}
+
+	/**
+	 * Returns the terms in order of first occurrence (merge sort).
+	 */
+	public int[] sortByFirstOccurrence(){
+		int[] terms = new int[numTerms];
+		for(int term=0;term<numTerms;term++)
+			terms[term] = term;
+		int[] scratch = new int[numTerms];
+		for(int width=1;width<numTerms;width*=2){ //Bottom-up, runs of width terms
+			for(int from=0;from<numTerms;from+=2*width){
+				int middle = Math.min(from+width, numTerms);
+				int to = Math.min(from+2*width, numTerms);
+				int a = from;
+				int b = middle;
+				for(int i=from;i<to;i++){
+					if(b>=to || (a<middle && !this.isBefore(terms[b], terms[a])))
+						scratch[i] = terms[a++];
+					else
+						scratch[i] = terms[b++];
+				}
+			}
+			int[] swap = terms;
+			terms = scratch;
+			scratch = swap;
+		}
+		return terms;
+	}
+
+	private boolean isBefore(int termA, int termB){
+		return firstLines[termA]<firstLines[termB] || (firstLines[termA]==firstLines[termB] && firstPositions[termA]<firstPositions[termB]);
+	}
+
+	/**
+	 * Adds the terms with a minimum count to a map, in order of first occurrence.
+	 *
+	 * @param map The map of each term to its count.
+	 * @param minCount The minimum count of the terms added.
+	 */
+	public void toMap(LinkedHashMap<String, Integer> map, int minCount){
+		for(int term:this.sortByFirstOccurrence())
+			if(counts[term]>=minCount)
+				map.put(this.getTerm(term), counts[term]);
+	}
+
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	public String getTerm(int term){
+		return new String(chars, termStarts[term], termLengths[term]);
+	}
+
+	public int getCount(int term){
+		return counts[term];
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Writes the Jaccard similarities in text format, one pair per line with the original patent
+ * numbers and the similarity rounded to 5 digits.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+public class TextSimilarityWriter implements SimilarityWriter {
+
+	private PatentIndex index;
+	private String[] patentNumbers;
+	private PrintWriter pwSimilarity;
+	private static String[] similarities = new String[100001]; //Text of each rounded similarity
+
+	/**
+	 * Constructor
+	 *
+	 * @param fSimilarity The file to store the similarities.
+	 * @param index The patent index.
+	 * @param patentNumbers The original patent number of each patent, by ordinal.
+	 */
+	public TextSimilarityWriter(File fSimilarity, PatentIndex index, String[] patentNumbers) throws IOException{
+		this.index = index;
+		this.patentNumbers = patentNumbers;
+		this.pwSimilarity = CompressedFiles.newWriter(fSimilarity);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param pwSimilarity The writer to store the similarities.
+	 * @param index The patent index.
+	 * @param patentNumbers The original patent number of each patent, by ordinal.
+	 */
+	public TextSimilarityWriter(PrintWriter pwSimilarity, PatentIndex index, String[] patentNumbers){
+		this.index = index;
+		this.patentNumbers = patentNumbers;
+		this.pwSimilarity = pwSimilarity;
+	}
+
+	/**
+	 * Rounds a Jaccard similarity to 5 digits and scales it to an integer.
+	 *
+	 * @param intersection The number of shared keywords.
+	 * @param union The number of keywords in the union of both patents.
+	 * @return The rounded similarity multiplied by 100000.
+	 */
+	public static int roundSimilarity(int intersection, int union){
+		double jaccardSimilarity = (double)intersection/(double)union;
+		return (int)(jaccardSimilarity*100000);
+	}
+
+	/**
+	 * Returns the text of a rounded similarity, as printed by the original pair-wise computation.
+	 *
+	 * @param roundSim The rounded similarity multiplied by 100000.
+	 * @return The similarity as text.
+	 */
+	public static String getSimilarity(int roundSim){
+		String similarity = similarities[roundSim];
+		if(similarity==null){
+			similarity = String.valueOf(roundSim/100000.0);
+			similarities[roundSim] = similarity;
+		}
+		return similarity;
+	}
+
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+		int numKwPatentA = index.size(patentA);
+		String numPatentA = patentNumbers[patentA];
+		for(int i=0;i<count;i++){
+			int patentB = patentsB[i];
+			int intersection = intersections[i];
+			int union = (numKwPatentA+index.size(patentB))-intersection;
+			int roundSim = roundSimilarity(intersection, union);
+			if(roundSim>0){ //Outputs only values greather than 0
+				pwSimilarity.print(numPatentA);
+				pwSimilarity.print(' ');
+				pwSimilarity.print(patentNumbers[patentB]);
+				pwSimilarity.print(' ');
+				pwSimilarity.println(getSimilarity(roundSim));
+			}
+		}
+	}
+
+	public void close() throws IOException{
+		pwSimilarity.close();
+	}
+}
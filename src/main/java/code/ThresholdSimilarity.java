@@ -0,0 +1,378 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Computes only the pairs of patents with a Jaccard similarity greater than or equal to a
+ * threshold, following the prefix filtering scheme of PPJoin (Xiao et al., 2008).
+ * The keywords of each patent are sorted by increasing document frequency and the patents are
+ * processed by increasing number of keywords. Two patents can only reach the threshold if they
+ * share a keyword in the first positions (prefix) of both, so only the prefixes are indexed.
+ * Candidates are also discarded by their number of keywords (length filter) and by the
+ * position of the shared keywords (positional filter), and the remaining ones are verified with
+ * the exact intersection, so the result is exact.
+ * The pairs are found in order of number of keywords, not of focus patent, so they are kept until
+ * the end. When there are too many to keep in memory, they are sorted by focus patent and stored
+ * in temporary files, which are merged at the end.
+  */
+package code;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ThresholdSimilarity {
+
+	private static final double EPSILON = 1e-9; //Slack to keep the filters safe from rounding errors
+
+	public static final int MAX_PAIRS = 1<<24; //Default maximum number of pairs kept in memory
+
+	private double threshold;
+	private int maxPairs = MAX_PAIRS;
+	private File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+
+	/**
+	 * Writes the pairs of each focus patent to a temporary file, with the number of pairs and the
+	 * ordinal and intersection of each other patent as varints.
+	 */
+	private static class RunWriter implements SimilarityWriter {
+		private DataOutputStream dosRun;
+
+		RunWriter(File fRun) throws IOException{
+			this.dosRun = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fRun), 1<<16));
+		}
+
+		public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+			BinarySimilarityWriter.writeVarInt(dosRun, count);
+			for(int i=0;i<count;i++){
+				BinarySimilarityWriter.writeVarInt(dosRun, patentsB[i]);
+				BinarySimilarityWriter.writeVarInt(dosRun, intersections[i]);
+			}
+		}
+
+		public void close() throws IOException{
+			dosRun.close();
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param threshold The minimum Jaccard similarity of a pair, greater than 0 and at most 1.
+	 */
+	public ThresholdSimilarity(double threshold){
+		if(threshold<=0 || threshold>1)
+			throw new IllegalArgumentException("The threshold must be in (0, 1]: "+threshold);
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Sets the maximum number of pairs kept in memory (2^24 by default, about 200 MB). The pairs
+	 * found after that are stored in temporary files.
+	 */
+	public void setMaxPairs(int maxPairs) {
+		if(maxPairs<=0 || maxPairs>(Integer.MAX_VALUE-8)/3)
+			throw new IllegalArgumentException("The maximum number of pairs must be in (0, "+(Integer.MAX_VALUE-8)/3+"]: "+maxPairs);
+		this.maxPairs = maxPairs;
+	}
+
+	/**
+	 * Sets the directory for the temporary files of the pairs (the temporary directory of the
+	 * system by default).
+	 */
+	public void setTmpDir(File tmpDir) {
+		this.tmpDir = tmpDir;
+	}
+
+	/**
+	 * Ranks the keywords by increasing document frequency (ties by keyword index).
+	 *
+	 * @param index The patent index.
+	 * @return The rank of each keyword.
+	 */
+	public int[] rankTerms(PatentIndex index){
+		int numTerms = index.getNumTerms();
+		int maxDf = 0;
+		for(int t=0;t<numTerms;t++)
+			maxDf = Math.max(maxDf, index.df(t));
+		int[] start = new int[maxDf+2];
+		for(int t=0;t<numTerms;t++)
+			start[index.df(t)+1]++;
+		for(int df=0;df<=maxDf;df++)
+			start[df+1] += start[df];
+		int[] ranks = new int[numTerms];
+		for(int t=0;t<numTerms;t++)
+			ranks[t] = start[index.df(t)]++;
+		return ranks;
+	}
+
+	/**
+	 * Length of the prefix that a patent uses to look for candidates.
+	 */
+	private int probingPrefix(int size){
+		return Math.min(size, size-(int)Math.ceil(threshold*size-EPSILON)+1);
+	}
+
+	/**
+	 * Length of the prefix of a patent that is stored in the index. It is shorter than the probing
+	 * prefix because the patents found in the index are never larger than the probing patent.
+	 */
+	private int indexingPrefix(int size){
+		return Math.min(size, size-(int)Math.ceil(2*threshold/(1+threshold)*size-EPSILON)+1);
+	}
+
+	/**
+	 * Minimum intersection for two patents to reach the threshold.
+	 */
+	private int minOverlap(int sizeX, int sizeY){
+		return (int)Math.ceil(threshold/(1+threshold)*(sizeX+sizeY)-EPSILON);
+	}
+
+	/**
+	 * Computes the exact intersection of two sorted keyword lists, stopping as soon as the
+	 * minimum intersection cannot be reached.
+	 *
+	 * @return The intersection, or a value lower than the minimum one.
+	 */
+	private int verify(int[] terms, int fromX, int toX, int fromY, int toY, int minOverlap){
+		int overlap = 0;
+		int i = fromX;
+		int j = fromY;
+		while(i<toX && j<toY){
+			if(overlap+Math.min(toX-i, toY-j)<minOverlap)
+				return overlap;
+			if(terms[i]==terms[j]){
+				overlap++;
+				i++;
+				j++;
+			}
+			else if(terms[i]<terms[j])
+				i++;
+			else
+				j++;
+		}
+		return overlap;
+	}
+
+	/**
+	 * Computes the pairs of patents whose Jaccard similarity reaches the threshold and passes them
+	 * to a writer, one focus patent at a time in ordinal order. The patents of each focus patent
+	 * are sorted by ordinal.
+	 *
+	 * @param index The patent index.
+	 * @param writer The writer that stores the similarities.
+	 */
+	public void jaccardSimilarity(PatentIndex index, SimilarityWriter writer) throws IOException{
+		int numPatents = index.getNumPatents();
+		int[] patentOffsets = index.getPatentOffsets();
+		int[] ranks = this.rankTerms(index);
+		int[] terms = new int[patentOffsets[numPatents]]; //Keywords of each patent as ranks, sorted
+		for(int i=0;i<terms.length;i++)
+			terms[i] = ranks[index.getPatentTerms()[i]];
+		int maxSize = 0;
+		for(int p=0;p<numPatents;p++){
+			Arrays.sort(terms, patentOffsets[p], patentOffsets[p+1]);
+			maxSize = Math.max(maxSize, index.size(p));
+		}
+
+		//Patents by increasing number of keywords
+		int[] order = new int[numPatents];
+		int[] sizeStart = new int[maxSize+2];
+		for(int p=0;p<numPatents;p++)
+			sizeStart[index.size(p)+1]++;
+		for(int s=0;s<=maxSize;s++)
+			sizeStart[s+1] += sizeStart[s];
+		for(int p=0;p<numPatents;p++)
+			order[sizeStart[index.size(p)]++] = p;
+
+		//Space for the indexed prefixes, one list per keyword
+		int numTerms = index.getNumTerms();
+		int[] listStart = new int[numTerms+1];
+		for(int p=0;p<numPatents;p++){
+			int prefix = this.indexingPrefix(index.size(p));
+			for(int i=0;i<prefix;i++)
+				listStart[terms[patentOffsets[p]+i]+1]++;
+		}
+		for(int t=0;t<numTerms;t++)
+			listStart[t+1] += listStart[t];
+		int[] listEnd = Arrays.copyOf(listStart, numTerms);
+		int[] listFirst = Arrays.copyOf(listStart, numTerms); //First entry that passes the length filter
+		int[] listPatents = new int[listStart[numTerms]];
+		int[] listPositions = new int[listStart[numTerms]];
+
+		int[] values = new int[numPatents];
+		int[] touched = new int[numPatents];
+		IntList pairs = new IntList(); //Triplets of patent A, patent B and intersection
+		ArrayList<File> runs = new ArrayList<File>(); //Temporary files of the pairs that did not fit in memory
+		try{
+			for(int n=0;n<numPatents;n++){
+				int patentX = order[n];
+				int fromX = patentOffsets[patentX];
+				int sizeX = index.size(patentX);
+				int minSize = (int)Math.ceil(threshold*sizeX-EPSILON);
+				int nTouched = 0;
+				int prefix = this.probingPrefix(sizeX);
+				for(int i=0;i<prefix;i++){
+					int term = terms[fromX+i];
+					while(listFirst[term]<listEnd[term] && index.size(listPatents[listFirst[term]])<minSize) //Length filter
+						listFirst[term]++;
+					for(int e=listFirst[term];e<listEnd[term];e++){
+						int patentY = listPatents[e];
+						if(values[patentY]<0) //Already discarded
+							continue;
+						int sizeY = index.size(patentY);
+						int upperBound = 1+Math.min(sizeX-i-1, sizeY-listPositions[e]-1);
+						if(values[patentY]==0)
+							touched[nTouched++] = patentY;
+						if(values[patentY]+upperBound>=this.minOverlap(sizeX, sizeY)) //Positional filter
+							values[patentY]++;
+						else
+							values[patentY] = Integer.MIN_VALUE;
+					}
+				}
+				for(int c=0;c<nTouched;c++){
+					int patentY = touched[c];
+					if(values[patentY]>0){
+						int fromY = patentOffsets[patentY];
+						int sizeY = index.size(patentY);
+						int minOverlap = this.minOverlap(sizeX, sizeY);
+						int intersection = this.verify(terms, fromX, fromX+sizeX, fromY, fromY+sizeY, minOverlap);
+						if(intersection>=minOverlap && (double)intersection/(double)(sizeX+sizeY-intersection)>=threshold){
+							pairs.add(Math.min(patentX, patentY));
+							pairs.add(Math.max(patentX, patentY));
+							pairs.add(intersection);
+							if(pairs.size()==3*maxPairs){ //Stores the pairs sorted in a temporary file
+								runs.add(this.writeRun(pairs, numPatents));
+								pairs.clear();
+							}
+						}
+					}
+					values[patentY] = 0;
+				}
+				prefix = this.indexingPrefix(sizeX);
+				for(int i=0;i<prefix;i++){
+					int term = terms[fromX+i];
+					listPatents[listEnd[term]] = patentX;
+					listPositions[listEnd[term]] = i;
+					listEnd[term]++;
+				}
+				if ((n+1)%10000==0){ //Outputs the progress of this process
+					System.out.println("\t\t"+(n+1)+" patents processed...");
+				}
+			}
+			if(runs.isEmpty())
+				this.writePairs(pairs, numPatents, writer);
+			else{
+				if(pairs.size()>0)
+					runs.add(this.writeRun(pairs, numPatents));
+				System.out.println("\tMerging the pairs of "+runs.size()+" temporary files...");
+				this.mergeRuns(runs, numPatents, writer);
+			}
+		}
+		finally{
+			for(File fRun:runs)
+				fRun.delete();
+		}
+	}
+
+	/**
+	 * Stores the pairs found so far in a temporary file, sorted by focus patent.
+	 *
+	 * @param pairs The triplets of patent A, patent B and intersection.
+	 * @param numPatents The number of patents.
+	 * @return The temporary file.
+	 */
+	private File writeRun(IntList pairs, int numPatents) throws IOException{
+		if (!tmpDir.exists())
+			tmpDir.mkdirs();
+		File fRun = File.createTempFile("threshold_pairs_", ".bin", tmpDir);
+		this.writePairs(pairs, numPatents, new RunWriter(fRun));
+		return fRun;
+	}
+
+	/**
+	 * Passes the pairs of the temporary files to a writer, reading all the files at the same time.
+	 * The patents of each focus patent are sorted by ordinal.
+	 *
+	 * @param runs The temporary files.
+	 * @param numPatents The number of patents.
+	 * @param writer The writer that stores the similarities.
+	 */
+	private void mergeRuns(ArrayList<File> runs, int numPatents, SimilarityWriter writer) throws IOException{
+		DataInputStream[] disRuns = new DataInputStream[runs.size()];
+		try{
+			for(int r=0;r<runs.size();r++)
+				disRuns[r] = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(r)), 1<<16));
+			long[] group = new long[16]; //Patent B and intersection of each pair of patent A
+			int[] patentsB = new int[numPatents];
+			int[] intersections = new int[numPatents];
+			for(int patentA=0;patentA<numPatents;patentA++){
+				int count = 0;
+				for(DataInputStream dis:disRuns){
+					int nPairs = SimilarityReader.readVarInt(dis);
+					if(count+nPairs>group.length)
+						group = Arrays.copyOf(group, Math.max(count+nPairs, Math.min(2*group.length, numPatents)));
+					for(int i=0;i<nPairs;i++){
+						long patentB = SimilarityReader.readVarInt(dis);
+						group[count++] = (patentB<<32)|SimilarityReader.readVarInt(dis);
+					}
+				}
+				Arrays.sort(group, 0, count);
+				for(int i=0;i<count;i++){
+					patentsB[i] = (int)(group[i]>>>32);
+					intersections[i] = (int)group[i];
+				}
+				writer.write(patentA, patentsB, intersections, count);
+			}
+		}
+		finally{
+			for(DataInputStream dis:disRuns){
+				if(dis!=null)
+					dis.close();
+			}
+		}
+		writer.close();
+	}
+
+	/**
+	 * Groups the pairs by focus patent, sorts the patents of each group by ordinal and passes
+	 * them to a writer.
+	 *
+	 * @param pairs The triplets of patent A, patent B and intersection.
+	 * @param numPatents The number of patents.
+	 * @param writer The writer that stores the similarities.
+	 */
+	private void writePairs(IntList pairs, int numPatents, SimilarityWriter writer) throws IOException{
+		int nPairs = pairs.size()/3;
+		int[] groupStart = new int[numPatents+1];
+		for(int i=0;i<nPairs;i++)
+			groupStart[pairs.get(3*i)+1]++;
+		for(int p=0;p<numPatents;p++)
+			groupStart[p+1] += groupStart[p];
+		long[] group = new long[nPairs]; //Patent B and intersection of each pair, sorted by patent A
+		int[] next = Arrays.copyOf(groupStart, numPatents);
+		for(int i=0;i<nPairs;i++)
+			group[next[pairs.get(3*i)]++] = ((long)pairs.get(3*i+1)<<32)|pairs.get(3*i+2);
+		int[] patentsB = new int[numPatents];
+		int[] intersections = new int[numPatents];
+		for(int patentA=0;patentA<numPatents;patentA++){
+			int from = groupStart[patentA];
+			int to = groupStart[patentA+1];
+			Arrays.sort(group, from, to);
+			for(int i=from;i<to;i++){
+				patentsB[i-from] = (int)(group[i]>>>32);
+				intersections[i-from] = (int)group[i];
+			}
+			writer.write(patentA, patentsB, intersections, to-from);
+		}
+		writer.close();
+	}
+}
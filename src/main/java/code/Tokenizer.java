@@ -0,0 +1,297 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Transforms texts into bags-of-words by scanning their characters, with the same result as
+ * Stage01PreprocessData.getBagofWords (the regular expression \w[[\-]\w&&[^_]]+\w over the text in
+ * lower case, without stopwords, words formed only by numbers and words of only one character).
+ * A word starts with a letter, digit or _, continues with letters, digits and - and ends with a
+ * letter or digit, or with a _ right after the longest run of letters, digits and -.
+ * The words are lowercased while scanning and kept in a dictionary of their characters, so a
+ * String is only created the first time a word is seen, and the stopword check is stored with it.
+ * The words of each text are sorted and counted without maps. The dictionary is cleared when it
+ * reaches its maximum size.
+  */
+package code;
+
+import java.util.Arrays;
+
+public class Tokenizer {
+
+	private static final boolean ASCII_LOWER_CASE = "ABCDEFGHIJKLMNOPQRSTUVWXYZ".toLowerCase().equals("abcdefghijklmnopqrstuvwxyz");
+
+	private StopWords sw;
+	private int maxTerms;
+	//Dictionary of words: characters, hash table and String of each word
+	private char[] chars = new char[1<<16];
+	private int nChars = 0;
+	private int[] termStarts = new int[1<<10];
+	private int[] termLengths = new int[1<<10];
+	private String[] termStrings = new String[1<<10];
+	private boolean[] termStopWords = new boolean[1<<10];
+	private int[] termSeen = new int[1<<10]; //Last text (plus one) where each word was seen
+	private int[] termCounts = new int[1<<10];
+	private int numTerms = 0;
+	private int[] table = new int[1<<11]; //Word plus one, or 0 for an empty position
+	//Words of the current text
+	private int nText = 0;
+	private char[] token = new char[64];
+	private int[] terms = new int[256];
+	private int[] scratch = new int[256];
+	private int nTerms = 0;
+
+	/**
+	 * Constructor
+	 *
+	 * @param sw The stopword list.
+	 */
+	public Tokenizer(StopWords sw){
+		this(sw, 1<<22);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param sw The stopword list.
+	 * @param maxTerms The maximum number of words in the dictionary.
+	 */
+	public Tokenizer(StopWords sw, int maxTerms){
+		this.sw = sw;
+		this.maxTerms = maxTerms;
+	}
+
+	private static boolean isWordChar(char c){ //\w
+		return (c>='a' && c<='z') || (c>='0' && c<='9') || c=='_' || (c>='A' && c<='Z');
+	}
+
+	private static boolean isInnerChar(char c){ //[[\-]\w&&[^_]]
+		return (c>='a' && c<='z') || (c>='0' && c<='9') || c=='-' || (c>='A' && c<='Z');
+	}
+
+	/**
+	 * Transforms a text into a bag-of-words. The words are read with getTerm and getCount.
+	 *
+	 * @param text The text.
+	 * @return The number of different words of the text.
+	 */
+	public int tokenize(String text){
+		this.begin();
+		this.add(text);
+		return this.end();
+	}
+
+	/**
+	 * Starts the bag-of-words of a text formed by several parts (such as the fields of a CSV
+	 * record), separated by spaces.
+	 */
+	public void begin(){
+		if(numTerms>=maxTerms)
+			this.clear();
+		nText++;
+		nTerms = 0;
+	}
+
+	/**
+	 * Adds the words of a part of the text to the bag-of-words.
+	 *
+	 * @param text The part of the text.
+	 */
+	public void add(CharSequence text){
+		boolean ascii = ASCII_LOWER_CASE;
+		for(int p=0;p<text.length() && ascii;p++)
+			ascii = text.charAt(p)<128;
+		if(!ascii) //Lower case of other characters can produce letters of the expression
+			text = text.toString().toLowerCase();
+		int n = text.length();
+		int i = 0;
+		while(i<n-2){
+			if(!isWordChar(text.charAt(i))){
+				i++;
+				continue;
+			}
+			int j = i+1;
+			while(j<n && isInnerChar(text.charAt(j)))
+				j++;
+			int end = -1;
+			if(j>i+1 && j<n && text.charAt(j)=='_'){ //The longest run followed by _
+				end = j;
+			}
+			else{ //Back to the last letter or digit of the run
+				for(int k=j-1;k>=i+2;k--){
+					if(text.charAt(k)!='-'){
+						end = k;
+						break;
+					}
+				}
+			}
+			if(end<0){
+				i++;
+				continue;
+			}
+			this.addToken(text, i, end+1);
+			i = end+1;
+		}
+	}
+
+	/**
+	 * Finishes the bag-of-words of the text, sorting its words.
+	 *
+	 * @return The number of different words of the text.
+	 */
+	public int end(){
+		this.sortTerms(0, nTerms);
+		return nTerms;
+	}
+
+	/**
+	 * Adds a token of the text to the words of the text, unless it is formed only by numbers.
+	 */
+	private void addToken(CharSequence text, int start, int end){
+		int length = end-start;
+		if(token.length<length)
+			token = new char[Math.max(length, token.length*2)];
+		boolean number = true;
+		int hash = 0;
+		for(int p=0;p<length;p++){
+			char c = text.charAt(start+p);
+			if(c>='A' && c<='Z')
+				c = (char)(c+32);
+			token[p] = c;
+			number &= (c>='0' && c<='9') || c=='-';
+			hash = 31*hash+c;
+		}
+		if(number || length<=1)
+			return;
+		int term = this.findTerm(length, hash);
+		if(termStopWords[term])
+			return;
+		if(termSeen[term]!=nText){
+			termSeen[term] = nText;
+			termCounts[term] = 0;
+			if(nTerms==terms.length){
+				terms = Arrays.copyOf(terms, nTerms*2);
+				scratch = new int[nTerms*2];
+			}
+			terms[nTerms++] = term;
+		}
+		termCounts[term]++;
+	}
+
+	/**
+	 * Finds the word in the token buffer in the dictionary, adding it if it is new.
+	 */
+	private int findTerm(int length, int hash){
+		int mask = table.length-1;
+		int pos = (hash^(hash>>>16))&mask;
+		while(table[pos]!=0){
+			int term = table[pos]-1;
+			if(termLengths[term]==length){
+				int start = termStarts[term];
+				int p = 0;
+				while(p<length && chars[start+p]==token[p])
+					p++;
+				if(p==length)
+					return term;
+			}
+			pos = (pos+1)&mask;
+		}
+		if(numTerms==termStarts.length){
+			int size = numTerms*2;
+			termStarts = Arrays.copyOf(termStarts, size);
+			termLengths = Arrays.copyOf(termLengths, size);
+			termStrings = Arrays.copyOf(termStrings, size);
+			termStopWords = Arrays.copyOf(termStopWords, size);
+			termSeen = Arrays.copyOf(termSeen, size);
+			termCounts = Arrays.copyOf(termCounts, size);
+		}
+		if(nChars+length>chars.length)
+			chars = Arrays.copyOf(chars, Math.max(nChars+length, chars.length*2));
+		System.arraycopy(token, 0, chars, nChars, length);
+		int term = numTerms++;
+		termStarts[term] = nChars;
+		termLengths[term] = length;
+		termStrings[term] = new String(token, 0, length);
+		termStopWords[term] = sw.isStopWord(termStrings[term]);
+		termSeen[term] = 0;
+		nChars += length;
+		table[pos] = term+1;
+		if(numTerms*2>table.length)
+			this.rehash(table.length*2);
+		return term;
+	}
+
+	private void rehash(int size){
+		table = new int[size];
+		int mask = size-1;
+		for(int term=0;term<numTerms;term++){
+			int hash = 0;
+			for(int p=termStarts[term];p<termStarts[term]+termLengths[term];p++)
+				hash = 31*hash+chars[p];
+			int pos = (hash^(hash>>>16))&mask;
+			while(table[pos]!=0)
+				pos = (pos+1)&mask;
+			table[pos] = term+1;
+		}
+	}
+
+	/**
+	 * Removes all the words from the dictionary.
+	 */
+	public void clear(){
+		Arrays.fill(table, 0);
+		Arrays.fill(termStrings, 0, numTerms, null);
+		numTerms = 0;
+		nChars = 0;
+	}
+
+	/**
+	 * Sorts the words of the text in alphabetical order (merge sort).
+	 */
+	private void sortTerms(int from, int to){
+		if(to-from<=16){
+			for(int i=from+1;i<to;i++){
+				int term = terms[i];
+				String word = termStrings[term];
+				int j = i-1;
+				while(j>=from && termStrings[terms[j]].compareTo(word)>0){
+					terms[j+1] = terms[j];
+					j--;
+				}
+				terms[j+1] = term;
+			}
+			return;
+		}
+		int middle = (from+to)>>>1;
+		this.sortTerms(from, middle);
+		this.sortTerms(middle, to);
+		System.arraycopy(terms, from, scratch, from, to-from);
+		int a = from;
+		int b = middle;
+		for(int i=from;i<to;i++){
+			if(b>=to || (a<middle && termStrings[scratch[a]].compareTo(termStrings[scratch[b]])<=0))
+				terms[i] = scratch[a++];
+			else
+				terms[i] = scratch[b++];
+		}
+	}
+
+	/**
+	 * Returns a word of the current text, in alphabetical order.
+	 *
+	 * @param i The position of the word, from 0 to the number of words.
+	 */
+	public String getTerm(int i){
+		return termStrings[terms[i]];
+	}
+
+	/**
+	 * Returns the number of times that a word occurs in the current text.
+	 *
+	 * @param i The position of the word, from 0 to the number of words.
+	 */
+	public int getCount(int i){
+		return termCounts[terms[i]];
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Keeps only the k most similar patents of each patent and writes them in text format when
+ * the year is finished.
+ * Each patent has a bounded min-heap with its best neighbours so far. Since the pairs are
+ * computed only once (patent B after patent A), each pair updates the heaps of both patents.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+public class TopKSimilarityWriter implements SimilarityWriter {
+
+	/**
+	 * Rule to choose between two neighbours with the same similarity.
+	 */
+	public enum TieBreak {
+		EARLIER_PATENT, //Prefer the patent that comes first in the year file
+		LATER_PATENT //Prefer the patent that comes last in the year file
+	}
+
+	private PatentIndex index;
+	private String[] patentNumbers;
+	private File fSimilarity;
+	private int k;
+	private TieBreak tieBreak;
+	private int[] heapPatents; //Heap of patent p in positions [p*k, p*k+heapSizes[p])
+	private double[] heapSimilarities;
+	private int[] heapSizes;
+
+	/**
+	 * Constructor
+	 *
+	 * @param fSimilarity The file to store the similarities.
+	 * @param index The patent index.
+	 * @param patentNumbers The original patent number of each patent, by ordinal.
+	 * @param k The number of neighbours to keep per patent.
+	 * @param tieBreak The rule to choose between neighbours with the same similarity.
+	 */
+	public TopKSimilarityWriter(File fSimilarity, PatentIndex index, String[] patentNumbers, int k, TieBreak tieBreak){
+		this.fSimilarity = fSimilarity;
+		this.index = index;
+		this.patentNumbers = patentNumbers;
+		this.k = Math.max(1, Math.min(k, index.getNumPatents()-1)); //A patent has at most numPatents-1 neighbours
+		this.tieBreak = tieBreak;
+		long size = (long)index.getNumPatents()*this.k;
+		if(size>Integer.MAX_VALUE-8)
+			throw new IllegalArgumentException("The heaps of "+index.getNumPatents()+" patents with k = "+this.k
+					+" do not fit in an array, use a smaller k (at most "+(Integer.MAX_VALUE-8)/index.getNumPatents()+")");
+		this.heapPatents = new int[(int)size];
+		this.heapSimilarities = new double[(int)size];
+		this.heapSizes = new int[index.getNumPatents()];
+	}
+
+	/**
+	 * Checks if a neighbour is better than another one.
+	 *
+	 * @return True if the neighbour (patentX, simX) should be kept before (patentY, simY).
+	 */
+	private boolean isBetter(int patentX, double simX, int patentY, double simY){
+		if(simX!=simY)
+			return simX>simY;
+		if(tieBreak==TieBreak.EARLIER_PATENT)
+			return patentX<patentY;
+		return patentX>patentY;
+	}
+
+	/**
+	 * Offers a neighbour to the heap of a patent. The root of the heap is the worst neighbour.
+	 *
+	 * @param patent The patent that owns the heap.
+	 * @param neighbour The neighbour.
+	 * @param similarity The similarity between both patents.
+	 */
+	public void offer(int patent, int neighbour, double similarity){
+		int base = patent*k;
+		int size = heapSizes[patent];
+		int pos;
+		if(size<k){ //Sift up from the end
+			pos = size;
+			heapSizes[patent] = size+1;
+			while(pos>0){
+				int parent = (pos-1)>>1;
+				if(!isBetter(heapPatents[base+parent], heapSimilarities[base+parent], neighbour, similarity))
+					break;
+				heapPatents[base+pos] = heapPatents[base+parent];
+				heapSimilarities[base+pos] = heapSimilarities[base+parent];
+				pos = parent;
+			}
+		}
+		else{ //Replace the root and sift down
+			if(k==0 || !isBetter(neighbour, similarity, heapPatents[base], heapSimilarities[base]))
+				return;
+			pos = this.siftDown(base, size, neighbour, similarity);
+		}
+		heapPatents[base+pos] = neighbour;
+		heapSimilarities[base+pos] = similarity;
+	}
+
+	/**
+	 * Moves down the hole at the root of a heap until the position of a neighbour.
+	 *
+	 * @param base The first position of the heap.
+	 * @param size The size of the heap.
+	 * @param neighbour The neighbour that fills the hole.
+	 * @param similarity The similarity of the neighbour.
+	 * @return The position of the neighbour, relative to the base.
+	 */
+	private int siftDown(int base, int size, int neighbour, double similarity){
+		int pos = 0;
+		while(true){
+			int child = 2*pos+1;
+			if(child>=size)
+				break;
+			if(child+1<size && isBetter(heapPatents[base+child], heapSimilarities[base+child], heapPatents[base+child+1], heapSimilarities[base+child+1]))
+				child++;
+			if(!isBetter(neighbour, similarity, heapPatents[base+child], heapSimilarities[base+child]))
+				break;
+			heapPatents[base+pos] = heapPatents[base+child];
+			heapSimilarities[base+pos] = heapSimilarities[base+child];
+			pos = child;
+		}
+		return pos;
+	}
+
+	public void write(int patentA, int[] patentsB, int[] intersections, int count) throws IOException{
+		int numKwPatentA = index.size(patentA);
+		for(int i=0;i<count;i++){
+			int patentB = patentsB[i];
+			int intersection = intersections[i];
+			int union = (numKwPatentA+index.size(patentB))-intersection;
+			if(TextSimilarityWriter.roundSimilarity(intersection, union)>0){ //Keeps only values greather than 0
+				double similarity = (double)intersection/(double)union;
+				this.offer(patentA, patentB, similarity);
+				this.offer(patentB, patentA, similarity);
+			}
+		}
+	}
+
+	/**
+	 * Writes the neighbours of each patent, from the most to the least similar. Each heap is sorted
+	 * in place by moving its root (the worst neighbour) to its end until it is empty.
+	 */
+	public void close() throws IOException{
+		PrintWriter pwSimilarity = CompressedFiles.newWriter(fSimilarity);
+		for(int patentA=0;patentA<heapSizes.length;patentA++){
+			int size = heapSizes[patentA];
+			int base = patentA*k;
+			for(int last=size-1;last>0;last--){
+				int patent = heapPatents[base+last];
+				double similarity = heapSimilarities[base+last];
+				heapPatents[base+last] = heapPatents[base];
+				heapSimilarities[base+last] = heapSimilarities[base];
+				int pos = this.siftDown(base, last, patent, similarity);
+				heapPatents[base+pos] = patent;
+				heapSimilarities[base+pos] = similarity;
+			}
+			for(int i=0;i<size;i++){
+				int roundSim = (int)(heapSimilarities[base+i]*100000);
+				pwSimilarity.print(patentNumbers[patentA]);
+				pwSimilarity.print(' ');
+				pwSimilarity.print(patentNumbers[heapPatents[base+i]]);
+				pwSimilarity.print(' ');
+				pwSimilarity.println(TextSimilarityWriter.getSimilarity(roundSim));
+			}
+		}
+		pwSimilarity.close();
+	}
+}
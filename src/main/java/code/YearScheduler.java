@@ -0,0 +1,191 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Computes the similarities of several years at the same time within a memory budget.
+ * Before starting, each year file is scanned once to estimate the memory of its index and the
+ * cost of its calculations (the sum of the squared document frequencies of its keywords, which
+ * is proportional to the number of postings visited). The years are started from the most to
+ * the least expensive, as long as their memory fits in what is left of the budget, so the long
+ * years do not end up running alone at the end.
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class YearScheduler {
+
+	/**
+	 * The estimated size and cost of a year.
+	 */
+	public static class YearEstimate {
+		public int year;
+		public File fYearData;
+		public long fileSize;
+		public int numPatents;
+		public long numPostings;
+		public int numTerms;
+		public long sumDf2; //Sum of the squared document frequencies
+		public long memory; //Estimated memory in bytes
+
+		public String toString(){
+			return "year = "+year+", file = "+(fileSize>>20)+" MB, patents = "+numPatents+", postings = "+numPostings
+					+", sum df^2 = "+sumDf2+", memory = "+(memory>>20)+" MB";
+		}
+	}
+
+	private Stage05ComputeSimilarity cs;
+	private int concurrentYears;
+	private long memoryBudget;
+
+	/**
+	 * Constructor
+	 *
+	 * @param cs The similarity computation, with the settings for each year.
+	 * @param concurrentYears The maximum number of years computed at the same time.
+	 * @param memoryBudget The memory available for the years computed at the same time, in bytes.
+	 */
+	public YearScheduler(Stage05ComputeSimilarity cs, int concurrentYears, long memoryBudget){
+		this.cs = cs;
+		this.concurrentYears = concurrentYears;
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Scans a year file and estimates the memory and the cost of its calculations.
+	 * The memory is estimated by the similarity computation, for its mode, output and number of
+	 * threads.
+	 *
+	 * @param year The year.
+	 * @param fYearData The patent data file of the year.
+	 * @return The estimate.
+	 */
+	public YearEstimate estimateYear(int year, File fYearData) throws IOException{
+		PatentLineParser parser = new PatentLineParser();
+		IntList terms = new IntList();
+		YearEstimate estimate = new YearEstimate();
+		estimate.year = year;
+		estimate.fYearData = fYearData;
+		estimate.fileSize = fYearData.length();
+		int[] df = new int[1<<12];
+		MappedLineReader mlrContent = new MappedLineReader(fYearData);
+		while(mlrContent.nextLine()){
+			terms.clear();
+			try{
+				parser.parse(mlrContent, mlrContent.getLineStart(), mlrContent.getLineEnd(), terms, null);
+			}
+			catch(IOException e){
+				mlrContent.close();
+				throw new IOException("Line "+(estimate.numPatents+1)+" of "+fYearData+": "+e.getMessage());
+			}
+			for(int i=0;i<terms.size();i++){
+				int term = terms.get(i);
+				if(term>=df.length)
+					df = Arrays.copyOf(df, Math.max(term+1, df.length*2));
+				df[term]++;
+				estimate.numTerms = Math.max(estimate.numTerms, term+1);
+			}
+			estimate.numPostings += terms.size();
+			estimate.numPatents++;
+		}
+		mlrContent.close();
+		for(int t=0;t<estimate.numTerms;t++)
+			estimate.sumDf2 += (long)df[t]*df[t];
+		estimate.memory = cs.estimateMemory(estimate.numPatents, estimate.numPostings, estimate.numTerms, estimate.sumDf2);
+		return estimate;
+	}
+
+	/**
+	 * Computes the similarities of a range of years, several at the same time.
+	 *
+	 * @param initYear The initial year.
+	 * @param endYear The final year.
+	 * @param fMainDir The working directory, with the year files in the years directory.
+	 * @param fJaccard The directory to store the similarities.
+	 * @param lhmPatentsIdx The map containing the codified patent numbers.
+	 */
+	public void computeYears(int initYear, int endYear, final File fMainDir, final File fJaccard,
+			final LinkedHashMap<String, String> lhmPatentsIdx) throws IOException{
+		System.out.println("Estimating the cost of each year...");
+		ArrayList<YearEstimate> pending = new ArrayList<YearEstimate>();
+		for(int year=initYear;year<=endYear;year++){
+			File fYearData = CompressedFiles.find(CompressedFiles.getFile(fMainDir, "years/patents_indexed_"+year+".txt")); //Also with the other extension
+			if(!fYearData.exists())
+				continue;
+			YearEstimate estimate = this.estimateYear(year, fYearData);
+			System.out.println("\t"+estimate);
+			pending.add(estimate);
+		}
+		Collections.sort(pending, new Comparator<YearEstimate>(){ //Most expensive years first
+			public int compare(YearEstimate a, YearEstimate b){
+				if(a.sumDf2!=b.sumDf2)
+					return a.sumDf2>b.sumDf2 ? -1 : 1;
+				return a.year-b.year;
+			}
+		});
+
+		ExecutorService pool = Executors.newFixedThreadPool(concurrentYears);
+		ExecutorCompletionService<YearEstimate> running = new ExecutorCompletionService<YearEstimate>(pool);
+		long available = memoryBudget;
+		int nRunning = 0;
+		try{
+			while(!pending.isEmpty() || nRunning>0){
+				YearEstimate next = null;
+				if(nRunning<concurrentYears){
+					for(YearEstimate estimate:pending){
+						if(estimate.memory<=available || nRunning==0){ //A year larger than the budget runs alone
+							next = estimate;
+							break;
+						}
+					}
+				}
+				if(next!=null){
+					pending.remove(next);
+					available -= next.memory;
+					nRunning++;
+					final YearEstimate year = next;
+					System.out.println("Computing similarities for year = "+year.year+" ("+nRunning+" years running)");
+					running.submit(new Callable<YearEstimate>(){
+						public YearEstimate call() throws IOException{
+							cs.computeYear(year.year, year.fYearData, fJaccard, lhmPatentsIdx);
+							return year;
+						}
+					});
+				}
+				else{ //Wait for a year to finish
+					Future<YearEstimate> done = running.take();
+					YearEstimate year = done.get();
+					available += year.memory;
+					nRunning--;
+					System.out.println("Finished year = "+year.year);
+				}
+			}
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while computing the years", e);
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new IOException("Error computing a year", e.getCause());
+		}
+		finally{
+			pool.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks the backward similarity on synthetic years with a missing year: the pairs of each year
+ * must be the ones found by comparing every patent of the year with every patent of the previous
+ * years of the window, and no pair can come from an older year.
+ * Run with: java code.BackwardSimilarityTest
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+public class BackwardSimilarityTest {
+
+	public static void main(String[] args) throws IOException{
+		int numYears = 2;
+		int[] years = {2000, 2001, 2003, 2004, 2005}; //2002 has no file
+		File fDir = TestFiles.createTempDir("backward_test");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		LinkedHashMap<Integer, File> yearFiles = new LinkedHashMap<Integer, File>();
+		for(int y=0;y<years.length;y++){
+			File fYearData = new File(fDir, "patents_indexed_"+years[y]+".txt");
+			TestFiles.writeYear(fYearData, lhmPatentsIdx, 300*y, 300, 200, 20, 10+y);
+			yearFiles.put(years[y], fYearData);
+		}
+
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		BackwardSimilarity bs = new BackwardSimilarity(cs, numYears);
+		int nPairs = 0;
+		for(int year:years){
+			PatentIndex index = cs.readPatentIndex(yearFiles.get(year));
+			String[] patentNumbers = cs.getPatentNumbers(index, lhmPatentsIdx);
+			File fSimilarity = new File(fDir, "jaccard_backward_"+year+".txt");
+			bs.backwardSimilarity(year, index, patentNumbers, fSimilarity);
+			bs.addYear(year, index, patentNumbers);
+			ArrayList<String> expected = new ArrayList<String>();
+			for(int previous=year-numYears;previous<year;previous++){
+				if(yearFiles.get(previous)!=null)
+					addPairs(yearFiles.get(year), yearFiles.get(previous), lhmPatentsIdx, expected);
+			}
+			Collections.sort(expected);
+			ArrayList<String> computed = TestFiles.readSorted(fSimilarity);
+			TestFiles.check(expected.equals(computed), "The backward similarities of "+year+" differ from the pairs with the previous "
+					+numYears+" years ("+computed.size()+" instead of "+expected.size()+")");
+			TestFiles.check(year==years[0] || computed.size()>0, "The year "+year+" has no backward pairs");
+			nPairs += computed.size();
+		}
+
+		TestFiles.delete(fDir);
+		System.out.println("BackwardSimilarityTest passed ("+nPairs+" pairs)");
+	}
+
+	/**
+	 * Adds the pairs of every patent of a year with every patent of a previous year, comparing
+	 * their keyword sets.
+	 */
+	private static void addPairs(File fYear, File fPrevious, LinkedHashMap<String, String> lhmPatentsIdx, ArrayList<String> pairs) throws IOException{
+		ArrayList<String> patentsA = TestFiles.readLines(fYear);
+		ArrayList<String> patentsB = TestFiles.readLines(fPrevious);
+		for(String lineA:patentsA){
+			String[] termsA = lineA.split(" ");
+			LinkedHashMap<String, Integer> keywordsA = new LinkedHashMap<String, Integer>();
+			for(int i=2;i<termsA.length;i++)
+				keywordsA.put(termsA[i], 1);
+			for(String lineB:patentsB){
+				String[] termsB = lineB.split(" ");
+				int intersection = 0;
+				for(int i=2;i<termsB.length;i++)
+					if(keywordsA.get(termsB[i])!=null)
+						intersection++;
+				int roundSim = TextSimilarityWriter.roundSimilarity(intersection, keywordsA.size()+termsB.length-2-intersection);
+				if(roundSim>0)
+					pairs.add(lhmPatentsIdx.get(termsA[0])+" "+lhmPatentsIdx.get(termsB[0])+" "+TextSimilarityWriter.getSimilarity(roundSim));
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks of the binary similarity output on a synthetic year: the binary file converted to text
+ * has the same pairs as the text output, and is smaller than it.
+ * Run with: java code.BinarySimilarityTest
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class BinarySimilarityTest {
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("binary_test");
+		File fYearData = new File(fDir, "patents_indexed_2000.txt");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		TestFiles.writeYear(fYearData, lhmPatentsIdx, 0, 2000, 400, 30, 1);
+		File fText = new File(fDir, "text");
+		File fBinary = new File(fDir, "binary");
+		fText.mkdirs();
+		fBinary.mkdirs();
+
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		cs.computeYear(2000, fYearData, fText, lhmPatentsIdx);
+		cs.setBinaryOutput(true);
+		cs.computeYear(2000, fYearData, fBinary, lhmPatentsIdx);
+		File fTextOutput = new File(fText, "jaccard_2000.txt");
+		File fBinaryOutput = new File(fBinary, "jaccard_2000.bin");
+		File fConverted = new File(fBinary, "jaccard_2000.txt");
+		SimilarityReader.convertToText(fBinaryOutput, fConverted);
+		ArrayList<String> expected = TestFiles.readSorted(fTextOutput);
+		ArrayList<String> converted = TestFiles.readSorted(fConverted);
+		TestFiles.check(expected.size()>0, "The synthetic year has no pairs");
+		TestFiles.check(expected.equals(converted), "The binary output has different pairs than the text output");
+		long textLength = fTextOutput.length();
+		long binaryLength = fBinaryOutput.length();
+		TestFiles.check(binaryLength<textLength, "The binary output ("+binaryLength+" bytes) is not smaller than the text output ("+textLength+" bytes)");
+
+		cs.setTopK(5, TopKSimilarityWriter.TieBreak.EARLIER_PATENT);
+		boolean rejected = false;
+		try{
+			cs.computeYear(2000, fYearData, fBinary, lhmPatentsIdx);
+		}
+		catch(IllegalArgumentException e){
+			rejected = true;
+		}
+		TestFiles.check(rejected, "The top-k output was accepted with the binary output");
+
+		TestFiles.delete(fDir);
+		System.out.println("BinarySimilarityTest passed ("+expected.size()+" pairs, "+textLength+" bytes as text, "+binaryLength+" bytes as binary)");
+	}
+}
@@ -0,0 +1,73 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that the similarities of a synthetic year computed by blocks of patents are the same
+ * pairs as the ones of the original computation with the whole year in memory. The focus patents
+ * come in the same order, but the patents of each one can come in another order. Also checks that
+ * the settings not implemented by the blocks are rejected.
+ * Run with: java code.BlockedSimilarityTest
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class BlockedSimilarityTest {
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("blocked_test");
+		File fYearData = new File(fDir, "patents_indexed_2000.txt");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		TestFiles.writeYear(fYearData, lhmPatentsIdx, 0, 500, 400, 30, 5);
+		File fBaseline = new File(fDir, "baseline.txt");
+		TestFiles.writeBaseline(fYearData, fBaseline, lhmPatentsIdx);
+		ArrayList<String> expected = TestFiles.sortWithinFocus(TestFiles.readLines(fBaseline));
+		TestFiles.check(expected.size()>0, "The synthetic year has no pairs");
+
+		for(int blockSize:new int[]{1, 7, 100, 399, 400, 1000}){
+			File fJaccard = new File(fDir, "blocks_"+blockSize);
+			fJaccard.mkdirs();
+			Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+			cs.setBlockSize(blockSize);
+			cs.computeYear(2000, fYearData, fJaccard, lhmPatentsIdx);
+			ArrayList<String> computed = TestFiles.sortWithinFocus(TestFiles.readLines(new File(fJaccard, "jaccard_2000.txt")));
+			TestFiles.check(expected.equals(computed), "The similarities with blocks of "+blockSize+" patents differ from the original ones");
+			TestFiles.check(!new File(fJaccard, "tmp_2000").exists(), "The temporary files of the blocks of "+blockSize+" patents were not deleted");
+		}
+
+		//The settings that the blocks do not implement
+		int nRejected = 0;
+		for(int setting=0;setting<6;setting++){
+			Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+			cs.setBlockSize(100);
+			if(setting==0)
+				cs.setNumThreads(2);
+			else if(setting==1)
+				cs.setThreshold(0.5);
+			else if(setting==2)
+				cs.setTopK(5, TopKSimilarityWriter.TieBreak.EARLIER_PATENT);
+			else if(setting==3)
+				cs.setBinaryOutput(true);
+			else if(setting==4)
+				cs.setBitsets(0.05, 64);
+			else
+				cs.setMeasures(new MeasuresSimilarityWriter.Measure[]{MeasuresSimilarityWriter.Measure.DICE}, false);
+			File fJaccard = new File(fDir, "rejected_"+setting);
+			fJaccard.mkdirs();
+			try{
+				cs.computeYear(2000, fYearData, fJaccard, lhmPatentsIdx);
+			}catch(IllegalArgumentException e){
+				nRejected++;
+			}
+		}
+		TestFiles.check(nRejected==6, "Only "+nRejected+" of the 6 settings not implemented by the blocks were rejected");
+
+		TestFiles.delete(fDir);
+		System.out.println("BlockedSimilarityTest passed ("+expected.size()+" pairs)");
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks of CsvReader on inputs that return few bytes per read, as the decompressed files, so the
+ * UTF-8 sequences are split across reads.
+ * Run with: java code.CsvReaderTest
+  */
+package code;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+public class CsvReaderTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Stream that returns at most a number of bytes per read.
+	 */
+	private static class ShortReadInputStream extends InputStream {
+		private InputStream isSource;
+		private int maxRead;
+
+		ShortReadInputStream(byte[] data, int maxRead){
+			this.isSource = new ByteArrayInputStream(data);
+			this.maxRead = maxRead;
+		}
+
+		public int read() throws IOException{
+			return isSource.read();
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException{
+			return isSource.read(b, off, Math.min(len, maxRead));
+		}
+	}
+
+	public static void main(String[] args) throws IOException{
+		String text = "number,abstract\n1,\u4E2D\u6587\n2,\"caf\u00E9, na\u00EFve\"\r\n3,\uD83D\uDE00 \u20AC\n";
+		for(int maxRead=1;maxRead<=5;maxRead++){
+			CsvReader csvReader = new CsvReader(new ShortReadInputStream(text.getBytes(UTF8), maxRead), UTF8);
+			check(csvReader.readHeader(), "header");
+			check(csvReader.next(), "record 1");
+			checkEquals("\u4E2D\u6587", csvReader.getString(1), maxRead);
+			check(csvReader.next(), "record 2");
+			checkEquals("caf\u00E9, na\u00EFve", csvReader.getString(1), maxRead);
+			check(csvReader.next(), "record 3");
+			checkEquals("\uD83D\uDE00 \u20AC", csvReader.getString(1), maxRead);
+			check(!csvReader.next(), "end of the file");
+			csvReader.close();
+		}
+		//A sequence cut by the end of the file is still replaced
+		byte[] cut = {'a', ',', (byte)0xE4, (byte)0xB8};
+		CsvReader csvReader = new CsvReader(new ShortReadInputStream(cut, 1), UTF8);
+		check(csvReader.next(), "cut record");
+		checkEquals("\uFFFD", csvReader.getString(1), 1);
+		csvReader.close();
+		System.out.println("CsvReaderTest passed");
+	}
+
+	private static void check(boolean condition, String message){
+		if(!condition)
+			throw new AssertionError(message);
+	}
+
+	private static void checkEquals(String expected, String actual, int maxRead){
+		if(!expected.equals(actual))
+			throw new AssertionError("Expected "+expected+" but read "+actual+" with "+maxRead+" bytes per read");
+	}
+}
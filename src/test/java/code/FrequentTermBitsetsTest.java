@@ -0,0 +1,56 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that the similarities of a synthetic year computed with the frequent keywords counted
+ * with bitsets are the same as the ones of the original computation, for several ratios of
+ * patents and numbers of keywords (one or several words of the bitsets). The focus patents come
+ * in the same order, but the patents of each one can come in another order.
+ * Run with: java code.FrequentTermBitsetsTest
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class FrequentTermBitsetsTest {
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("bitsets_test");
+		File fYearData = new File(fDir, "patents_indexed_2000.txt");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		TestFiles.writeYear(fYearData, lhmPatentsIdx, 0, 400, 600, 40, 4);
+		File fBaseline = new File(fDir, "baseline.txt");
+		TestFiles.writeBaseline(fYearData, fBaseline, lhmPatentsIdx);
+		ArrayList<String> expected = TestFiles.sortWithinFocus(TestFiles.readLines(fBaseline));
+
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		PatentIndex index = cs.readPatentIndex(fYearData);
+		FrequentTermBitsets bitsets = new FrequentTermBitsets(index, (int)Math.ceil(0.01*index.getNumPatents()), 1000);
+		TestFiles.check(bitsets.getNumTerms()>128, "The synthetic year has only "+bitsets.getNumTerms()+" frequent keywords");
+
+		int nChecks = 0;
+		for(double ratio:new double[]{0.01, 0.05, 0.2}){
+			for(int maxTerms:new int[]{1, 64, 130}){
+				for(int numThreads:new int[]{1, 4}){
+					File fJaccard = new File(fDir, "bitsets_"+nChecks);
+					fJaccard.mkdirs();
+					cs.setBitsets(ratio, maxTerms);
+					cs.setNumThreads(numThreads);
+					cs.computeYear(2000, fYearData, fJaccard, lhmPatentsIdx);
+					ArrayList<String> computed = TestFiles.sortWithinFocus(TestFiles.readLines(new File(fJaccard, "jaccard_2000.txt")));
+					TestFiles.check(expected.equals(computed), "The similarities with bitsets for the keywords in "+ratio
+							+" of the patents (at most "+maxTerms+") and "+numThreads+" threads differ from the original ones");
+					nChecks++;
+				}
+			}
+		}
+
+		TestFiles.delete(fDir);
+		System.out.println("FrequentTermBitsetsTest passed ("+nChecks+" settings, "+expected.size()+" pairs)");
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that FusedPreprocessing writes the same files as the stages 01 to 04 run one after the
+ * other, on a synthetic raw CSV file with quoted fields, stopwords, numbers, records with missing
+ * columns and a year out of the range. The settings include the term counts and the learned
+ * stopwords of a ceiling of documents per year.
+ * Run with: java code.FusedPreprocessingTest
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+public class FusedPreprocessingTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("fused_test");
+		File fData = new File(fDir, "patent_data_raw.csv");
+		writeRawData(fData, 3000, 400, 5);
+
+		int nFiles = 0;
+		for(int setting=0;setting<3;setting++){
+			File fStages = new File(fDir, "stages_"+setting);
+			File fFused = new File(fDir, "fused_"+setting);
+			fStages.mkdirs();
+			fFused.mkdirs();
+			runStages(fData, fStages, getPreprocessor(setting, fStages));
+			FusedPreprocessing fp = new FusedPreprocessing(getPreprocessor(setting, fFused));
+			fp.setIntermediateFiles(true);
+			fp.setYears(1990, 2016);
+			fp.preprocess(fData, fFused);
+			nFiles += compareFiles(fStages, fFused, "");
+		}
+		TestFiles.check(new File(fDir, "fused_2/stopwords_learned.txt").length()>0, "No stopwords were learned by the ceiling of documents");
+
+		TestFiles.delete(fDir);
+		System.out.println("FusedPreprocessingTest passed ("+nFiles+" files)");
+	}
+
+	/**
+	 * Returns the preprocessor of a setting: the default one, with term counts and several threads,
+	 * or with a ceiling of documents per year.
+	 */
+	private static Stage01PreprocessData getPreprocessor(int setting, File fMainDir){
+		Stage01PreprocessData ppd = new Stage01PreprocessData();
+		ppd.setCharset(UTF8);
+		ppd.setColumns("0", "1", "2", "3");
+		ppd.setLearnedStopWords(new File(fMainDir, "stopwords_learned.txt"), new File(fMainDir, "stopwords_learned_report.txt"));
+		if(setting==1){
+			ppd.setTermCounts(true);
+			ppd.setNumThreads(3);
+		}
+		else if(setting==2)
+			ppd.setMaxDf(0, 0.2, true);
+		return ppd;
+	}
+
+	/**
+	 * Runs the stages 01 to 04 as their main methods.
+	 */
+	private static void runStages(File fData, File fMainDir, Stage01PreprocessData ppd) throws IOException{
+		File fTerms = new File(fMainDir, "patents_terms_raw.txt");
+		File fClean = new File(fMainDir, "patents_terms.txt");
+		File fYears = new File(fMainDir, "patents_years.txt");
+		File fPatentsNum = new File(fMainDir, "patents_numbers.txt");
+		File fVocabulary = new File(fMainDir, "vocabulary_raw.txt");
+		File fIndexed = new File(fMainDir, "patents_indexed.txt");
+		ppd.createBagofWords(fData, fTerms);
+		ppd.extractVocabulary(fTerms, fVocabulary, 2);
+		LinkedHashMap<String, Integer> vocabulary = new LinkedHashMap<String, Integer>();
+		ppd.readVocabulary(fVocabulary, vocabulary);
+		ppd.cleanPatents(fTerms, fClean, fYears, fPatentsNum, vocabulary);
+
+		codify(fVocabulary, new File(fMainDir, "vocabulary.txt"));
+		codify(fPatentsNum, new File(fMainDir, "patents_idxs.txt"));
+
+		Stage03IndexPatents ip = new Stage03IndexPatents();
+		LinkedHashMap<String, String> vocabularyCodes = new LinkedHashMap<String, String>();
+		LinkedHashMap<String, String> patentsIdxs = new LinkedHashMap<String, String>();
+		ip.readIndexes(new File(fMainDir, "vocabulary.txt"), vocabularyCodes);
+		ip.readIndexes(new File(fMainDir, "patents_idxs.txt"), patentsIdxs);
+		ip.indexPatents(fClean, fIndexed, vocabularyCodes, patentsIdxs);
+
+		Stage04SplitDataPerYear sdpy = new Stage04SplitDataPerYear();
+		ArrayList<String> alYears = new ArrayList<String>();
+		sdpy.readYears(fYears, alYears);
+		sdpy.setYears(1990, 2016);
+		sdpy.splitDataPerYear(fIndexed, alYears, fMainDir);
+	}
+
+	/**
+	 * Codifies the lines of a file as Stage02CodifyIdxPatents.
+	 */
+	private static void codify(File fInput, File fOutput) throws IOException{
+		Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+		BufferedReader brInput = CompressedFiles.newReader(fInput);
+		PrintWriter pwOutput = CompressedFiles.newWriter(fOutput);
+		String line;
+		int n = 0;
+		while((line=brInput.readLine())!=null)
+			pwOutput.println(cip.convertToCode(n++)+" "+line);
+		brInput.close();
+		pwOutput.close();
+	}
+
+	/**
+	 * Checks that each file written by the stages (in the directory and its subdirectories) has the
+	 * same lines as the file written by FusedPreprocessing.
+	 *
+	 * @return The number of files compared.
+	 */
+	private static int compareFiles(File fStages, File fFused, String path) throws IOException{
+		int nFiles = 0;
+		for(File fStage:fStages.listFiles()){
+			File fOther = new File(fFused, fStage.getName());
+			if(fStage.isDirectory()){
+				nFiles += compareFiles(fStage, fOther, path+fStage.getName()+"/");
+				continue;
+			}
+			TestFiles.check(fOther.exists(), "FusedPreprocessing did not write "+path+fStage.getName());
+			TestFiles.check(TestFiles.readLines(fStage).equals(TestFiles.readLines(fOther)), "The file "+path+fStage.getName()+" of FusedPreprocessing differs from the one of the stages");
+			nFiles++;
+		}
+		return nFiles;
+	}
+
+	/**
+	 * Writes a synthetic raw CSV file of patents with a header.
+	 *
+	 * @param fData The file.
+	 * @param numPatents The number of patents.
+	 * @param numWords The number of different words.
+	 * @param numYears The number of years, from 1990 (the last one is out of the range of the data).
+	 */
+	private static void writeRawData(File fData, int numPatents, int numWords, int numYears) throws IOException{
+		String[] extras = {"the", "of", "a", "X", "42", "7-3", "non-linear", "semi_conductor", "\u00E9lan", "\"quoted\""};
+		Random random = new Random(3);
+		PrintWriter pwData = new PrintWriter(fData, "UTF-8");
+		pwData.println("patent,year,title,abstract");
+		for(int p=0;p<numPatents;p++){
+			int year = 1990+random.nextInt(numYears);
+			if(year==1990+numYears-1)
+				year = 2050;
+			StringBuilder sbRecord = new StringBuilder().append(4000000+p).append(',').append(year);
+			int nFields = random.nextInt(20)==0 ? 1 : 2; //Some records without abstract
+			for(int f=0;f<nFields;f++){
+				StringBuilder sbText = new StringBuilder();
+				int nTokens = random.nextInt(f==0 ? 6 : 40);
+				for(int t=0;t<nTokens;t++){
+					if(t>0)
+						sbText.append(random.nextInt(10)==0 ? (random.nextBoolean() ? ", " : "\r\n") : " ");
+					if(random.nextInt(8)==0)
+						sbText.append(extras[random.nextInt(extras.length)]);
+					else{
+						double u = random.nextDouble();
+						sbText.append("w").append(Integer.toString((int)(numWords*u*u), 36));
+					}
+				}
+				String text = sbText.toString();
+				sbRecord.append(',');
+				if(text.indexOf(',')>=0 || text.indexOf('\n')>=0 || text.indexOf('"')>=0)
+					sbRecord.append('"').append(text.replace("\"", "\"\"")).append('"');
+				else
+					sbRecord.append(text);
+			}
+			pwData.println(sbRecord);
+		}
+		pwData.close();
+	}
+}
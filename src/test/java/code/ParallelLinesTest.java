@@ -0,0 +1,161 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that the lines and CSV records read by ParallelLines in small chunks are the same as the
+ * ones read sequentially by BufferedReader and CsvReader. The random files mix the line breaks
+ * \n, \r\n and \r (so a \r\n can be split between reads), empty lines, and quoted fields with
+ * commas, escaped quotes and line breaks.
+ * Run with: java code.ParallelLinesTest
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class ParallelLinesTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String[] BREAKS = {"\n", "\r\n", "\r"};
+	private static final String[] PIECES = {"a", "bc", " ", "\u00E9", "\"", "\"\"", ",", "\n", "\r\n", "\r"};
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("parallel_lines_test");
+		Random random = new Random(11);
+		int nChecks = 0;
+		for(int f=0;f<20;f++){
+			boolean csv = f%2==1;
+			String text = csv ? randomCsv(random, 200) : randomLines(random, 200);
+			if(random.nextBoolean()) //Without the last line break
+				text = text.substring(0, text.length()-1);
+			File fInput = new File(fDir, "input_"+f+".txt");
+			Writer wrInput = new OutputStreamWriter(new FileOutputStream(fInput), UTF8);
+			wrInput.write(text);
+			wrInput.close();
+			ArrayList<String> expected = csv ? readRecords(new CsvReader(new StringReader(text))) : readLines(new BufferedReader(new StringReader(text)));
+
+			for(int chunkSize:new int[]{1, 2, 3, 7, 64, 1<<16}){
+				for(int numThreads:new int[]{1, 3}){
+					for(int skip:new int[]{0, 1, 37}){
+						ArrayList<String> computed = process(fInput, csv, chunkSize, numThreads, skip);
+						ArrayList<String> expectedSkipped = new ArrayList<String>(expected.subList(Math.min(skip, expected.size()), expected.size()));
+						TestFiles.check(expectedSkipped.equals(computed), "The "+(csv ? "records" : "lines")+" of file "+f+" read in chunks of "
+								+chunkSize+" characters with "+numThreads+" threads, skipping "+skip+", differ from the sequential ones");
+						nChecks++;
+					}
+				}
+			}
+		}
+		TestFiles.delete(fDir);
+		System.out.println("ParallelLinesTest passed ("+nChecks+" checks)");
+	}
+
+	/**
+	 * Reads the lines (or records, with their fields separated by |) of a file with ParallelLines,
+	 * checking the numbers of lines of the chunks.
+	 */
+	private static ArrayList<String> process(File fInput, final boolean csv, int chunkSize, int numThreads, long skip) throws IOException{
+		final ArrayList<String> lines = new ArrayList<String>();
+		final long[] nLines = {skip};
+		ParallelLines pl = new ParallelLines(numThreads, csv);
+		pl.setCharset(UTF8);
+		pl.setChunkSize(chunkSize);
+		long total = pl.process(fInput, skip, new ParallelLines.ChunkTransform(){
+			public void transform(ParallelLines.Chunk chunk) throws IOException{
+				chunk.setResult(csv ? readRecords(new CsvReader(chunk.getReader())) : readLines(chunk));
+			}
+		}, new ParallelLines.ChunkWriter(){
+			@SuppressWarnings("unchecked")
+			public void write(ParallelLines.Chunk chunk) throws IOException{
+				ArrayList<String> chunkLines = (ArrayList<String>)chunk.getResult();
+				TestFiles.check(chunk.getFirstLine()==nLines[0], "Chunk starting at line "+chunk.getFirstLine()+" instead of "+nLines[0]);
+				TestFiles.check(chunk.getNumLines()==chunkLines.size(), "Chunk of "+chunk.getNumLines()+" lines with "+chunkLines.size()+" lines");
+				nLines[0] = chunk.getEndLine();
+				lines.addAll(chunkLines);
+			}
+		});
+		TestFiles.check(total==Math.max(skip, nLines[0]), "The process returned "+total+" lines instead of "+nLines[0]);
+		return lines;
+	}
+
+	private static String randomLines(Random random, int numLines){
+		StringBuilder text = new StringBuilder();
+		for(int l=0;l<numLines;l++){
+			int nPieces = random.nextInt(4); //Some empty lines
+			for(int p=0;p<nPieces;p++)
+				text.append(PIECES[random.nextInt(PIECES.length-3)]);
+			text.append(BREAKS[random.nextInt(BREAKS.length)]);
+		}
+		return text.toString();
+	}
+
+	private static String randomCsv(Random random, int numRecords){
+		StringBuilder text = new StringBuilder();
+		for(int r=0;r<numRecords;r++){
+			int nFields = random.nextInt(4);
+			for(int i=0;i<nFields;i++){
+				if(i>0)
+					text.append(',');
+				int nPieces = random.nextInt(4);
+				if(random.nextBoolean()){ //Quoted field, with escaped quotes, commas and line breaks
+					text.append('"');
+					for(int p=0;p<nPieces;p++)
+						text.append(PIECES[random.nextInt(PIECES.length)].replace("\"", "\"\""));
+					text.append('"');
+				}
+				else{ //Unquoted field, with quotes inside the text
+					if(nPieces>0)
+						text.append('x');
+					for(int p=0;p<nPieces;p++){
+						String piece = PIECES[random.nextInt(PIECES.length)];
+						if(piece.indexOf(',')<0 && piece.indexOf('\n')<0 && piece.indexOf('\r')<0)
+							text.append(piece);
+					}
+				}
+			}
+			text.append(BREAKS[random.nextInt(BREAKS.length)]);
+		}
+		return text.toString();
+	}
+
+	private static ArrayList<String> readLines(BufferedReader rdInput) throws IOException{
+		ArrayList<String> lines = new ArrayList<String>();
+		String line;
+		while((line=rdInput.readLine())!=null)
+			lines.add(line);
+		return lines;
+	}
+
+	private static ArrayList<String> readLines(ParallelLines.Chunk chunk){
+		ArrayList<String> lines = new ArrayList<String>();
+		String line;
+		while((line=chunk.readLine())!=null)
+			lines.add(line);
+		return lines;
+	}
+
+	private static ArrayList<String> readRecords(CsvReader csvReader) throws IOException{
+		ArrayList<String> records = new ArrayList<String>();
+		while(csvReader.next()){
+			StringBuilder record = new StringBuilder();
+			for(int i=0;i<csvReader.getNumFields();i++){
+				if(i>0)
+					record.append('|');
+				record.append(csvReader.getField(i));
+			}
+			records.add(record.toString());
+		}
+		csvReader.close();
+		return records;
+	}
+}
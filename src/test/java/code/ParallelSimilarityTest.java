@@ -0,0 +1,61 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that the similarities of a synthetic year computed with several threads are the same
+ * file, line by line, as the ones of the original sequential computation.
+ * Run with: java code.ParallelSimilarityTest
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public class ParallelSimilarityTest {
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("parallel_test");
+		File fYearData = new File(fDir, "patents_indexed_2000.txt");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		TestFiles.writeYear(fYearData, lhmPatentsIdx, 0, 600, 500, 30, 2);
+		File fBaseline = new File(fDir, "baseline.txt");
+		TestFiles.writeBaseline(fYearData, fBaseline, lhmPatentsIdx);
+		ArrayList<String> expected = TestFiles.readLines(fBaseline);
+		TestFiles.check(expected.size()>0, "The synthetic year has no pairs");
+
+		for(int numThreads:new int[]{1, 2, 3, 8}){
+			File fJaccard = new File(fDir, "threads_"+numThreads);
+			fJaccard.mkdirs();
+			Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+			cs.setNumThreads(numThreads);
+			cs.computeYear(2000, fYearData, fJaccard, lhmPatentsIdx);
+			ArrayList<String> computed = TestFiles.readLines(new File(fJaccard, "jaccard_2000.txt"));
+			TestFiles.check(expected.equals(computed), "The similarities with "+numThreads+" threads differ from the sequential ones");
+		}
+
+		//A range of focus patents, as in a resumed year
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		PatentIndex index = cs.readPatentIndex(fYearData);
+		File fRange = new File(fDir, "range.txt");
+		new ParallelSimilarity(cs, 4).jaccardSimilarity(index, new TextSimilarityWriter(fRange, index, cs.getPatentNumbers(index, lhmPatentsIdx)), 123, 377);
+		ArrayList<String> range = TestFiles.readLines(fRange);
+		ArrayList<String> expectedRange = new ArrayList<String>();
+		String[] patentNumbers = cs.getPatentNumbers(index, lhmPatentsIdx);
+		LinkedHashMap<String, Integer> ordinals = new LinkedHashMap<String, Integer>();
+		for(int p=0;p<patentNumbers.length;p++)
+			ordinals.put(patentNumbers[p], p);
+		for(String line:expected){
+			int patentA = ordinals.get(line.substring(0, line.indexOf(' ')));
+			if(patentA>=123 && patentA<377)
+				expectedRange.add(line);
+		}
+		TestFiles.check(expectedRange.equals(range), "The similarities of a range of focus patents differ from the sequential ones");
+
+		TestFiles.delete(fDir);
+		System.out.println("ParallelSimilarityTest passed ("+expected.size()+" pairs)");
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Files and checks shared by the tests: synthetic years of indexed patents, the similarities of
+ * the original map-based computation of Stage05ComputeSimilarity, which the other engines must
+ * reproduce, and the reading of the outputs.
+  */
+package code;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+class TestFiles {
+
+	/**
+	 * Creates an empty temporary directory.
+	 */
+	static File createTempDir(String prefix) throws IOException{
+		return Files.createTempDirectory(prefix).toFile();
+	}
+
+	/**
+	 * Writes a year of patents with random keywords (a few frequent ones and many rare ones), and
+	 * stores their codified and original patent numbers.
+	 *
+	 * @param fYearData The file of the year.
+	 * @param lhmPatentsIdx The map to store the codified patent numbers and the original ones.
+	 * @param firstPatent The ordinal of the first patent, to codify its number.
+	 * @param numTerms The number of keywords.
+	 * @param numPatents The number of patents.
+	 * @param maxKeywords The maximum number of keywords of a patent.
+	 * @param seed The seed of the random numbers.
+	 */
+	static void writeYear(File fYearData, LinkedHashMap<String, String> lhmPatentsIdx, int firstPatent, int numTerms, int numPatents, int maxKeywords, long seed) throws IOException{
+		Stage02CodifyIdxPatents cip = new Stage02CodifyIdxPatents();
+		Random random = new Random(seed);
+		PrintWriter pwYear = new PrintWriter(fYearData);
+		for(int p=firstPatent;p<firstPatent+numPatents;p++){
+			String code = cip.convertToCode(p);
+			lhmPatentsIdx.put(code, String.valueOf(5000000+p));
+			LinkedHashMap<Integer, Integer> keywords = new LinkedHashMap<Integer, Integer>();
+			int nKeywords = 1+random.nextInt(maxKeywords);
+			while(keywords.size()<nKeywords){
+				double u = random.nextDouble();
+				keywords.put((int)(numTerms*u*u*u), 1);
+			}
+			StringBuilder sbLine = new StringBuilder(code).append(' ').append(keywords.size());
+			for(int term:keywords.keySet())
+				sbLine.append(' ').append(cip.convertToCode(term)).append(":1");
+			pwYear.println(sbLine);
+		}
+		pwYear.close();
+	}
+
+	/**
+	 * Computes the similarities of a year with the original map-based computation.
+	 *
+	 * @param fYearData The file of the year.
+	 * @param fSimilarity The file to store the similarities.
+	 * @param lhmPatentsIdx The codified patent numbers and the original ones.
+	 */
+	static void writeBaseline(File fYearData, File fSimilarity, LinkedHashMap<String, String> lhmPatentsIdx) throws IOException{
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		LinkedHashMap<String, LinkedHashMap<String, Integer>> patents = new LinkedHashMap<String, LinkedHashMap<String, Integer>>();
+		LinkedHashMap<String, ArrayList<String>> invertedIndex = new LinkedHashMap<String, ArrayList<String>>();
+		cs.readPatentsSequencially(fYearData, patents, invertedIndex);
+		cs.jaccardSimilarity(patents, invertedIndex, fSimilarity, lhmPatentsIdx);
+	}
+
+	static ArrayList<String> readLines(File fInput) throws IOException{
+		ArrayList<String> lines = new ArrayList<String>();
+		String line = "";
+		BufferedReader brInput = new BufferedReader(new FileReader(fInput));
+		while((line=brInput.readLine())!=null)
+			lines.add(line);
+		brInput.close();
+		return lines;
+	}
+
+	static ArrayList<String> readSorted(File fInput) throws IOException{
+		ArrayList<String> lines = readLines(fInput);
+		Collections.sort(lines);
+		return lines;
+	}
+
+	/**
+	 * Sorts the lines of each focus patent (the consecutive lines with the same first field), for
+	 * the outputs that write the patents of a focus patent in another order.
+	 */
+	static ArrayList<String> sortWithinFocus(ArrayList<String> lines){
+		ArrayList<String> sorted = new ArrayList<String>(lines);
+		int start = 0;
+		for(int i=1;i<=sorted.size();i++){
+			if(i==sorted.size() || !getFocus(sorted.get(i)).equals(getFocus(sorted.get(start)))){
+				Collections.sort(sorted.subList(start, i));
+				start = i;
+			}
+		}
+		return sorted;
+	}
+
+	private static String getFocus(String line){
+		return line.substring(0, line.indexOf(' '));
+	}
+
+	/**
+	 * Deletes a file, or a directory with all its content.
+	 */
+	static void delete(File fInput){
+		File[] fChildren = fInput.listFiles();
+		if(fChildren!=null)
+			for(File fChild:fChildren)
+				delete(fChild);
+		fInput.delete();
+	}
+
+	static void check(boolean condition, String message){
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that the threshold similarity join finds exactly the pairs of the sequential
+ * computation whose Jaccard similarity reaches the threshold, for several thresholds, with the
+ * pairs kept in memory and stored in temporary files.
+ * Run with: java code.ThresholdSimilarityTest
+  */
+package code;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+
+public class ThresholdSimilarityTest {
+
+	/**
+	 * Keeps the pairs that reach a threshold as "patent A, patent B, intersection", with A the
+	 * lower ordinal, and checks that the focus patents arrive in ordinal order.
+	 */
+	private static class PairCollector implements SimilarityWriter {
+		private PatentIndex index;
+		private double threshold;
+		private int lastPatentA = -1;
+		private ArrayList<String> pairs = new ArrayList<String>();
+
+		PairCollector(PatentIndex index, double threshold){
+			this.index = index;
+			this.threshold = threshold;
+		}
+
+		public void write(int patentA, int[] patentsB, int[] intersections, int count){
+			TestFiles.check(patentA>lastPatentA, "The focus patent "+patentA+" arrived after "+lastPatentA);
+			lastPatentA = patentA;
+			for(int i=0;i<count;i++){
+				int intersection = intersections[i];
+				double similarity = (double)intersection/(double)(index.size(patentA)+index.size(patentsB[i])-intersection);
+				if(similarity>=threshold)
+					pairs.add(Math.min(patentA, patentsB[i])+" "+Math.max(patentA, patentsB[i])+" "+intersection);
+			}
+		}
+
+		public void close(){}
+	}
+
+	public static void main(String[] args) throws IOException{
+		File fDir = TestFiles.createTempDir("threshold_test");
+		File fYearData = new File(fDir, "patents_indexed_2000.txt");
+		LinkedHashMap<String, String> lhmPatentsIdx = new LinkedHashMap<String, String>();
+		TestFiles.writeYear(fYearData, lhmPatentsIdx, 0, 300, 800, 25, 3);
+		Stage05ComputeSimilarity cs = new Stage05ComputeSimilarity();
+		PatentIndex index = cs.readPatentIndex(fYearData);
+
+		int nChecks = 0;
+		for(double threshold:new double[]{0.05, 0.1, 0.2, 1.0/3, 0.5, 1.0}){
+			PairCollector expected = new PairCollector(index, threshold);
+			cs.jaccardSimilarity(index, expected);
+			Collections.sort(expected.pairs);
+			for(int maxPairs:new int[]{ThresholdSimilarity.MAX_PAIRS, 1000}){
+				ThresholdSimilarity ts = new ThresholdSimilarity(threshold);
+				ts.setMaxPairs(maxPairs);
+				ts.setTmpDir(new File(fDir, "tmp"));
+				PairCollector found = new PairCollector(index, 0);
+				ts.jaccardSimilarity(index, found);
+				Collections.sort(found.pairs);
+				TestFiles.check(expected.pairs.equals(found.pairs), "The pairs with threshold "+threshold+" and at most "+maxPairs
+						+" pairs in memory differ from the sequential ones ("+found.pairs.size()+" instead of "+expected.pairs.size()+")");
+				String[] fRuns = new File(fDir, "tmp").list();
+				TestFiles.check(fRuns==null || fRuns.length==0, "The temporary files were not deleted");
+				nChecks++;
+			}
+		}
+
+		TestFiles.delete(fDir);
+		System.out.println("ThresholdSimilarityTest passed ("+nChecks+" joins)");
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Created on October, 2026
+ * @author agent
+ * @email agent@local
+ * @cite Arts, S., Cassiman, B., & Gomez, J. C. (2017). Text matching to measure patent similarity. Strategic Management Journal.
+ *
+ * Checks that the bags-of-words of random texts extracted by the Tokenizer are the same as the
+ * ones of the regular expression of Stage01PreprocessData.getBagofWords. The texts mix upper and
+ * lower case, numbers, hyphens, underscores, punctuation, stopwords and characters outside ASCII
+ * whose lower case is a letter of the expression (such as the Kelvin sign).
+ * Run with: java code.TokenizerTest
+  */
+package code;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+public class TokenizerTest {
+
+	private static final String[] PIECES = {"a", "B", "x", "Zy", "0", "7", "42", "-", "--", "_", "__", " ", "  ", ".", ",", "(", ")", "\t", "\n",
+			"the", "The", "and", "of", "in", "foo", "BAR", "baz", "\u00E9", "\u00C9", "\u212A", "\u0130", "\u00DF", "\u03A3", "\u4E2D"};
+
+	public static void main(String[] args){
+		Stage01PreprocessData ppd = new Stage01PreprocessData();
+		StopWords sw = new EnglishStopWords();
+		Tokenizer tokenizer = new Tokenizer(sw);
+		Tokenizer smallTokenizer = new Tokenizer(sw, 8); //The dictionary is cleared every few texts
+		Random random = new Random(7);
+		int nWords = 0;
+		for(int t=0;t<20000;t++){
+			StringBuilder text = new StringBuilder();
+			int nPieces = random.nextInt(40);
+			for(int p=0;p<nPieces;p++)
+				text.append(PIECES[random.nextInt(PIECES.length)]);
+			String s = text.toString();
+			TreeMap<String, Integer> expected = ppd.getBagofWords(s, sw);
+			nWords += expected.size();
+			check(expected, tokenizer, tokenizer.tokenize(s), s);
+			check(expected, smallTokenizer, smallTokenizer.tokenize(s), s);
+
+			//The same text added in parts separated by spaces
+			int split = s.length()==0 ? 0 : random.nextInt(s.length());
+			String partA = s.substring(0, split);
+			String partB = s.substring(split);
+			tokenizer.begin();
+			tokenizer.add(partA);
+			tokenizer.add(partB);
+			check(ppd.getBagofWords(partA+" "+partB, sw), tokenizer, tokenizer.end(), partA+"|"+partB);
+		}
+		System.out.println("TokenizerTest passed ("+nWords+" words)");
+	}
+
+	private static void check(TreeMap<String, Integer> expected, Tokenizer tokenizer, int nTerms, String text){
+		TestFiles.check(expected.size()==nTerms, "The tokenizer found "+nTerms+" words instead of "+expected.size()+" in: "+text);
+		int i = 0;
+		for(Map.Entry<String, Integer> entry:expected.entrySet()){
+			TestFiles.check(entry.getKey().equals(tokenizer.getTerm(i)) && entry.getValue()==tokenizer.getCount(i),
+					"The tokenizer found "+tokenizer.getTerm(i)+":"+tokenizer.getCount(i)+" instead of "+entry.getKey()+":"+entry.getValue()+" in: "+text);
+			i++;
+		}
+	}
+}